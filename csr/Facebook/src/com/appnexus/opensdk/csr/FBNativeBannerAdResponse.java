@@ -17,8 +17,6 @@
 package com.appnexus.opensdk.csr;
 
 import android.graphics.Bitmap;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.View;
 import android.widget.ImageView;
 
@@ -45,7 +43,6 @@ public class FBNativeBannerAdResponse extends BaseNativeAdResponse {
     private boolean registered = false;
     NativeAdEventListener nativeAdEventListener = null;
     private Runnable expireRunnable;
-    private Handler fbNativeExpireHandler;
     private String creativeId = "";
     private ImageSize mainImageSize = new ImageSize(-1, -1);
     private ImageSize iconSize = new ImageSize(-1, -1);
@@ -108,14 +105,11 @@ public class FBNativeBannerAdResponse extends BaseNativeAdResponse {
                 if (nativeAdEventListener != null) {
                     nativeAdEventListener.onAdAboutToExpire();
                 }
-                if (fbNativeExpireHandler != null) {
-                    fbNativeExpireHandler.postDelayed(expireRunnable, getExpiryInterval(UTConstants.CSR, 0));
-                }
+                scheduleExpiryCallback(expireRunnable, getExpiryInterval(UTConstants.CSR, 0));
             }
         };
 
-        fbNativeExpireHandler = new Handler(Looper.getMainLooper());
-        fbNativeExpireHandler.postDelayed(aboutToExpireRunnable, getAboutToExpireTime(UTConstants.CSR, 0));
+        scheduleExpiryCallback(aboutToExpireRunnable, getAboutToExpireTime(UTConstants.CSR, 0));
     }
 
     @Override
@@ -142,10 +136,7 @@ public class FBNativeBannerAdResponse extends BaseNativeAdResponse {
     public void destroy() {
         super.destroy();
         nativeAdEventListener = null;
-        if (fbNativeExpireHandler != null) {
-            removeExpiryCallbacks();
-            fbNativeExpireHandler.post(expireRunnable);
-        }
+        scheduleExpiryCallback(expireRunnable, 0);
     }
 
     public void unregisterView() {
@@ -299,10 +290,7 @@ public class FBNativeBannerAdResponse extends BaseNativeAdResponse {
     }
 
     protected void removeExpiryCallbacks() {
-        if (fbNativeExpireHandler != null) {
-            fbNativeExpireHandler.removeCallbacks(expireRunnable);
-            fbNativeExpireHandler.removeCallbacks(aboutToExpireRunnable);
-        }
+        cancelExpiryCallbacks();
     }
 
     @Override
@@ -17,8 +17,6 @@
 package com.appnexus.opensdk.mediatednativead;
 
 import android.graphics.Bitmap;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -45,7 +43,6 @@ public class FBNativeAdResponse extends BaseNativeAdResponse {
     private boolean registered = false;
     private NativeAdEventListener listener;
     private Runnable expireRunnable;
-    private Handler fbNativeExpireHandler;
     private Runnable aboutToExpireRunnable;
     private String creativeId = "";
     private ImageSize mainImageSize = new ImageSize(-1, -1);
@@ -92,14 +89,11 @@ public class FBNativeAdResponse extends BaseNativeAdResponse {
                 if (listener != null) {
                     listener.onAdAboutToExpire();
                 }
-                if (fbNativeExpireHandler != null) {
-                    fbNativeExpireHandler.postDelayed(expireRunnable, getExpiryInterval(UTConstants.CSM, 0));
-                }
+                scheduleExpiryCallback(expireRunnable, getExpiryInterval(UTConstants.CSM, 0));
             }
         };
 
-        fbNativeExpireHandler = new Handler(Looper.getMainLooper());
-        fbNativeExpireHandler.postDelayed(aboutToExpireRunnable, getAboutToExpireTime(UTConstants.CSM, 0));
+        scheduleExpiryCallback(aboutToExpireRunnable, getAboutToExpireTime(UTConstants.CSM, 0));
     }
 
     @Override
@@ -278,10 +272,7 @@ public class FBNativeAdResponse extends BaseNativeAdResponse {
     @Override
     public void destroy() {
         super.destroy();
-        if(fbNativeExpireHandler!=null) {
-            removeExpiryCallbacks();
-            fbNativeExpireHandler.post(expireRunnable);
-        }
+        scheduleExpiryCallback(expireRunnable, 0);
     }
 
     @Override
@@ -310,10 +301,7 @@ public class FBNativeAdResponse extends BaseNativeAdResponse {
     }
 
     protected void removeExpiryCallbacks() {
-        if(fbNativeExpireHandler!=null) {
-            fbNativeExpireHandler.removeCallbacks(expireRunnable);
-            fbNativeExpireHandler.removeCallbacks(aboutToExpireRunnable);
-        }
+        cancelExpiryCallbacks();
     }
 
     @Override
@@ -17,8 +17,6 @@ package com.appnexus.opensdk.mediatednativead;
 
 import android.graphics.Bitmap;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.View;
 
 import com.appnexus.opensdk.BaseNativeAdResponse;
@@ -57,7 +55,6 @@ public class AdMobNativeAdResponse extends BaseNativeAdResponse {
     private Runnable aboutToExpireRunnable;
 
     private final NativeAd nativeAd;
-    private Handler nativeExpireHandler;
 
     AdMobNativeAdResponse(final NativeAd ad) {
         this.nativeAd = ad;
@@ -89,13 +86,10 @@ public class AdMobNativeAdResponse extends BaseNativeAdResponse {
                 if (listener != null) {
                     listener.onAdAboutToExpire();
                 }
-                if (nativeExpireHandler != null) {
-                    nativeExpireHandler.postDelayed(expireRunnable, getExpiryInterval(UTConstants.CSM, 0));
-                }
+                scheduleExpiryCallback(expireRunnable, getExpiryInterval(UTConstants.CSM, 0));
             }
         };
-        nativeExpireHandler = new Handler(Looper.getMainLooper());
-        nativeExpireHandler.postDelayed(aboutToExpireRunnable, Settings.NATIVE_AD_RESPONSE_EXPIRATION_TIME_CSM_CSR);
+        scheduleExpiryCallback(aboutToExpireRunnable, Settings.NATIVE_AD_RESPONSE_EXPIRATION_TIME_CSM_CSR);
         loadAssets();
     }
 
@@ -277,10 +271,7 @@ public class AdMobNativeAdResponse extends BaseNativeAdResponse {
     @Override
     public void destroy() {
         super.destroy();
-        if(nativeExpireHandler!=null) {
-            removeExpiryCallbacks();
-            nativeExpireHandler.post(expireRunnable);
-        }
+        scheduleExpiryCallback(expireRunnable, 0);
     }
 
     @Override
@@ -309,9 +300,6 @@ public class AdMobNativeAdResponse extends BaseNativeAdResponse {
     }
 
     protected void removeExpiryCallbacks() {
-        if (nativeExpireHandler != null) {
-            nativeExpireHandler.removeCallbacks(aboutToExpireRunnable);
-            nativeExpireHandler.removeCallbacks(expireRunnable);
-        }
+        cancelExpiryCallbacks();
     }
 }
@@ -530,15 +530,19 @@
             encodeURIComponent(url))]);
     }
 
-    // required: url
-    anjam.RecordEvent = function (url) {
+    // required: url, optional: executeScript
+    // the url is fired as a plain HTTP request, unless executeScript is true and it is loaded in a hidden webview
+    anjam.RecordEvent = function (url, executeScript) {
         if (!anjam.validateHttpString(url)) {
             anjam.anlog("RecordEvent error: url should be a string");
             return;
         }
 
-        anjam.fireMessage(CALL_RECORDEVENT, [new anjam.pair("url",
-            encodeURIComponent(url))]);
+        var params = [new anjam.pair("url", encodeURIComponent(url))];
+        if (executeScript === true) {
+            params.push(new anjam.pair("executeScript", "true"));
+        }
+        anjam.fireMessage(CALL_RECORDEVENT, params);
     }
 
     // required: at least one of event or data must be a non-empty string
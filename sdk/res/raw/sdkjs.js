@@ -242,8 +242,9 @@
 
     sdkjs.callRecordEvent = function (queryParameters) {
         var url = queryParameters.url;
+        var executeScript = queryParameters.executeScript === "true" ? "&executeScript=true" : "";
 
-        sdkjs.makeNativeCall("RecordEvent?url=" + url);
+        sdkjs.makeNativeCall("RecordEvent?url=" + url + executeScript);
     }
 
     sdkjs.callDispatchAppEvent = function (queryParameters) {
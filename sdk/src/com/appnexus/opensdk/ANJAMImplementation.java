@@ -21,6 +21,8 @@ import android.content.ActivityNotFoundException;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Pair;
 import android.view.View;
 import android.webkit.CookieSyncManager;
@@ -193,8 +195,13 @@ class ANJAMImplementation {
             return;
         }
 
-        // Create a invisible webview to fire the url
-        WebView recordEventWebView = new WebView(webView.getContext());
+        if (!"true".equals(uri.getQueryParameter("executeScript"))) {
+            RecordEventTracker.getInstance().fire(urlParam, webView.getContext());
+            return;
+        }
+
+        // The creative needs the page scripts to run, load it in an invisible webview
+        final WebView recordEventWebView = new WebView(webView.getContext());
         recordEventWebView.setWebViewClient(new WebViewClient() {
             @Override
             public void onPageFinished(WebView view, String url) {
@@ -203,8 +210,20 @@ class ANJAMImplementation {
 
                 CookieSyncManager csm = CookieSyncManager.getInstance();
                 if (csm != null) csm.sync();
+
+                // Done, do not leave it in the ad webview. Not destroyed from within its own callback
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (recordEventWebView.getParent() != null) {
+                            ViewUtil.removeChildFromParent(recordEventWebView);
+                            recordEventWebView.destroy();
+                        }
+                    }
+                });
             }
         });
+        WebviewUtil.setWebViewSettings(recordEventWebView);
         recordEventWebView.loadUrl(urlParam);
         recordEventWebView.setVisibility(View.GONE);
         webView.addView(recordEventWebView);
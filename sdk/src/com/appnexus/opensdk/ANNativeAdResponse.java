@@ -25,14 +25,13 @@ import android.content.Intent;
 import android.content.MutableContextWrapper;
 import android.graphics.Bitmap;
 import android.net.Uri;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.View;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 
 import com.appnexus.opensdk.ut.UTConstants;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ImageService;
 import com.appnexus.opensdk.utils.JsonUtil;
 import com.appnexus.opensdk.utils.StringUtil;
 import com.appnexus.opensdk.utils.ViewUtil;
@@ -68,7 +67,6 @@ public class ANNativeAdResponse extends BaseNativeAdResponse {
     private ArrayList<String> click_trackers;
     private String sponsoredBy;
     private String additionalDescription;
-    private Handler anNativeExpireHandler;
     private String creativeId = "";
     private String videoVastXML = "";
     private String privacyLink = "";
@@ -108,15 +106,12 @@ public class ANNativeAdResponse extends BaseNativeAdResponse {
             }
             impressionTracker = null;
             listener = null;
-            // free assets
-            if (icon != null) {
-                icon.recycle();
-                icon = null;
-            }
-            if (image != null) {
-                image.recycle();
-                image = null;
-            }
+            // free assets. Not recycled, the bitmaps may be shared with other responses through the image cache.
+            // Their memory is only reused if the app opted in, it may still be drawing them otherwise
+            ImageService.release(icon, bitmapsReusable);
+            ImageService.release(image, bitmapsReusable);
+            icon = null;
+            image = null;
         }
     };
 
@@ -126,9 +121,7 @@ public class ANNativeAdResponse extends BaseNativeAdResponse {
             if (listener != null) {
                 listener.onAdAboutToExpire();
             }
-            if (anNativeExpireHandler != null) {
-                anNativeExpireHandler.postDelayed(expireRunnable, getExpiryInterval(UTConstants.RTB, memberId));
-            }
+            scheduleExpiryCallback(expireRunnable, getExpiryInterval(UTConstants.RTB, memberId));
         }
     };
 
@@ -240,8 +233,7 @@ public class ANNativeAdResponse extends BaseNativeAdResponse {
 
     private ANNativeAdResponse(JSONObject adObject) {
         memberId = JsonUtil.getJSONInt(adObject, "buyer_member_id");
-        anNativeExpireHandler = new Handler(Looper.getMainLooper());
-        anNativeExpireHandler.postDelayed(aboutToExpireRunnable, getAboutToExpireTime(UTConstants.RTB, memberId));
+        scheduleExpiryCallback(aboutToExpireRunnable, getAboutToExpireTime(UTConstants.RTB, memberId));
     }
 
     @Override
@@ -350,10 +342,7 @@ public class ANNativeAdResponse extends BaseNativeAdResponse {
                     if (listener != null) {
                         listener.onAdImpression();
                     }
-                    if (anNativeExpireHandler != null) {
-                        anNativeExpireHandler.removeCallbacks(expireRunnable);
-                        anNativeExpireHandler.removeCallbacks(aboutToExpireRunnable);
-                    }
+                    cancelExpiryCallbacks();
                 }
             });
             this.registeredView = view;
@@ -399,11 +388,7 @@ public class ANNativeAdResponse extends BaseNativeAdResponse {
     @Override
     public void destroy() {
         super.destroy();
-        if (anNativeExpireHandler != null) {
-            anNativeExpireHandler.removeCallbacks(expireRunnable);
-            anNativeExpireHandler.removeCallbacks(aboutToExpireRunnable);
-            anNativeExpireHandler.post(expireRunnable);
-        }
+        scheduleExpiryCallback(expireRunnable, 0);
     }
 
     /**
@@ -432,6 +417,13 @@ public class ANNativeAdResponse extends BaseNativeAdResponse {
         this.doesLoadingInBackground = doesLoadingInBackground;
     }
 
+    // Set from NativeAdRequest.setBitmapReuse, the app does not draw the bitmaps past expiry or destroy
+    private boolean bitmapsReusable = false;
+
+    void setBitmapsReusable(boolean bitmapsReusable) {
+        this.bitmapsReusable = bitmapsReusable;
+    }
+
     public ANClickThroughAction getClickThroughAction() {
         return clickThroughAction;
     }
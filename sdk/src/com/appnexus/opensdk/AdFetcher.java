@@ -18,26 +18,28 @@ package com.appnexus.opensdk;
 
 import android.annotation.SuppressLint;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 
+import com.appnexus.opensdk.tasksmanager.TaskPriority;
+import com.appnexus.opensdk.tasksmanager.TasksManager;
 import com.appnexus.opensdk.ut.UTAdRequester;
 import com.appnexus.opensdk.utils.Clog;
-import com.appnexus.opensdk.utils.Settings;
+import com.appnexus.opensdk.utils.SDKTrace;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * AdFetcher class that schedules requests based on auto refresh settings
+ * AdFetcher class that schedules requests based on auto refresh settings.
+ * All the fetchers share the {@link RefreshScheduler}.
  */
 public class AdFetcher {
 
     private final ANMultiAdRequest anMultiAdRequest;
-    private ScheduledExecutorService tasker;
+    private RefreshScheduler.Job job;
+    // Tells the requests of the current job from the ones handed over before a stop
+    private volatile int generation = 0;
     private int period = -1;
     private RequestHandler handler;
     private long lastFetchTime = -1;
@@ -45,7 +47,8 @@ public class AdFetcher {
     private final Ad owner;
     private UTAdRequester requestManager;
     private STATE state = STATE.STOPPED;
-    private static final String ANBACKGROUND = "ANBackgroundThread";
+    // Set while the owner is off screen, auto refresh then waits for it to come back
+    private boolean paused = false;
 
     public void setRequestManager(UTAdRequester requester) {
         requestManager = requester;
@@ -71,20 +74,14 @@ public class AdFetcher {
     }
 
     public void destroy() {
+        clearJob();
         if (handler != null) {
-            String threadName = handler.getLooper().getThread().getName();
-            if (threadName.contains(ANBACKGROUND)) {
-                Clog.i(Clog.baseLogTag, "Quitting background " + threadName);
-                handler.getLooper().quit();
-                handler = null;
-            }
+            handler.removeMessages(0);
         }
         if (requestManager != null) {
             requestManager.cancel();
             requestManager = null;
         }
-
-        clearTasker();
     }
 
     public void setPeriod(int period) {
@@ -110,14 +107,13 @@ public class AdFetcher {
     public void start() {
         initHandler();
         Clog.d(Clog.baseLogTag, Clog.getString(R.string.start));
-        createTasker();
         switch (state) {
             case STOPPED:
                 if (this.period <= 0) {
                     Clog.v(Clog.baseLogTag,
                             Clog.getString(R.string.fetcher_start_single));
                     // Request an ad once
-                    tasker.schedule(new MessageRunnable(), 0, TimeUnit.SECONDS);
+                    scheduleJob(0, -1);
                     state = STATE.SINGLE_REQUEST;
                 } else {
                     Clog.v(Clog.baseLogTag, Clog.getString(R.string.fetcher_start_auto));
@@ -132,10 +128,17 @@ public class AdFetcher {
                         stall = 0;
                     }
 
-                    Clog.v(Clog.baseLogTag, Clog.getString(
-                            R.string.request_delayed_by_x_ms, stall));
-                    tasker.scheduleAtFixedRate(new MessageRunnable(), stall,
-                            msPeriod, TimeUnit.MILLISECONDS);
+                    if (paused && lastFetchTime != -1) {
+                        // Off screen, setPaused(false) schedules the refresh with the time left
+                        Clog.v(Clog.baseLogTag, "Auto refresh paused while the ad is off screen");
+                        if (timePausedAt == -1) {
+                            timePausedAt = System.currentTimeMillis();
+                        }
+                    } else {
+                        Clog.v(Clog.baseLogTag, R.string.request_delayed_by_x_ms, stall);
+                        // The first ad is loaded even off screen, but not refreshed
+                        scheduleJob(stall, paused ? -1 : msPeriod);
+                    }
 
                     state = STATE.AUTO_REFRESH;
                 }
@@ -144,7 +147,7 @@ public class AdFetcher {
                 Clog.v(Clog.baseLogTag,
                         Clog.getString(R.string.fetcher_start_single));
                 // Request an ad once
-                tasker.schedule(new MessageRunnable(), 0, TimeUnit.SECONDS);
+                scheduleJob(0, -1);
                 break;
             case AUTO_REFRESH:
                 // if auto refresh has already started
@@ -153,38 +156,60 @@ public class AdFetcher {
         }
     }
 
-    private void initHandler() {
-        if (handler == null) {
-            if (SDKSettings.isBackgroundThreadingEnabled()) {
-                HandlerThread backgroundThread = new HandlerThread(ANBACKGROUND);
-                backgroundThread.start();
-                handler = new RequestHandler(this, backgroundThread.getLooper());
+    /**
+     * Pauses the auto refresh timer while the owner is off screen, and resumes it with the time that was left
+     * when it comes back. Requests on demand are not affected.
+     */
+    void setPaused(boolean paused) {
+        if (this.paused == paused) {
+            return;
+        }
+        this.paused = paused;
+        if (state != STATE.AUTO_REFRESH || period <= 0) {
+            return;
+        }
+        if (paused) {
+            Clog.d(Clog.baseLogTag, "Auto refresh paused, the ad is off screen");
+            timePausedAt = System.currentTimeMillis();
+            if (lastFetchTime == -1) {
+                // Still load the first ad
+                scheduleJob(0, -1);
             } else {
-                handler = new RequestHandler(this, Looper.myLooper());
+                clearJob();
+            }
+        } else {
+            long stall = 0;
+            if (timePausedAt != -1 && lastFetchTime != -1) {
+                stall = Math.min(period, Math.max(0, period - (timePausedAt - lastFetchTime)));
             }
+            Clog.d(Clog.baseLogTag, "Auto refresh resumed, the ad is back on screen");
+            Clog.v(Clog.baseLogTag, R.string.request_delayed_by_x_ms, stall);
+            scheduleJob(stall, period);
         }
     }
 
-    private void createTasker() {
-        if (tasker == null) {
-            // Start a Scheduler to execute recurring tasks
-            tasker = Executors
-                    .newScheduledThreadPool(Settings.FETCH_THREAD_COUNT);
-        }
+    boolean isPaused() {
+        return paused;
     }
 
-    private void clearTasker() {
-        if (tasker == null)
-            return;
-        tasker.shutdownNow();
-        try {
-            tasker.awaitTermination(period, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // ignored
-        } finally {
-            tasker = null;
+    private void initHandler() {
+        if (handler == null) {
+            handler = new RequestHandler(this, Looper.myLooper() != null ? Looper.myLooper() : Looper.getMainLooper());
         }
+    }
 
+    private void scheduleJob(long delay, long period) {
+        clearJob();
+        job = RefreshScheduler.getInstance().schedule(new MessageRunnable(generation), delay, period);
+    }
+
+    // Does not wait for a request being handed over, the handler drops the messages of a cancelled job
+    private void clearJob() {
+        generation++;
+        if (job != null) {
+            RefreshScheduler.getInstance().cancel(job);
+            job = null;
+        }
     }
 
     public void clearDurations() {
@@ -192,16 +217,40 @@ public class AdFetcher {
         timePausedAt = -1;
     }
 
+    // Runs on the scheduler thread, hands the request over to the background threads or the handler
     private class MessageRunnable implements Runnable {
+        private final int generation;
+
+        MessageRunnable(int generation) {
+            this.generation = generation;
+        }
 
         @Override
         public void run() {
             Clog.v(Clog.baseLogTag,
                     Clog.getString(R.string.handler_message_pass));
-            if(handler != null) {
-                handler.sendEmptyMessage(0);
+            final RequestHandler requestHandler = handler;
+            if (requestHandler == null) {
+                return;
+            }
+            if (SDKSettings.isBackgroundThreadingEnabled()) {
+                Runnable fetch = new Runnable() {
+                    @Override
+                    public void run() {
+                        requestHandler.handleMessage(Message.obtain(requestHandler, 0, generation, 0));
+                    }
+                };
+                if (!TasksManager.getInstance().executeOnBackgroundThread(fetch, TaskPriority.AD_REQUEST)) {
+                    // Lane is full, the request blocks so it must still run off the main thread
+                    try {
+                        SDKSettings.getExternalExecutor().execute(fetch);
+                    } catch (RejectedExecutionException e) {
+                        Clog.e(Clog.baseLogTag, "Ad request rejected by the external executor: " + e.getMessage());
+                    }
+                }
+            } else {
+                requestHandler.sendMessage(Message.obtain(requestHandler, 0, generation, 0));
             }
-
         }
 
     }
@@ -216,26 +265,33 @@ public class AdFetcher {
             mFetcher = new WeakReference<AdFetcher>(f);
         }
 
-        @SuppressLint("NewApi")
         @Override
         synchronized public void handleMessage(Message msg) {
+            long traceStart = SDKTrace.begin(SDKTrace.FETCH);
+            try {
+                fetch(msg);
+            } finally {
+                SDKTrace.end(SDKTrace.FETCH, traceStart);
+            }
+        }
+
+        @SuppressLint("NewApi")
+        private void fetch(Message msg) {
             // If the adfetcher, for some reason, has vanished, do nothing with
             // this message
             // If the owner is not ready for a new ad, do nothing with
             // this message
             AdFetcher fetcher = mFetcher.get();
 
-            if (fetcher == null
+            if (fetcher == null || msg.arg1 != fetcher.generation
                     || (fetcher.owner != null && !fetcher.owner.isReadyToStart()))
                 return;
 
             // Update last fetch time once
             // For sane logging, don't report negative times
             if (fetcher.lastFetchTime != -1) {
-                Clog.d(Clog.baseLogTag,
-                        Clog.getString(
-                                R.string.new_ad_since,
-                                Math.max(0, (int) (System.currentTimeMillis() - fetcher.lastFetchTime))));
+                Clog.d(Clog.baseLogTag, R.string.new_ad_since,
+                        Math.max(0, (int) (System.currentTimeMillis() - fetcher.lastFetchTime)));
                 // Condition to restrict the Auto Refresh for the Lazy Loaded Ad.
                 if (fetcher.owner != null && fetcher.owner instanceof BannerAdView && ((BannerAdView)fetcher.owner).isLazyWebviewInactive() && ((BannerAdView)fetcher.owner).isLastResponseSuccessful()) {
                     Clog.w(Clog.lazyLoadLogTag, "Not Fetching due to Lazy Load");
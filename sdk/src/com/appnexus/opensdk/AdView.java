@@ -45,6 +45,7 @@ import com.appnexus.opensdk.ut.adresponse.RTBVASTAdResponse;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
+import com.appnexus.opensdk.utils.LatencyMetrics;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.Settings.CountImpression;
 import com.appnexus.opensdk.utils.ViewUtil;
@@ -88,6 +89,8 @@ public abstract class AdView extends FrameLayout implements Ad, MultiAd, Visibil
     UTRequestParameters requestParameters;
 
     protected ArrayList<String> impressionTrackers;
+    // LatencyMetrics start of the wait for the impression, 0 if not timed
+    private long impressionPendingSince;
     private ANAdResponseInfo adResponseInfo;
     /**
      * This variable keeps track of the Complete AdRequest
@@ -264,7 +267,7 @@ public abstract class AdView extends FrameLayout implements Ad, MultiAd, Visibil
     protected void loadAdFromHtml(String html, int width, int height) {
         // load an ad directly from html
         loadedOffscreen = true;
-        AdWebView output = new AdWebView(this, null);
+        AdWebView output = AdWebViewPool.getInstance().obtain(this, null);
         RTBHTMLAdResponse response = new RTBHTMLAdResponse(width, height, getMediaType().toString(), null, getAdResponseInfo());
         response.setAdContent(html);
         output.loadAd(response);
@@ -275,7 +278,7 @@ public abstract class AdView extends FrameLayout implements Ad, MultiAd, Visibil
     protected void loadAdFromVAST(String VASTXML, int width, int height) {
         // load an ad directly from VASTXML
         loadedOffscreen = true;
-        AdWebView output = new AdWebView(this, null);
+        AdWebView output = AdWebViewPool.getInstance().obtain(this, null);
         RTBVASTAdResponse response = new RTBVASTAdResponse(width, height, AdType.VIDEO.toString(), null, null, getAdResponseInfo());
         response.setAdContent(VASTXML);
         response.setContentSource(UTConstants.RTB);
@@ -1241,6 +1244,7 @@ public abstract class AdView extends FrameLayout implements Ad, MultiAd, Visibil
                 public void run() {
                     if (ad.getResponseData() != null && ad.getResponseData().getImpressionURLs() != null && ad.getResponseData().getImpressionURLs().size() > 0) {
                         impressionTrackers = ad.getResponseData().getImpressionURLs();
+                        impressionPendingSince = LatencyMetrics.start();
                     }
                     if (ad.getDisplayable() != null && ad.getMediaType().equals(MediaType.BANNER) && ad.getResponseData().getAdType().equalsIgnoreCase(UTConstants.AD_TYPE_BANNER)) {
                         if (getEffectiveImpressionCountingMethod() == CountImpression.ONE_PX) {
@@ -1331,6 +1335,11 @@ public abstract class AdView extends FrameLayout implements Ad, MultiAd, Visibil
                 ArrayList<String> impTrackers = new ArrayList<>(impressionTrackers);
                 // Making it to null so that there is no duplicate firing. We fire exactly only once.
                 impressionTrackers = null;
+                if (impressionPendingSince != 0) {
+                    LatencyMetrics.record(LatencyMetrics.Phase.IMPRESSION, requestParameters.getPlacementID(), getMediaType(),
+                            getEffectiveImpressionCountingMethod().name(), impressionPendingSince);
+                    impressionPendingSince = 0;
+                }
                 SharedNetworkManager nm = SharedNetworkManager.getInstance(getContext());
                 if (nm.isConnected(getContext())) {
                     for (String url : impTrackers) {
@@ -29,6 +29,7 @@ import com.appnexus.opensdk.ut.adresponse.RTBNativeAdResponse;
 import com.appnexus.opensdk.ut.adresponse.RTBVASTAdResponse;
 import com.appnexus.opensdk.ut.adresponse.SSMHTMLAdResponse;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.SDKTrace;
 import com.appnexus.opensdk.utils.Settings.CountImpression;
 import com.appnexus.opensdk.utils.StringUtil;
 
@@ -210,6 +211,15 @@ public class AdViewRequestManager extends RequestManager {
     }
 
     private void processNextAd() {
+        long traceStart = SDKTrace.begin(SDKTrace.PROCESS_NEXT_AD);
+        try {
+            dispatchNextAd();
+        } finally {
+            SDKTrace.end(SDKTrace.PROCESS_NEXT_AD, traceStart);
+        }
+    }
+
+    private void dispatchNextAd() {
         // If we're about to dispatch a creative to a banner
         // that has been resized by ad stretching, reset its size
         final Ad owner = this.owner.get();
@@ -420,12 +430,12 @@ public class AdViewRequestManager extends RequestManager {
             TasksManager.getInstance().executeOnMainThread(new Runnable() {
                 @Override
                 public void run() {
-                    adWebview = new AdWebView((AdView) owner, AdViewRequestManager.this);
+                    adWebview = AdWebViewPool.getInstance().obtain((AdView) owner, AdViewRequestManager.this);
                     adWebview.loadAd(response);
                 }
             });
         } else {
-            adWebview = new AdWebView((AdView) owner, AdViewRequestManager.this);
+            adWebview = AdWebViewPool.getInstance().obtain((AdView) owner, AdViewRequestManager.this);
             adWebview.loadAd(response);
 
         }
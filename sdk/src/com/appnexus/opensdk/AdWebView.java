@@ -25,7 +25,6 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.MutableContextWrapper;
 import android.content.res.Configuration;
-import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.Rect;
 import android.net.Uri;
@@ -50,11 +49,17 @@ import android.widget.Toast;
 
 import com.appnexus.opensdk.ut.UTAdRequester;
 import com.appnexus.opensdk.ut.UTConstants;
+import com.appnexus.opensdk.ut.UTRequestParameters;
 import com.appnexus.opensdk.ut.adresponse.BaseAdResponse;
 import com.appnexus.opensdk.ut.adresponse.RTBNativeAdResponse;
+import com.appnexus.opensdk.tasksmanager.TaskPriority;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ClogListener;
+import com.appnexus.opensdk.utils.HTTPCompression;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
+import com.appnexus.opensdk.utils.LatencyMetrics;
+import com.appnexus.opensdk.utils.SDKTrace;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 import com.appnexus.opensdk.utils.ViewUtil;
@@ -63,7 +68,6 @@ import com.appnexus.opensdk.viewability.ANOmidAdSession;
 
 import org.json.JSONObject;
 
-import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 
@@ -87,6 +91,8 @@ class AdWebView extends WebView implements Displayable,
     private int default_height;
     boolean isFullScreen = false;
     private boolean firstPageFinished;
+    // LatencyMetrics start of the creative load, 0 if not timed
+    private long loadStartNanos;
     private int creativeWidth;
     private int creativeHeight;
     // for viewable event
@@ -112,21 +118,42 @@ class AdWebView extends WebView implements Displayable,
     private VideoEnabledWebChromeClient mWebChromeClient;
     private boolean nativeRenderingFailed = false;
 
-    private final String RENDERER_FILE = "apn_renderNativeAssets.html";
-    String RENDERER_URL = "AN_NATIVE_ASSEMBLY_RENDERER_URL";
-    String RENDERER_JSON = "AN_NATIVE_RESPONSE_OBJECT";
     private boolean isDestroyTriggered;
 
     public AdWebView(AdView adView, UTAdRequester requester) {
         super(new MutableContextWrapper(adView.getContext()));
+        setupSettings();
+        bind(adView, requester);
+    }
+
+    /**
+     * Creates a configured view that is not bound to any AdView yet, for the {@link AdWebViewPool}.
+     * {@link #bind(AdView, UTAdRequester)} must be called before loading an ad in it.
+     */
+    AdWebView(Context context) {
+        super(new MutableContextWrapper(context));
+        setupSettings();
+    }
+
+    /**
+     * Attaches the view to the AdView it will display an ad for.
+     */
+    void bind(AdView adView, UTAdRequester requester) {
+        ((MutableContextWrapper) getContext()).setBaseContext(adView.getContext());
         this.adView = adView;
         this.caller_requester = requester;
         this.initialMraidStateString = MRAIDImplementation.MRAID_INIT_STATE_STRINGS[
                 MRAIDImplementation.MRAID_INIT_STATE.STARTING_DEFAULT.ordinal()];
-        setupSettings();
         setup();
     }
 
+    /**
+     * @return true once {@link #destroy()} has been called
+     */
+    boolean isDestroyed() {
+        return isDestroyTriggered;
+    }
+
 
     @SuppressWarnings("deprecation")
     @SuppressLint("SetJavaScriptEnabled")
@@ -182,6 +209,7 @@ class AdWebView extends WebView implements Displayable,
     }
 
     public void loadAd(BaseAdResponse ad) {
+        long traceStart = SDKTrace.begin(SDKTrace.LOAD_WEBVIEW);
         try {
             if (ad == null) {
                 fail();
@@ -213,7 +241,7 @@ class AdWebView extends WebView implements Displayable,
                 return;
             }
 
-            Clog.i(Clog.baseLogTag, Clog.getString(R.string.webview_loading, html));
+            Clog.v(Clog.baseLogTag, R.string.webview_loading, html);
 
             parseAdResponseExtras(ad.getExtras());
             adResponseData = ad;
@@ -237,16 +265,14 @@ class AdWebView extends WebView implements Displayable,
                     Gravity.CENTER);
             this.setLayoutParams(resize);
 
+            loadStartNanos = LatencyMetrics.start();
             if (isVideoAd) {
                 videoImplementation = new VideoImplementation(this);
                 videoImplementation.setVASTXML(html);
                 this.loadUrl(Settings.getVideoHtmlPage());
             } else {
                 if (!isNativeAd) {
-                    html = preLoadContent(html);
-                    html = prependRawResources(html);
-                    html = prependViewPort(html);
-                    html = omidAdSession.prependOMIDJSToHTML(html);
+                    html = assembleHtml(html, omidAdSession.getOMIDJSToInject());
                 }
                 this.loadDataWithBaseURL(Settings.getWebViewBaseUrl(), html, "text/html", "UTF-8", null);
             }
@@ -255,6 +281,8 @@ class AdWebView extends WebView implements Displayable,
             // This prevents app crash because of ads.
             Clog.e(Clog.baseLogTag, "AdWebView.loadAd -- Caught OutOfMemoryError", exception);
             fail();
+        } finally {
+            SDKTrace.end(SDKTrace.LOAD_WEBVIEW, traceStart);
         }
     }
 
@@ -268,45 +296,9 @@ class AdWebView extends WebView implements Displayable,
 
 
     // The webview about to load the ad, and the html ad content
-    private String preLoadContent(String html) {
-        if (!StringUtil.isEmpty(html)) {
-            // trim leading and trailing spaces
-            html = html.trim();
-            // check to see if content is wrapped with <html> tag
-            if (!html.startsWith("<html>")) {
-                StringBuilder bodyBuilder = new StringBuilder();
-                html = bodyBuilder.append("<html><body style='padding:0;margin:0;'>").append(html).append("</body></html>").toString();
-            }
-        }
-        return html;
-    }
-
-    private String prependRawResources(String html) {
-        if (!StringUtil.isEmpty(html)) {
-            Resources res = getResources();
-            StringBuilder htmlSB = new StringBuilder("<html><head><script>");
-
-            // retrieve source from raw resources
-            // insert sdkjs, anjam  into html content, in that order
-            // mraid is loaded when intercepting network call and not needed here else created problem #MS-3790
-            if (res == null
-                    || !StringUtil.appendRes(htmlSB, res, R.raw.sdkjs)
-                    || !StringUtil.appendRes(htmlSB, res, R.raw.anjam)
-                    || !StringUtil.appendRes(htmlSB, res, R.raw.apn_mraid)) {
-                Clog.e(Clog.baseLogTag, "Error reading SDK's raw resources.");
-                return html;
-            }
-            htmlSB.append("</script></head>");
-            html = html.replaceFirst("<html>", htmlSB.toString());
-        }
-        return html;
-    }
-
-    private String prependViewPort(String html) {
-        if (!StringUtil.isEmpty(html)) {
-            html = html.replaceFirst("<head>", "<head><meta name=\"viewport\" content=\"width=device-width,initial-scale=1.0,user-scalable=no\"/>");
-        }
-        return html;
+    private String assembleHtml(String html, String omidScript) {
+        String htmlPrefix = ScriptResources.getInstance().getHtmlPrefix(getContextFromMutableContext());
+        return CreativeHtmlAssembler.assemble(html, htmlPrefix, omidScript);
     }
 
 
@@ -332,9 +324,7 @@ class AdWebView extends WebView implements Displayable,
             @Override
             protected void onPostExecute(HTTPResponse response) {
                 if (response.getSucceeded()) {
-                    String html = preLoadContent(response.getResponseBody());
-                    html = prependRawResources(html);
-                    html = prependViewPort(html);
+                    String html = assembleHtml(response.getResponseBody(), null);
 
                     loadDataWithBaseURL(Settings.getWebViewBaseUrl(), html, "text/html", "UTF-8", null);
                     fireMRAIDEnabled();
@@ -345,6 +335,16 @@ class AdWebView extends WebView implements Displayable,
             protected String getUrl() {
                 return url;
             }
+
+            @Override
+            protected TaskPriority getTaskPriority() {
+                return TaskPriority.AD_REQUEST;
+            }
+
+            @Override
+            protected HTTPCompression.Endpoint getCompressionEndpoint() {
+                return HTTPCompression.Endpoint.MRAID_EXPAND;
+            }
         };
         load.execute();
     }
@@ -380,7 +380,7 @@ class AdWebView extends WebView implements Displayable,
                 return false;
             }
 
-            Clog.v(Clog.baseLogTag, "Loading URL: " + url);
+            Clog.v(Clog.baseLogTag, "Loading URL: %s", url);
 
             if (adView == null) {
                 return false;
@@ -457,6 +457,13 @@ class AdWebView extends WebView implements Displayable,
                     omidAdSession.initAdSession(AdWebView.this, isVideoAd);
                 }
 
+                if (loadStartNanos != 0 && adView != null) {
+                    UTRequestParameters requestParameters = adView.getRequestParameters();
+                    LatencyMetrics.record(LatencyMetrics.Phase.WEBVIEW_LOAD, requestParameters.getPlacementID(),
+                            requestParameters.getMediaType(), adResponseData != null ? adResponseData.getAdType() : null, loadStartNanos);
+                    loadStartNanos = 0;
+                }
+
                 firstPageFinished = true;
             }
         }
@@ -764,7 +771,8 @@ class AdWebView extends WebView implements Displayable,
 
         if (isNativeAd) {
             NativeAdSDK.unRegisterTracking(this);
-        } else {
+        } else if (implementation != null) {
+            // Views from the AdWebViewPool may be destroyed before being bound
             omidAdSession.stopAdSession();
             implementation.destroy();
         }
@@ -1273,16 +1281,15 @@ class AdWebView extends WebView implements Displayable,
         final ANNativeAdResponse nativeAdResponse = ((RTBNativeAdResponse) response).getNativeAdResponse();
         JSONObject nativeJson = nativeAdResponse.getNativeRendererObject();
         adResponseData = response;
-        try {
-            String htmlContentInStringFormat = StringUtil.getStringFromAsset(RENDERER_FILE, getContextFromMutableContext());
-            htmlContentInStringFormat = htmlContentInStringFormat.replace(RENDERER_URL, nativeAdResponse.getRendererUrl());
-            htmlContentInStringFormat = htmlContentInStringFormat.replace(RENDERER_JSON, nativeJson.toString());
-            Clog.d(Clog.baseLogTag + "-NATIVE_JSON", nativeJson.toString());
-            Clog.d(Clog.baseLogTag + "-RENDERER_URL", nativeAdResponse.getRendererUrl());
-            Clog.d(Clog.baseLogTag + "-HTML", htmlContentInStringFormat);
+        ScriptResources.RendererTemplate template = ScriptResources.getInstance().getRendererTemplate(getContextFromMutableContext());
+        if (template != null) {
+            String htmlContentInStringFormat = template.render(nativeAdResponse.getRendererUrl(), nativeJson.toString());
+            if (Clog.isLoggable(Clog.baseLogTag, ClogListener.LOG_LEVEL.D)) {
+                Clog.d(Clog.baseLogTag + "-NATIVE_JSON", nativeJson.toString());
+                Clog.d(Clog.baseLogTag + "-RENDERER_URL", nativeAdResponse.getRendererUrl());
+                Clog.d(Clog.baseLogTag + "-HTML", htmlContentInStringFormat);
+            }
             return htmlContentInStringFormat;
-        } catch (IOException e) {
-            e.printStackTrace();
         }
         return "";
     }
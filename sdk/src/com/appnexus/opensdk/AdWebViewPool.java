@@ -0,0 +1,192 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import com.appnexus.opensdk.ut.UTAdRequester;
+import com.appnexus.opensdk.ut.UTRequestParameters;
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.LatencyMetrics;
+
+import java.util.LinkedList;
+
+/**
+ * Keeps a few configured {@link AdWebView}s ready, so that loading an ad or refreshing a banner does not pay
+ * for the WebView construction on the main thread. The first WebView of a process is the expensive one, as it
+ * loads Chromium.
+ * <p>
+ * Views are built while the main thread is idle, after {@link SDKSettings#init}, and after each view handed out.
+ * A pooled view never loaded anything: it is bound to its AdView when handed out, and destroyed by its owner
+ * as any other AdWebView. Views that displayed an ad are never returned to the pool, as the creative's
+ * JavaScript state cannot be reliably reset. The pool is emptied when the system is low on memory.
+ * <p>
+ * Main thread only.
+ */
+class AdWebViewPool implements ComponentCallbacks2 {
+
+    static final int MAX_POOL_SIZE = 2;
+
+    private final LinkedList<AdWebView> pool = new LinkedList<AdWebView>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Context appContext;
+    private int maxSize = MAX_POOL_SIZE;
+    private boolean warming = false;
+
+    private static class AdWebViewPoolWrapper {
+        // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
+        private static final AdWebViewPool INSTANCE = new AdWebViewPool();
+    }
+
+    static AdWebViewPool getInstance() {
+        return AdWebViewPoolWrapper.INSTANCE;
+    }
+
+    private AdWebViewPool() {
+    }
+
+    private final MessageQueue.IdleHandler warmer = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            // One view per idle callback, keep the main thread responsive
+            warming = addPooledView() && pool.size() < maxSize;
+            return warming;
+        }
+    };
+
+    /**
+     * Builds one view if the pool is not full.
+     *
+     * @return true if a view was added
+     */
+    boolean addPooledView() {
+        if (appContext == null || pool.size() >= maxSize) {
+            return false;
+        }
+        try {
+            pool.add(new AdWebView(appContext));
+            return true;
+        } catch (Exception e) {
+            // No WebView available on this device, or it is being updated
+            Clog.w(Clog.baseLogTag, "Unable to pre-warm an AdWebView: " + e.getMessage());
+            maxSize = 0;
+            return false;
+        }
+    }
+
+    /**
+     * Starts filling the pool once the main thread is idle. Can be called from any thread.
+     */
+    void warmUp(Context context) {
+        final Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                setContext(applicationContext);
+                scheduleWarmUp();
+            }
+        });
+    }
+
+    void setContext(Context applicationContext) {
+        if (appContext == null) {
+            appContext = applicationContext;
+            appContext.registerComponentCallbacks(this);
+        }
+    }
+
+    private void scheduleWarmUp() {
+        if (!warming && appContext != null && pool.size() < maxSize) {
+            warming = true;
+            Looper.myQueue().addIdleHandler(warmer);
+        }
+    }
+
+    /**
+     * @return a view bound to the given AdView, from the pool if one is ready, newly built otherwise
+     */
+    AdWebView obtain(AdView adView, UTAdRequester requester) {
+        long start = LatencyMetrics.start();
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            AdWebView adWebView = new AdWebView(adView, requester);
+            recordLatency(adView, "created", start);
+            return adWebView;
+        }
+        AdWebView adWebView = null;
+        while (adWebView == null && !pool.isEmpty()) {
+            adWebView = pool.removeFirst();
+            if (adWebView.isDestroyed()) {
+                adWebView = null;
+            }
+        }
+        if (adWebView == null) {
+            adWebView = new AdWebView(adView, requester);
+            recordLatency(adView, "created", start);
+        } else {
+            adWebView.bind(adView, requester);
+            recordLatency(adView, "pooled", start);
+        }
+        // Get the next one ready for the refresh
+        scheduleWarmUp();
+        return adWebView;
+    }
+
+    private static void recordLatency(AdView adView, String source, long start) {
+        if (start != 0) {
+            UTRequestParameters requestParameters = adView.getRequestParameters();
+            LatencyMetrics.record(LatencyMetrics.Phase.WEBVIEW_CREATE, requestParameters.getPlacementID(),
+                    requestParameters.getMediaType(), source, start);
+        }
+    }
+
+    /**
+     * Destroys pooled views until at most size are left.
+     */
+    void shrink(int size) {
+        while (pool.size() > size) {
+            pool.removeLast().destroy();
+        }
+    }
+
+    int size() {
+        return pool.size();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Running low, or in the background where pooled views are of no use
+            shrink(0);
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            shrink(1);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        shrink(0);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
@@ -104,6 +104,7 @@ public class BannerAdView extends AdView implements ScreenEventListener {
     private Animator animator;
     private boolean autoRefreshOffInXML;
     private VideoOrientation videoOrientation = UNKNOWN;
+    private RefreshGovernor refreshGovernor;
 
     private void setDefaultsBeforeXML() {
         loadAdHasBeenCalled = false;
@@ -184,6 +185,9 @@ public class BannerAdView extends AdView implements ScreenEventListener {
         if (autoRefreshOffInXML) {
             mAdFetcher.start();
         }
+        // Auto refresh only runs while the banner is on screen
+        refreshGovernor = new RefreshGovernor(mAdFetcher);
+        VisibilityDetector.getInstance().addVisibilityListener(this, refreshGovernor);
     }
 
     private void registerScreenEventListener() {
@@ -946,6 +950,10 @@ public class BannerAdView extends AdView implements ScreenEventListener {
 
     @Override
     public void destroy() {
+        if (refreshGovernor != null) {
+            VisibilityDetector.getInstance().removeVisibilityListener(this, refreshGovernor);
+            refreshGovernor = null;
+        }
         super.destroy();
     }
 
@@ -20,6 +20,7 @@ import android.view.View;
 
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.Settings;
+import com.appnexus.opensdk.utils.TimingWheel;
 import com.appnexus.opensdk.viewability.ANOmidAdSession;
 import com.appnexus.opensdk.viewability.ANOmidVerificationScriptParseUtil;
 import com.iab.omid.library.appnexus.adsession.VerificationScriptResource;
@@ -32,6 +33,7 @@ public abstract class BaseNativeAdResponse implements NativeAdResponse {
 
     protected ANOmidAdSession anOmidAdSession = new ANOmidAdSession();
     private ANAdResponseInfo adResponseInfo;
+    private TimingWheel.Timeout expiryTimeout;
 
     protected abstract boolean registerView(View view, NativeAdEventListener listener);
 
@@ -88,6 +90,30 @@ public abstract class BaseNativeAdResponse implements NativeAdResponse {
         }
     }
 
+    /**
+     * Runs task on the main thread after delay, in place of the expiry callback scheduled before if any.
+     * All the responses share the same timer, see {@link TimingWheel}.
+     *
+     * @param task  the about to expire or expire callback
+     * @param delay in milliseconds, task runs on the next main looper message if 0
+     */
+    protected synchronized void scheduleExpiryCallback(Runnable task, long delay) {
+        if (expiryTimeout != null) {
+            expiryTimeout.cancel();
+        }
+        expiryTimeout = TimingWheel.getInstance().schedule(task, delay);
+    }
+
+    /**
+     * Cancels the expiry callback scheduled, once the ad is impressed.
+     */
+    protected synchronized void cancelExpiryCallbacks() {
+        if (expiryTimeout != null) {
+            expiryTimeout.cancel();
+            expiryTimeout = null;
+        }
+    }
+
     protected long getAboutToExpireTime(String contentSource, int memberId) {
         long aboutToExpireTime = Settings.NATIVE_AD_RESPONSE_EXPIRATION_TIME;
         if (contentSource.equalsIgnoreCase("csm") || contentSource.equalsIgnoreCase("csr")) {
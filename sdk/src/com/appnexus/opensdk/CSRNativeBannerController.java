@@ -22,16 +22,19 @@ import android.os.Handler;
 import android.os.Message;
 
 import com.appnexus.opensdk.ut.UTAdRequester;
+import com.appnexus.opensdk.ut.UTRequestParameters;
 import com.appnexus.opensdk.ut.adresponse.BaseAdResponse;
 import com.appnexus.opensdk.ut.adresponse.CSRAdResponse;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
+import com.appnexus.opensdk.utils.LatencyMetrics;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class CSRNativeBannerController implements CSRController {
 
@@ -277,7 +280,15 @@ public class CSRNativeBannerController implements CSRController {
      * calls either of `onAdLoaded` or `onAdFailed`.
      */
     protected void markLatencyStop() {
+        boolean stopped = latencyStop > 0;
         latencyStop = System.currentTimeMillis();
+        if (!stopped && latencyStart > 0 && LatencyMetrics.isEnabled()) {
+            UTAdRequester requester = this.requester.get();
+            UTRequestParameters requestParameters = requester != null ? requester.getRequestParams() : null;
+            LatencyMetrics.recordDuration(LatencyMetrics.Phase.MEDIATION,
+                    requestParameters != null ? requestParameters.getPlacementID() : null, MediaType.NATIVE,
+                    currentAd != null ? currentAd.getClassName() : null, TimeUnit.MILLISECONDS.toNanos(latencyStop - latencyStart));
+        }
     }
 
     /**
@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.StringUtil;
+import com.iab.omid.library.appnexus.ScriptInjector;
+
+/**
+ * Builds the page loaded in an {@link AdWebView} from the creative in a single pass.
+ * <p>
+ * The page is the creative, trimmed and wrapped in {@code <html><body>} unless it already starts with
+ * {@code <html>}, whose leading {@code <html>} is replaced with the head holding the OMID service script,
+ * the viewport and the SDK scripts, in that order. The creative is only scanned for its leading
+ * {@code <html>} and is copied once, into a buffer sized for the whole page.
+ */
+class CreativeHtmlAssembler {
+
+    static final String HTML_HEAD = "<html><head>";
+    static final String BODY_OPEN = "<html><body style='padding:0;margin:0;'>";
+    static final String BODY_CLOSE = "</body></html>";
+    static final String OMID_SCRIPT_OPEN = "<script type=\"text/javascript\">";
+    static final String SCRIPT_CLOSE = "</script>";
+
+    private CreativeHtmlAssembler() {
+    }
+
+    /**
+     * @param creative   the ad content
+     * @param htmlPrefix the viewport and SDK scripts, see {@link ScriptResources#getHtmlPrefix}. null if unavailable.
+     * @param omidScript the OMID service script, null or empty if OMID is disabled
+     * @return the page to load, or the creative itself if it is empty
+     */
+    static String assemble(String creative, String htmlPrefix, String omidScript) {
+        if (StringUtil.isEmpty(creative)) {
+            return creative;
+        }
+        // trim leading and trailing spaces, without copying
+        int start = 0;
+        int end = creative.length();
+        while (start < end && creative.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && creative.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        boolean wrapped = !creative.startsWith(ScriptResources.HTML_TAG, start);
+        if (htmlPrefix == null || !htmlPrefix.startsWith(HTML_HEAD)) {
+            return assembleWithoutScripts(creative, start, end, wrapped, omidScript);
+        }
+        boolean withOmid = !StringUtil.isEmpty(omidScript);
+
+        int capacity = htmlPrefix.length() + (end - start);
+        if (withOmid) {
+            capacity += OMID_SCRIPT_OPEN.length() + omidScript.length() + SCRIPT_CLOSE.length();
+        }
+        if (wrapped) {
+            capacity += BODY_OPEN.length() - ScriptResources.HTML_TAG.length() + BODY_CLOSE.length();
+        }
+        StringBuilder page = new StringBuilder(capacity);
+
+        // OMID goes first in the head, where ScriptInjector puts it
+        page.append(HTML_HEAD);
+        if (withOmid) {
+            page.append(OMID_SCRIPT_OPEN).append(omidScript).append(SCRIPT_CLOSE);
+        }
+        page.append(htmlPrefix, HTML_HEAD.length(), htmlPrefix.length());
+        if (wrapped) {
+            page.append(BODY_OPEN, ScriptResources.HTML_TAG.length(), BODY_OPEN.length())
+                    .append(creative, start, end)
+                    .append(BODY_CLOSE);
+        } else {
+            page.append(creative, start + ScriptResources.HTML_TAG.length(), end);
+        }
+        return page.toString();
+    }
+
+    /**
+     * Fallback for when the SDK scripts could not be read: the viewport goes in the first head of the creative.
+     */
+    private static String assembleWithoutScripts(String creative, int start, int end, boolean wrapped, String omidScript) {
+        StringBuilder page = new StringBuilder((end - start) + BODY_OPEN.length() + BODY_CLOSE.length() + ScriptResources.VIEWPORT.length());
+        if (wrapped) {
+            page.append(BODY_OPEN).append(creative, start, end).append(BODY_CLOSE);
+        } else {
+            page.append(creative, start, end);
+        }
+        int headTag = page.indexOf("<head>");
+        if (headTag != -1) {
+            page.insert(headTag + "<head>".length(), ScriptResources.VIEWPORT);
+        }
+        String html = page.toString();
+        if (!StringUtil.isEmpty(omidScript)) {
+            html = ScriptInjector.injectScriptContentIntoHtml(omidScript, html);
+        }
+        return html;
+    }
+}
@@ -18,6 +18,9 @@ package com.appnexus.opensdk;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.view.View;
 
 import com.appnexus.opensdk.utils.Clog;
@@ -33,7 +36,7 @@ class ImpressionTracker {
     private VisibilityDetector visibilityDetector;
     private boolean fired = false;
     private Context context;
-    private ImpressionListener listener;
+    private VisibilityDetector.VisibilityListener listener;
     private ANOmidAdSession anOmidAdSession;
     private ImpressionTrackerListener impressionTrackerListener;
     private WeakReference<View> viewWeakReference;
@@ -51,13 +54,16 @@ class ImpressionTracker {
         this.viewWeakReference = viewWeakReference;
         this.urls = urls;
         this.visibilityDetector = visibilityDetector;
-        this.listener = new ImpressionListener();
+        this.listener = SDKSettings.getCountNativeImpressionOnViewability()
+                ? new ViewabilityListener(SDKSettings.getNativeViewabilityMinPercentage(), SDKSettings.getNativeViewabilityMinVisibleMillis())
+                : new ImpressionListener();
         this.context = context;
         this.anOmidAdSession = anOmidAdSession;
         this.impressionTrackerListener = impressionTrackerListener;
         View view = viewWeakReference.get();
         if (view != null) {
-            if (!SDKSettings.getCountImpressionOn1pxRendering() && view.getWindowToken() != null) {
+            if (!SDKSettings.getCountImpressionOn1pxRendering() && !SDKSettings.getCountNativeImpressionOnViewability()
+                    && view.getWindowToken() != null) {
                 listener.onVisibilityChanged(true);
             } else {
                 view.setTag(R.string.native_view_tag, listener);
@@ -107,6 +113,69 @@ class ImpressionTracker {
         }
     }
 
+    /**
+     * Fires once a share of the view has been on screen for a continuous period of time.
+     * <p>
+     * Driven by the exposure changes reported by the {@link VisibilityDetector}: crossing the threshold arms a
+     * single timer for the remaining dwell time, dropping below it (scrolled away, occluded, app in background)
+     * pauses the rule and the period starts over on the next crossing. Nothing is computed in between.
+     */
+    class ViewabilityListener implements VisibilityDetector.ExposureListener {
+        private final int minPercentageViewed;
+        private final long minVisibleMillis;
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private long visibleSince = -1;
+
+        private final Runnable dwellCheck = new Runnable() {
+            @Override
+            public void run() {
+                View view = viewWeakReference.get();
+                if (view == null || view.getTag(R.string.native_view_tag) != ViewabilityListener.this) {
+                    visibleSince = -1;
+                    return;
+                }
+                // Re-measure, the window may have been hidden without any view tree event
+                if (visibilityDetector.getVisiblePercentage(view) >= minPercentageViewed) {
+                    Clog.d(Clog.baseLogTag, "FIRING Impression Tracker, viewable for " + (SystemClock.uptimeMillis() - visibleSince) + "ms");
+                    ImpressionTracker.this.fire();
+                } else {
+                    visibleSince = -1;
+                    // The detector still holds the exposure it last reported, have it report the current one
+                    // so that coming back to that same exposure starts a new period
+                    visibilityDetector.addVisibilityListener(view);
+                }
+            }
+        };
+
+        ViewabilityListener(int minPercentageViewed, long minVisibleMillis) {
+            this.minPercentageViewed = minPercentageViewed;
+            this.minVisibleMillis = minVisibleMillis;
+        }
+
+        @Override
+        public void onExposureChanged(int percentVisible) {
+            if (fired) {
+                return;
+            }
+            if (percentVisible >= minPercentageViewed) {
+                if (visibleSince < 0) {
+                    // Resume
+                    visibleSince = SystemClock.uptimeMillis();
+                    handler.postDelayed(dwellCheck, minVisibleMillis);
+                }
+            } else if (visibleSince >= 0) {
+                // Pause, the period starts over
+                visibleSince = -1;
+                handler.removeCallbacks(dwellCheck);
+            }
+        }
+
+        @Override
+        public void onVisibilityChanged(boolean visible) {
+            onExposureChanged(visible ? 100 : 0);
+        }
+    }
+
     class ImpressionListener implements VisibilityDetector.VisibilityListener {
 
         @Override
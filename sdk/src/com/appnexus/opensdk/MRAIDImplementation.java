@@ -45,6 +45,7 @@ import android.widget.FrameLayout;
 
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.Hex;
+import com.appnexus.opensdk.utils.SDKTrace;
 import com.appnexus.opensdk.utils.StringUtil;
 import com.appnexus.opensdk.utils.ViewUtil;
 import com.appnexus.opensdk.utils.W3CEvent;
@@ -402,6 +403,15 @@ class MRAIDImplementation {
     }
 
     void dispatch_mraid_call(String url, boolean userInteracted) {
+        long traceStart = SDKTrace.begin(SDKTrace.MRAID_CALL);
+        try {
+            dispatchMraidCall(url, userInteracted);
+        } finally {
+            SDKTrace.end(SDKTrace.MRAID_CALL, traceStart);
+        }
+    }
+
+    private void dispatchMraidCall(String url, boolean userInteracted) {
         // Remove the fake protocol
         url = url.replaceFirst("mraid://", "");
 
@@ -19,15 +19,18 @@ import android.os.Handler;
 import android.os.Message;
 
 import com.appnexus.opensdk.ut.UTAdRequester;
+import com.appnexus.opensdk.ut.UTRequestParameters;
 import com.appnexus.opensdk.ut.adresponse.BaseAdResponse;
 import com.appnexus.opensdk.ut.adresponse.CSMSDKAdResponse;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.LatencyMetrics;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -376,7 +379,15 @@ public abstract class MediatedAdViewController {
      * calls either of `onAdLoaded` or `onAdFailed`.
      */
     protected void markLatencyStop() {
+        boolean stopped = latencyStop > 0;
         latencyStop = System.currentTimeMillis();
+        if (!stopped && latencyStart > 0 && LatencyMetrics.isEnabled()) {
+            UTAdRequester requester = this.caller_requester.get();
+            UTRequestParameters requestParameters = requester != null ? requester.getRequestParams() : null;
+            LatencyMetrics.recordDuration(LatencyMetrics.Phase.MEDIATION,
+                    requestParameters != null ? requestParameters.getPlacementID() : null, mediaType,
+                    currentAd != null ? currentAd.getClassName() : null, TimeUnit.MILLISECONDS.toNanos(latencyStop - latencyStart));
+        }
     }
 
     /**
@@ -22,13 +22,18 @@ import android.os.Message;
 
 import com.appnexus.opensdk.ut.UTAdRequester;
 import com.appnexus.opensdk.ut.UTConstants;
+import com.appnexus.opensdk.ut.UTRequestParameters;
 import com.appnexus.opensdk.ut.adresponse.SSMHTMLAdResponse;
+import com.appnexus.opensdk.tasksmanager.TaskPriority;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.HTTPCompression;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
+import com.appnexus.opensdk.utils.LatencyMetrics;
 import com.appnexus.opensdk.utils.StringUtil;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
 
 
 public class MediatedSSMAdViewController {
@@ -70,6 +75,16 @@ public class MediatedSSMAdViewController {
                 return super.doInBackground(params);
             }
 
+            @Override
+            protected TaskPriority getTaskPriority() {
+                return TaskPriority.AD_REQUEST;
+            }
+
+            @Override
+            protected HTTPCompression.Endpoint getCompressionEndpoint() {
+                return HTTPCompression.Endpoint.SSM;
+            }
+
             @Override
             protected void onPostExecute(HTTPResponse response) {
                 markLatencyStop();
@@ -116,7 +131,7 @@ public class MediatedSSMAdViewController {
         fireResponseURL(ssmHtmlAdResponse, ResultCode.getNewInstance(ResultCode.SUCCESS));
         UTAdRequester requester = this.caller_requester.get();
         if (requester != null) {
-            final AdWebView output = new AdWebView(owner, requester);
+            final AdWebView output = AdWebViewPool.getInstance().obtain(owner, requester);
             output.loadAd(ssmHtmlAdResponse);
         }
     }
@@ -192,7 +207,15 @@ public class MediatedSSMAdViewController {
      * calls either of `onAdLoaded` or `onAdFailed`.
      */
     protected void markLatencyStop() {
+        boolean stopped = latencyStop > 0;
         latencyStop = System.currentTimeMillis();
+        if (!stopped && latencyStart > 0 && LatencyMetrics.isEnabled()) {
+            UTAdRequester requester = this.caller_requester.get();
+            UTRequestParameters requestParameters = requester != null ? requester.getRequestParams() : null;
+            LatencyMetrics.recordDuration(LatencyMetrics.Phase.MEDIATION,
+                    requestParameters != null ? requestParameters.getPlacementID() : null, mediaType,
+                    UTConstants.SSM, TimeUnit.MILLISECONDS.toNanos(latencyStop - latencyStart));
+        }
     }
 
     /**
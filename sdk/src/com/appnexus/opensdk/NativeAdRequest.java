@@ -39,6 +39,10 @@ public class NativeAdRequest implements Ad, MultiAd {
     private final NativeAdDispatcher dispatcher;
     private boolean loadImage;
     private boolean loadIcon;
+    private int imageWidth, imageHeight;
+    private int iconWidth, iconHeight;
+    private Bitmap.Config bitmapConfig;
+    private boolean bitmapReuse = false;
 
     public NativeAdRequest(Context context, String placementID) {
 
@@ -368,6 +372,44 @@ public class NativeAdRequest implements Ad, MultiAd {
         loadIcon = flag;
     }
 
+    /**
+     * Set the size in pixels the Image resource is displayed at. The SDK then decodes the image no larger
+     * than needed to fill this size, instead of at its full resolution. By default, or if any dimension
+     * is 0, the image is decoded at its full resolution.
+     */
+    public void setImageTargetSize(int width, int height) {
+        imageWidth = width;
+        imageHeight = height;
+    }
+
+    /**
+     * Set the size in pixels the Icon image resource is displayed at. The SDK then decodes the icon no larger
+     * than needed to fill this size, instead of at its full resolution. By default, or if any dimension
+     * is 0, the icon is decoded at its full resolution.
+     */
+    public void setIconTargetSize(int width, int height) {
+        iconWidth = width;
+        iconHeight = height;
+    }
+
+    /**
+     * Set the config the Image and Icon resources are decoded into, ARGB_8888 by default.
+     * RGB_565 halves their memory when they have no transparency. HARDWARE keeps their pixels out
+     * of the Java heap on Android O and above, but they can only be drawn.
+     */
+    public void setBitmapConfig(Bitmap.Config config) {
+        bitmapConfig = config;
+    }
+
+    /**
+     * Let the SDK decode the next images into the memory of the Image and Icon resources of the ads from
+     * this request once they expire or are destroyed. Off by default. Only enable it if the app stops
+     * drawing those bitmaps, and drops its references to them, by then: they would show another ad afterwards.
+     */
+    public void setBitmapReuse(boolean enabled) {
+        bitmapReuse = enabled;
+    }
+
     /**
      * Register a listener for ad success/fail to load notification events
      *
@@ -535,8 +577,11 @@ public class NativeAdRequest implements Ad, MultiAd {
                     isLoading = false;
                     return;
                 } else
-                    imageService = new ImageService();
+                    imageService = new ImageService(requestParameters.getContext());
                 this.response = response;
+                if (response instanceof ANNativeAdResponse) {
+                    ((ANNativeAdResponse) response).setBitmapsReusable(bitmapReuse);
+                }
                 ImageService.ImageReceiver imageReceiver = new ImageService.ImageReceiver() {
                     @Override
                     public void onReceiveImage(String key, Bitmap image) {
@@ -556,6 +601,9 @@ public class NativeAdRequest implements Ad, MultiAd {
                     imageUrlMap.put(IMAGE_URL, response.getImageUrl());
                 if (loadIcon)
                     imageUrlMap.put(ICON_URL, response.getIconUrl());
+                imageService.setTargetSize(IMAGE_URL, imageWidth, imageHeight);
+                imageService.setTargetSize(ICON_URL, iconWidth, iconHeight);
+                imageService.setBitmapConfig(bitmapConfig);
                 imageService.registerImageReceiver(imageReceiver, imageUrlMap);
                 imageService.registerNotification(this);
                 imageService.execute();
@@ -64,6 +64,7 @@ public interface NativeAdResponse {
     /**
      * Retrieve the main image resource, null if there was no image available or if
      * shouldLoadImage() was set to false.
+     * The bitmap is not valid anymore once the ad has expired or has been destroyed, stop drawing it by then.
      *
      * @return The Bitmap of the main image
      */
@@ -118,7 +119,8 @@ public interface NativeAdResponse {
 
     /**
      * Retrieve the icon image resource, null if there was no image available or if
-     * shouldLoadIcon returned false for the ad call
+     * shouldLoadIcon returned false for the ad call.
+     * The bitmap is not valid anymore once the ad has expired or has been destroyed, stop drawing it by then.
      *
      * @return The Bitmap of the Icon
      */
@@ -165,7 +167,8 @@ public interface NativeAdResponse {
 
 
     /**
-     * Destroy the response
+     * Destroy the response. The icon and image downloaded by the SDK may be reused for other ads
+     * afterwards, they must not be displayed anymore.
      */
     public void destroy();
 
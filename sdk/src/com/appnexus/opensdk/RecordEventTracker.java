@@ -0,0 +1,147 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.HTTPGet;
+import com.appnexus.opensdk.utils.HTTPResponse;
+import com.appnexus.opensdk.utils.Settings;
+import com.appnexus.opensdk.utils.WebviewUtil;
+
+import java.util.ArrayDeque;
+
+/**
+ * Fires the urls recorded by creatives through ANJAM recordEvent as plain HTTP trackers.
+ * <p>
+ * The cookies of the WebView cookie jar are sent with each url and the ones it sets are stored back, so the
+ * event is recorded as if a WebView had loaded it, without the cost of one. At most
+ * {@link Settings#RECORD_EVENT_MAX_CONCURRENT} urls are in flight, up to {@link Settings#RECORD_EVENT_MAX_WAITING}
+ * others wait in order. Urls recorded while offline, or past that, are handed to the {@link SharedNetworkManager}
+ * to be retried.
+ * <p>
+ * Thread safe.
+ */
+class RecordEventTracker {
+
+    private final ArrayDeque<String> waiting = new ArrayDeque<String>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int inFlight = 0;
+
+    // When the RecordEventTracker class is loaded, RecordEventTrackerHolder is not loaded and hence doesn’t create object when loading the class.
+    // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
+    private static class RecordEventTrackerHolder {
+        private static final RecordEventTracker INSTANCE = new RecordEventTracker();
+    }
+
+    static RecordEventTracker getInstance() {
+        return RecordEventTrackerHolder.INSTANCE;
+    }
+
+    private RecordEventTracker() {
+    }
+
+    void fire(String url, Context context) {
+        SharedNetworkManager nm = SharedNetworkManager.getInstance(context);
+        if (!nm.isConnected(context)) {
+            nm.addURL(url, context);
+            return;
+        }
+        boolean overflow;
+        synchronized (this) {
+            if (inFlight < Settings.RECORD_EVENT_MAX_CONCURRENT) {
+                inFlight++;
+                overflow = false;
+            } else if (waiting.size() < Settings.RECORD_EVENT_MAX_WAITING) {
+                waiting.add(url);
+                return;
+            } else {
+                overflow = true;
+            }
+        }
+        if (overflow) {
+            Clog.d(Clog.baseLogTag, "RecordEvent queue is full, retrying later: " + url);
+            nm.addURL(url, context);
+        } else {
+            execute(url);
+        }
+    }
+
+    private void execute(final String url) {
+        @SuppressLint("StaticFieldLeak") HTTPGet recordEvent = new HTTPGet() {
+            @Override
+            protected void onPostExecute(HTTPResponse response) {
+                if (response != null && response.getSucceeded()) {
+                    Clog.d(Clog.baseLogTag, "RecordEvent completed loading: " + url);
+                    if (isCookieAccessAllowed()) {
+                        WebviewUtil.storeCookies(url, response.getHeaders());
+                    }
+                } else {
+                    Clog.d(Clog.baseLogTag, "RecordEvent failed loading: " + url);
+                }
+                onFinished();
+            }
+
+            @Override
+            protected String getUrl() {
+                return url;
+            }
+
+            @Override
+            protected String getCookie() {
+                return WebviewUtil.getCookie(url);
+            }
+        };
+        try {
+            recordEvent.execute();
+        } catch (RuntimeException e) {
+            // Not started, onPostExecute will never run: free the slot here
+            Clog.w(Clog.baseLogTag, "RecordEvent could not be started: " + url);
+            onFinished();
+        }
+    }
+
+    private void onFinished() {
+        final String next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        // From the main thread the request is handed to the executor, rather than run inline on this stack
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                execute(next);
+            }
+        });
+    }
+
+    synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    private static boolean isCookieAccessAllowed() {
+        return Settings.getSettings().deviceAccessAllowed && !Settings.getSettings().doNotTrack;
+    }
+}
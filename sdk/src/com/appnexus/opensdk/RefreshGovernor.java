@@ -0,0 +1,51 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.Settings;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Pauses the auto refresh of a banner while less than {@link Settings#REFRESH_MIN_VISIBLE_PERCENTAGE} of it
+ * is on screen: scrolled away in a list, covered by another fragment, or in a hidden window. The banner
+ * refreshes again with the time that was left once it comes back.
+ * <p>
+ * Driven by the {@link VisibilityDetector}, it is only called when the visible share of the banner changes.
+ */
+class RefreshGovernor implements VisibilityDetector.ExposureListener {
+
+    // Weak, the detector outlives the banners
+    private final WeakReference<AdFetcher> fetcherReference;
+
+    RefreshGovernor(AdFetcher fetcher) {
+        this.fetcherReference = new WeakReference<AdFetcher>(fetcher);
+    }
+
+    @Override
+    public void onExposureChanged(int percentVisible) {
+        AdFetcher fetcher = fetcherReference.get();
+        if (fetcher != null) {
+            fetcher.setPaused(percentVisible < Settings.REFRESH_MIN_VISIBLE_PERCENTAGE);
+        }
+    }
+
+    @Override
+    public void onVisibilityChanged(boolean visible) {
+        // Exposure listeners get onExposureChanged
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.Settings;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the ad requests of every {@link AdFetcher} from a single thread.
+ * <p>
+ * Requests due within {@link Settings#REFRESH_ALIGNMENT_WINDOW} of each other are fired together, so that
+ * several ads refreshing on the same screen wake the device and the radio up once. A request can be delayed
+ * by up to that window, never fired early. Periodic requests keep their fixed rate, the delay does not add up.
+ * Scheduling and cancelling never block.
+ */
+class RefreshScheduler {
+
+    /**
+     * A scheduled request.
+     */
+    static final class Job {
+        private final Runnable task;
+        private final long period;
+        private long nextRun;
+        private long bucket;
+        private volatile boolean cancelled = false;
+
+        private Job(Runnable task, long nextRun, long period) {
+            this.task = task;
+            this.nextRun = nextRun;
+            this.period = period;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static class Bucket {
+        final ArrayList<Job> jobs = new ArrayList<Job>();
+        ScheduledFuture<?> future;
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final long alignmentWindow;
+    // Buckets of jobs by the time they fire at, in milliseconds of System.nanoTime()
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<Long, Bucket>();
+
+    // When the RefreshScheduler class is loaded, RefreshSchedulerHolder is not loaded and hence doesn’t create object when loading the class.
+    // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
+    private static class RefreshSchedulerHolder {
+        private static final RefreshScheduler INSTANCE = new RefreshScheduler(Settings.REFRESH_ALIGNMENT_WINDOW);
+    }
+
+    static RefreshScheduler getInstance() {
+        return RefreshSchedulerHolder.INSTANCE;
+    }
+
+    RefreshScheduler(long alignmentWindow) {
+        this.alignmentWindow = alignmentWindow;
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ANRefreshScheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // The thread only lives while requests are scheduled
+        executor.setKeepAliveTime(Settings.REFRESH_SCHEDULER_KEEP_ALIVE, TimeUnit.MILLISECONDS);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param task   runs on the scheduler thread, it must only hand the request over to another thread
+     * @param delay  in milliseconds before the first run
+     * @param period in milliseconds between the runs, the task runs once if 0 or less
+     * @return to cancel the task
+     */
+    synchronized Job schedule(Runnable task, long delay, long period) {
+        Job job = new Job(task, now() + Math.max(0, delay), period);
+        add(job);
+        return job;
+    }
+
+    /**
+     * Makes sure the task of job does not run anymore, returns immediately.
+     */
+    synchronized void cancel(Job job) {
+        if (job == null || job.cancelled) {
+            return;
+        }
+        job.cancelled = true;
+        Bucket bucket = buckets.get(job.bucket);
+        if (bucket != null) {
+            bucket.jobs.remove(job);
+            if (bucket.jobs.isEmpty()) {
+                bucket.future.cancel(false);
+                buckets.remove(job.bucket);
+            }
+        }
+    }
+
+    synchronized int size() {
+        int size = 0;
+        for (Bucket bucket : buckets.values()) {
+            size += bucket.jobs.size();
+        }
+        return size;
+    }
+
+    private void add(Job job) {
+        // Join the first bucket that fires within the window, or start one
+        Map.Entry<Long, Bucket> entry = buckets.ceilingEntry(job.nextRun);
+        if (entry != null && entry.getKey() - job.nextRun <= alignmentWindow) {
+            job.bucket = entry.getKey();
+            entry.getValue().jobs.add(job);
+            return;
+        }
+        final long time = job.nextRun;
+        Bucket bucket = new Bucket();
+        bucket.jobs.add(job);
+        bucket.future = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fire(time);
+            }
+        }, Math.max(0, time - now()), TimeUnit.MILLISECONDS);
+        job.bucket = time;
+        buckets.put(time, bucket);
+    }
+
+    private void fire(long time) {
+        ArrayList<Job> jobs;
+        synchronized (this) {
+            Bucket bucket = buckets.remove(time);
+            if (bucket == null) {
+                return;
+            }
+            jobs = bucket.jobs;
+            for (Job job : jobs) {
+                if (job.period > 0) {
+                    // Fixed rate, from when the job was due rather than when its bucket fired.
+                    // The runs missed while the device slept are skipped, not caught up in a burst.
+                    job.nextRun += job.period;
+                    long now = now();
+                    if (job.nextRun < now) {
+                        job.nextRun += ((now - job.nextRun) / job.period + 1) * job.period;
+                    }
+                    add(job);
+                }
+            }
+        }
+        for (Job job : jobs) {
+            if (!job.cancelled) {
+                job.task.run();
+            }
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
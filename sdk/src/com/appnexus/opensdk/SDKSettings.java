@@ -26,6 +26,8 @@ import android.webkit.WebView;
 import com.appnexus.opensdk.tasksmanager.TasksManager;
 import com.appnexus.opensdk.utils.AdvertisingIDUtil;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.DebugCapture;
+import com.appnexus.opensdk.utils.LatencyMetrics;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 import com.appnexus.opensdk.viewability.ANOmidViewabilty;
@@ -38,6 +40,9 @@ import java.util.Map;
 import java.util.concurrent.Executor;
 
 import static com.appnexus.opensdk.utils.Settings.countImpressionOn1pxRendering;
+import static com.appnexus.opensdk.utils.Settings.countNativeImpressionOnViewability;
+import static com.appnexus.opensdk.utils.Settings.nativeViewabilityMinPercentage;
+import static com.appnexus.opensdk.utils.Settings.nativeViewabilityMinVisibleMillis;
 
 /**
  * Global static functions that apply to all SDK views and calls.
@@ -510,6 +515,28 @@ public class SDKSettings {
         useBackgroundThreads = enable;
     }
 
+    /**
+     * Keeps the last ad requests and responses in memory for debugging, see {@link DebugCapture}.
+     * Only meant for development builds, default is set to false.
+     * @param enable true to start capturing, false to stop and release what was captured
+     * */
+    public static void enableDebugCapture(boolean enable) {
+        if (enable) {
+            DebugCapture.enable();
+        } else {
+            DebugCapture.disable();
+        }
+    }
+
+    /**
+     * Times the phases of ad loads in histograms, see {@link LatencyMetrics}.
+     * Default is set to false.
+     * @param enable true to start timing, false to stop
+     * */
+    public static void enableLatencyMetrics(boolean enable) {
+        LatencyMetrics.setEnabled(enable);
+    }
+
     public static void init(Context context, final InitListener listener) {
         init(context, listener, true, true);
     }
@@ -549,6 +576,10 @@ public class SDKSettings {
             });
         }
         Clog.setErrorContext(context.getApplicationContext());
+        // Read the scripts injected in every creative ahead of the first ad
+        ScriptResources.getInstance().preload(context);
+        // Build the first WebViews, and load Chromium, while the app is idle
+        AdWebViewPool.getInstance().warmUp(context);
         /*
          * We have a check where it executes the block only when getAAID() is empty,
          * thus if we setAAID() prior to calling SDKSettings.init() it won't run following block.
@@ -598,6 +629,54 @@ public class SDKSettings {
         countImpressionOn1pxRendering = enable;
     }
 
+    /**
+     * To count Native impressions only once the registered view has been continuously on screen for a period of time.
+     * By default {@link Settings#MIN_PERCENTAGE_VIEWED} percent of the view must be visible for
+     * {@link Settings#NATIVE_AD_VISIBLE_PERIOD_MILLIS} milliseconds, see {@link #setNativeViewabilityThreshold(int, long)}.
+     * Takes precedence over {@link #setCountImpressionOn1pxRendering(boolean)} for Native ads.
+     * @param enable set true to enable, false to disable. Default is false.
+     * */
+    public static void setCountNativeImpressionOnViewability(boolean enable) {
+        countNativeImpressionOnViewability = enable;
+    }
+
+    /**
+     * @return boolean that states the value of countNativeImpressionOnViewability
+     * set by using {@link #setCountNativeImpressionOnViewability(boolean)}. Default is false.
+     * */
+    public static boolean getCountNativeImpressionOnViewability() {
+        return countNativeImpressionOnViewability;
+    }
+
+    /**
+     * To change the viewability threshold used when {@link #setCountNativeImpressionOnViewability(boolean)} is enabled.
+     * If the visible share of the view drops below the threshold, the period starts over.
+     * @param minPercentageViewed share of the view that must be on screen, from 1 to 100.
+     * @param minVisibleMillis time in milliseconds the view must stay above the threshold, 0 or more.
+     * */
+    public static void setNativeViewabilityThreshold(int minPercentageViewed, long minVisibleMillis) {
+        if (minPercentageViewed < 1 || minPercentageViewed > 100 || minVisibleMillis < 0) {
+            Clog.w(Clog.baseLogTag, "Invalid viewability threshold " + minPercentageViewed + "% for " + minVisibleMillis + "ms, ignored");
+            return;
+        }
+        nativeViewabilityMinPercentage = minPercentageViewed;
+        nativeViewabilityMinVisibleMillis = minVisibleMillis;
+    }
+
+    /**
+     * @return the share of the view, in percent, that must be on screen to count a Native impression on viewability
+     * */
+    public static int getNativeViewabilityMinPercentage() {
+        return nativeViewabilityMinPercentage;
+    }
+
+    /**
+     * @return the time in milliseconds the view must stay on screen to count a Native impression on viewability
+     * */
+    public static long getNativeViewabilityMinVisibleMillis() {
+        return nativeViewabilityMinVisibleMillis;
+    }
+
 
     /**
      * @deprecated This will be removed in future releases. This is introduced just a fail safe kill switch for initial rollout. No Alternative.
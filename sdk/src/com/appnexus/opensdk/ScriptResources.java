@@ -0,0 +1,186 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.Context;
+
+import com.appnexus.opensdk.tasksmanager.TasksManager;
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.StringUtil;
+
+import java.io.IOException;
+
+/**
+ * Process-wide cache of the scripts and templates injected in every creative.
+ * <p>
+ * sdkjs, anjam and mraid are read from the raw resources once and kept as a single prebuilt HTML prefix.
+ * The native renderer template is read from the assets once and kept split around its placeholders.
+ * Both are immutable once loaded. {@link #preload(Context)} loads them on a background thread during
+ * {@link SDKSettings#init}, otherwise they are loaded by the first ad that needs them.
+ */
+class ScriptResources {
+
+    static final String HTML_TAG = "<html>";
+    static final String VIEWPORT = "<meta name=\"viewport\" content=\"width=device-width,initial-scale=1.0,user-scalable=no\"/>";
+
+    private static final String RENDERER_FILE = "apn_renderNativeAssets.html";
+    static final String RENDERER_URL = "AN_NATIVE_ASSEMBLY_RENDERER_URL";
+    static final String RENDERER_JSON = "AN_NATIVE_RESPONSE_OBJECT";
+
+    private volatile String sdkScripts;
+    private volatile String htmlPrefix;
+    private volatile RendererTemplate rendererTemplate;
+
+    private static class ScriptResourcesWrapper {
+        // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
+        private static final ScriptResources INSTANCE = new ScriptResources();
+    }
+
+    static ScriptResources getInstance() {
+        return ScriptResourcesWrapper.INSTANCE;
+    }
+
+    private ScriptResources() {
+    }
+
+    /**
+     * Loads everything in the background, so that the first ad does not pay for it.
+     */
+    void preload(final Context context) {
+        final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        TasksManager.getInstance().executeOnBackgroundThread(new Runnable() {
+            @Override
+            public void run() {
+                getHtmlPrefix(appContext);
+                getRendererTemplate(appContext);
+            }
+        });
+    }
+
+    /**
+     * @return sdkjs, anjam and mraid, in that order, or null if they could not be read
+     */
+    String getSDKScripts(Context context) {
+        String scripts = sdkScripts;
+        if (scripts == null) {
+            synchronized (this) {
+                scripts = sdkScripts;
+                if (scripts == null) {
+                    StringBuilder builder = new StringBuilder(64 * 1024);
+                    // mraid is loaded when intercepting network call and not needed here else created problem #MS-3790
+                    if (StringUtil.appendRes(builder, context.getResources(), R.raw.sdkjs)
+                            && StringUtil.appendRes(builder, context.getResources(), R.raw.anjam)
+                            && StringUtil.appendRes(builder, context.getResources(), R.raw.apn_mraid)) {
+                        scripts = builder.toString();
+                        sdkScripts = scripts;
+                    } else {
+                        Clog.e(Clog.baseLogTag, "Error reading SDK's raw resources.");
+                    }
+                }
+            }
+        }
+        return scripts;
+    }
+
+    /**
+     * @return what the leading {@code <html>} of a creative is replaced with: the viewport and the SDK scripts
+     * in their own head. null if the scripts could not be read.
+     */
+    String getHtmlPrefix(Context context) {
+        String prefix = htmlPrefix;
+        if (prefix == null) {
+            String scripts = getSDKScripts(context);
+            if (scripts == null) {
+                return null;
+            }
+            prefix = new StringBuilder(scripts.length() + 256)
+                    .append("<html><head>").append(VIEWPORT)
+                    .append("<script>").append(scripts).append("</script></head>")
+                    .toString();
+            htmlPrefix = prefix;
+        }
+        return prefix;
+    }
+
+    /**
+     * @return the native renderer template, null if it could not be read
+     */
+    RendererTemplate getRendererTemplate(Context context) {
+        RendererTemplate template = rendererTemplate;
+        if (template == null) {
+            synchronized (this) {
+                template = rendererTemplate;
+                if (template == null) {
+                    try {
+                        template = new RendererTemplate(StringUtil.readFully(context.getAssets().open(RENDERER_FILE)));
+                        rendererTemplate = template;
+                    } catch (IOException e) {
+                        Clog.e(Clog.baseLogTag, "Error reading " + RENDERER_FILE + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return template;
+    }
+
+    /**
+     * The native renderer page, split once around the renderer URL and response placeholders.
+     */
+    static class RendererTemplate {
+        private final String[] segments;
+        // For each placeholder between two segments, true for the renderer URL, false for the response
+        private final boolean[] isUrl;
+        private final int literalLength;
+
+        RendererTemplate(String template) {
+            int count = countOccurrences(template, RENDERER_URL) + countOccurrences(template, RENDERER_JSON);
+            segments = new String[count + 1];
+            isUrl = new boolean[count];
+            int from = 0;
+            int length = 0;
+            for (int i = 0; i < count; i++) {
+                int url = template.indexOf(RENDERER_URL, from);
+                int json = template.indexOf(RENDERER_JSON, from);
+                boolean nextIsUrl = url != -1 && (json == -1 || url < json);
+                int at = nextIsUrl ? url : json;
+                segments[i] = template.substring(from, at);
+                length += segments[i].length();
+                isUrl[i] = nextIsUrl;
+                from = at + (nextIsUrl ? RENDERER_URL.length() : RENDERER_JSON.length());
+            }
+            segments[count] = template.substring(from);
+            literalLength = length + segments[count].length();
+        }
+
+        String render(String rendererUrl, String responseJson) {
+            int count = isUrl.length;
+            StringBuilder html = new StringBuilder(literalLength + count * Math.max(rendererUrl.length(), responseJson.length()));
+            for (int i = 0; i < count; i++) {
+                html.append(segments[i]).append(isUrl[i] ? rendererUrl : responseJson);
+            }
+            return html.append(segments[count]).toString();
+        }
+
+        private static int countOccurrences(String text, String token) {
+            int count = 0;
+            for (int at = text.indexOf(token); at != -1; at = text.indexOf(token, at + token.length())) {
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -16,27 +16,48 @@
 
 package com.appnexus.opensdk;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
 import com.appnexus.opensdk.utils.HttpErrorCode;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Retries the trackers that could not be fired while the device was offline.
+ * <p>
+ * Pending trackers are journaled in a {@link TrackerOutbox} so that a tracker queued right before the
+ * app is killed is delivered on the next launch. Failed attempts back off exponentially with jitter,
+ * and the whole queue is drained as soon as connectivity comes back.
+ * <p>
+ * {@link #addURL(String, Context, ImpressionTrackerListener)} is lock free and can be called from any thread.
+ * New trackers go through a concurrent inbox, everything else (the pending list, the outbox, the attempt
+ * results) is confined to the single retry thread, so no state is ever shared between threads.
+ */
 public class SharedNetworkManager {
 
     private static SharedNetworkManager manager;
 
-    public static SharedNetworkManager getInstance(Context context) {
+    public static synchronized SharedNetworkManager getInstance(Context context) {
         if (manager == null) {
             manager = new SharedNetworkManager(context);
         }
@@ -44,13 +65,44 @@ public class SharedNetworkManager {
     }
 
 
-    private ArrayList<UrlObject> urls = new ArrayList<UrlObject>();
-    private Timer retryTimer;
     private static final int TOTAL_RETRY_TIMES = 3;
     private static final int TOTAL_RETRY_WAIT_INTERVAL_MILLISECONDS = 10 * 1000;
+    private static final long MAX_RETRY_WAIT_INTERVAL_MILLISECONDS = 5 * 60 * 1000;
+    private static final long TRACKER_TTL_MILLISECONDS = 24 * 60 * 60 * 1000;
+    private static final long KEEP_ALIVE_SECONDS = 30;
     private static final String permission = "android.permission.ACCESS_NETWORK_STATE";
     private boolean permitted;
-    private ImpressionTrackerListener impressionTrackerListener;
+
+    // Written by any thread, drained by the retry thread
+    private final ConcurrentLinkedQueue<UrlObject> inbox = new ConcurrentLinkedQueue<UrlObject>();
+    // Trackers not delivered yet, by URL, used to deduplicate without locking
+    private final ConcurrentHashMap<String, UrlObject> queued = new ConcurrentHashMap<String, UrlObject>();
+
+    // Confined to the retry thread
+    private final ArrayList<UrlObject> pending = new ArrayList<UrlObject>();
+    private final TrackerOutbox outbox;
+    private boolean restored = false;
+    private final Random jitter = new Random();
+    private ScheduledFuture<?> retryTask;
+    private BroadcastReceiver connectivityReceiver;
+
+    private final ScheduledThreadPoolExecutor retryExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Context appContext;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            processQueue(false);
+        }
+    };
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            processQueue(true);
+        }
+    };
 
     private SharedNetworkManager(Context context) {
         int permissionStatus = context.getPackageManager().checkPermission(
@@ -58,6 +110,26 @@ public class SharedNetworkManager {
                 context.getPackageName()
         );
         permitted = (permissionStatus == PackageManager.PERMISSION_GRANTED);
+        appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        outbox = new TrackerOutbox(appContext);
+        retryExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SharedNetworkManager");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        retryExecutor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        retryExecutor.allowCoreThreadTimeOut(true);
+        // Picks up the trackers left over by an earlier session, if any
+        retryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                restore();
+                scheduleRetries();
+            }
+        });
     }
 
     public boolean isConnected(Context context) {
@@ -76,80 +148,233 @@ public class SharedNetworkManager {
 
     void addURL(String url, Context context, ImpressionTrackerListener impressionTrackerListener) {
         Clog.d(Clog.baseLogTag, "SharedNetworkManager adding URL for Network Retry");
-        this.impressionTrackerListener = impressionTrackerListener;
-        urls.add(new UrlObject(url));
-        startTimer(context);
+        UrlObject urlObject = new UrlObject(url, System.currentTimeMillis(), 0);
+        if (impressionTrackerListener != null) {
+            urlObject.listeners.add(impressionTrackerListener);
+        }
+        UrlObject existing = queued.putIfAbsent(url, urlObject);
+        if (existing == null) {
+            inbox.offer(urlObject);
+            // Journal it right away rather than on the next tick, the process may be killed in between
+            retryExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    takeAdded();
+                    scheduleRetries();
+                }
+            });
+        } else if (impressionTrackerListener != null) {
+            Clog.d(Clog.baseLogTag, "SharedNetworkManager URL already queued");
+            existing.listeners.add(impressionTrackerListener);
+            if (existing.delivered) {
+                // Delivered while we were attaching, notifyListeners may already have run
+                notifyListener(existing, impressionTrackerListener);
+            }
+        }
+    }
+
+    /**
+     * Starts the periodic retry while trackers are pending, stops it otherwise. Retry thread only.
+     */
+    private void scheduleRetries() {
+        boolean hasWork = !pending.isEmpty() || !inbox.isEmpty();
+        if (hasWork && retryTask == null) {
+            retryTask = retryExecutor.scheduleWithFixedDelay(tick, TOTAL_RETRY_WAIT_INTERVAL_MILLISECONDS,
+                    TOTAL_RETRY_WAIT_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+            registerConnectivityReceiver();
+        } else if (!hasWork && retryTask != null) {
+            retryTask.cancel(false);
+            retryTask = null;
+            unregisterConnectivityReceiver();
+        }
+    }
+
+    private void restore() {
+        if (restored) {
+            return;
+        }
+        restored = true;
+        for (TrackerOutbox.Record record : outbox.load(System.currentTimeMillis(), TRACKER_TTL_MILLISECONDS)) {
+            UrlObject urlObject = new UrlObject(record.url, record.createdAt, record.attempts);
+            urlObject.persisted = true;
+            if (queued.putIfAbsent(record.url, urlObject) == null) {
+                pending.add(urlObject);
+            }
+        }
+    }
+
+    /**
+     * Moves the trackers added since the last call to the pending list and journals them. Retry thread only.
+     */
+    private void takeAdded() {
+        restore();
+        UrlObject added;
+        while ((added = inbox.poll()) != null) {
+            pending.add(added);
+            added.persisted = true;
+            outbox.put(added.url, added.createdAt, added.retryTimes);
+        }
+    }
+
+    /**
+     * Retry thread only, which is also the only thread touching the outbox.
+     *
+     * @param drain fire every pending tracker regardless of its backoff, connectivity just came back
+     */
+    private void processQueue(boolean drain) {
+        takeAdded();
+
+        long now = System.currentTimeMillis();
+        boolean connected = isConnected(appContext);
+        Iterator<UrlObject> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            UrlObject urlObject = iterator.next();
+            if (urlObject.inFlight) {
+                continue;
+            }
+            if (urlObject.delivered
+                    || urlObject.retryTimes >= TOTAL_RETRY_TIMES
+                    || now - urlObject.createdAt > TRACKER_TTL_MILLISECONDS) {
+                iterator.remove();
+                queued.remove(urlObject.url, urlObject);
+                outbox.remove(urlObject.url);
+                continue;
+            }
+            if (!urlObject.persisted) {
+                urlObject.persisted = true;
+                outbox.put(urlObject.url, urlObject.createdAt, urlObject.retryTimes);
+            }
+            if (connected && (drain || urlObject.nextAttemptAt <= now)) {
+                urlObject.inFlight = true;
+                fire(urlObject);
+            }
+        }
+        scheduleRetries();
+    }
+
+    private void fire(final UrlObject urlObject) {
+        final HTTPGet fire = new HTTPGet() {
+            @Override
+            protected void onPostExecute(final HTTPResponse response) {
+                // Results are applied on the retry thread, whichever thread the response lands on
+                retryExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onAttemptFinished(urlObject, response);
+                    }
+                });
+            }
+
+            @Override
+            protected String getUrl() {
+                return urlObject.url;
+            }
+        };
+        // HTTPGet runs inline off the main thread, keep the retry thread free for the other trackers
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                fire.execute();
+            }
+        });
+    }
+
+    private void onAttemptFinished(UrlObject urlObject, HTTPResponse response) {
+        urlObject.inFlight = false;
+        if (response == null ||
+                (!response.getSucceeded() && (response.getErrorCode() == HttpErrorCode.CONNECTION_FAILURE
+                        || response.getErrorCode() == HttpErrorCode.TRANSPORT_ERROR))) {
+            urlObject.retryTimes += 1;
+            urlObject.nextAttemptAt = System.currentTimeMillis() + getRetryDelay(urlObject.retryTimes);
+            // Journal the new attempt count on the next tick
+            urlObject.persisted = false;
+        } else {
+            // Nothing more to do just print logs and exit.
+            Clog.d(Clog.baseLogTag, "SharedNetworkManager Retry Successful");
+            urlObject.delivered = true;
+            queued.remove(urlObject.url, urlObject);
+            for (ImpressionTrackerListener listener : urlObject.listeners) {
+                notifyListener(urlObject, listener);
+            }
+        }
     }
 
-    private void startTimer(Context context) {
-        if (retryTimer == null) {
-            // check Network Connectivity after a certain period
-            final WeakReference<Context> weakContext = new WeakReference<Context>(context);
-            retryTimer = new Timer();
-            retryTimer.scheduleAtFixedRate(new TimerTask() {
+    private void notifyListener(UrlObject urlObject, final ImpressionTrackerListener listener) {
+        // remove() succeeds once per listener, whoever gets there first notifies
+        if (urlObject.listeners.remove(listener)) {
+            mainHandler.post(new Runnable() {
                 @Override
                 public void run() {
-                    Context context = weakContext.get();
-                    if (context != null) {
-                        while (!urls.isEmpty()) {
-                            if (isConnected(context)) {
-                                final UrlObject urlObject = urls.remove(0);
-                                if (urlObject.retryTimes < TOTAL_RETRY_TIMES) {
-                                    {
-                                        HTTPGet fire = new HTTPGet() {
-                                            @Override
-                                            protected void onPostExecute(HTTPResponse response) {
-                                                if (response == null ||
-                                                        (!response.getSucceeded() && response.getErrorCode() == HttpErrorCode.CONNECTION_FAILURE)) {
-                                                    urlObject.retryTimes += 1;
-                                                    urls.add(urlObject);
-                                                } else {
-                                                    // Nothing more to do just print logs and exit.
-                                                    Clog.d(Clog.baseLogTag, "SharedNetworkManager Retry Successful");
-                                                    if (impressionTrackerListener != null) {
-                                                        impressionTrackerListener.onImpressionTrackerFired();
-                                                    }
-                                                }
-
-                                            }
-
-                                            @Override
-                                            protected String getUrl() {
-                                                return urlObject.url;
-                                            }
-                                        };
-                                        fire.execute();
-
-                                    }
-                                }
-                            } else {
-                                break;
-                            }
-                        }
-                        if (urls.isEmpty()) stopTimer();
-                    } else {
-                        stopTimer();
-                    }
+                    listener.onImpressionTrackerFired();
                 }
-            }, TOTAL_RETRY_WAIT_INTERVAL_MILLISECONDS, TOTAL_RETRY_WAIT_INTERVAL_MILLISECONDS);
+            });
+        }
+    }
 
+    /**
+     * Exponential backoff, randomized by +/-50% so that trackers queued together do not retry in lockstep.
+     */
+    long getRetryDelay(int retryTimes) {
+        long delay = Math.min((long) TOTAL_RETRY_WAIT_INTERVAL_MILLISECONDS << Math.min(retryTimes, 16),
+                MAX_RETRY_WAIT_INTERVAL_MILLISECONDS);
+        return (long) (delay * (0.5 + jitter.nextDouble()));
+    }
+
+    private void registerConnectivityReceiver() {
+        if (!permitted || connectivityReceiver != null) {
+            return;
+        }
+        connectivityReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (isConnected(context)) {
+                    Clog.d(Clog.baseLogTag, "SharedNetworkManager connectivity restored, draining queue");
+                    retryExecutor.execute(drain);
+                }
+            }
+        };
+        try {
+            appContext.registerReceiver(connectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        } catch (Exception e) {
+            Clog.w(Clog.baseLogTag, "Unable to listen to connectivity changes: " + e.getMessage());
+            connectivityReceiver = null;
         }
     }
 
-    private void stopTimer() {
-        if (retryTimer != null) {
-            retryTimer.cancel();
-            retryTimer = null;
+    private void unregisterConnectivityReceiver() {
+        if (connectivityReceiver != null) {
+            try {
+                appContext.unregisterReceiver(connectivityReceiver);
+            } catch (IllegalArgumentException e) {
+                // Receiver was not registered, nothing to do
+            }
+            connectivityReceiver = null;
         }
     }
 
-    class UrlObject {
-        String url;
+    /**
+     * @return the number of trackers waiting for delivery, for tests
+     */
+    int getQueuedCount() {
+        return queued.size();
+    }
+
+    static class UrlObject {
+        final String url;
+        final long createdAt;
+        final CopyOnWriteArrayList<ImpressionTrackerListener> listeners = new CopyOnWriteArrayList<ImpressionTrackerListener>();
+        volatile boolean delivered;
+        // Retry thread only
         int retryTimes;
+        long nextAttemptAt;
+        boolean persisted;
+        boolean inFlight;
 
-        UrlObject(String url) {
+        UrlObject(String url, long createdAt, int retryTimes) {
             this.url = url;
-            this.retryTimes = 0;
+            this.createdAt = createdAt;
+            this.retryTimes = retryTimes;
+            this.nextAttemptAt = 0;
         }
     }
 
@@ -0,0 +1,257 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.Context;
+
+import com.appnexus.opensdk.utils.Clog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Append-only journal of the trackers waiting in {@link SharedNetworkManager}, so that they survive the
+ * process being killed.
+ * <p>
+ * Each line is either {@code A<TAB>createdAt<TAB>attempts<TAB>url}, adding or updating a tracker, or
+ * {@code D<TAB>url}, removing it. Replaying the file in order gives back the pending trackers. A torn last
+ * line left by a crash is ignored. Once removed entries dominate the file it is rewritten through a
+ * temporary file and an atomic rename.
+ * <p>
+ * Not thread safe, all calls are expected to come from the retry thread.
+ */
+class TrackerOutbox {
+
+    private static final String FILE_NAME = "appnexus_tracker_outbox";
+    private static final String RECORD_ADD = "A";
+    private static final String RECORD_DONE = "D";
+    private static final String SEPARATOR = "\t";
+    private static final String UTF_8 = "UTF-8";
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 32;
+
+    private final File file;
+    private LinkedHashMap<String, Record> records;
+    private int obsoleteRecords = 0;
+
+    static class Record {
+        final String url;
+        final long createdAt;
+        int attempts;
+
+        Record(String url, long createdAt, int attempts) {
+            this.url = url;
+            this.createdAt = createdAt;
+            this.attempts = attempts;
+        }
+    }
+
+    TrackerOutbox(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    TrackerOutbox(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return true if an earlier session may have left trackers behind
+     */
+    boolean hasRecords() {
+        return records != null ? !records.isEmpty() : file.length() > 0;
+    }
+
+    /**
+     * Replays the journal. Trackers created more than ttl milliseconds before now are dropped.
+     *
+     * @return the pending trackers, oldest first
+     */
+    List<Record> load(long now, long ttl) {
+        ensureLoaded();
+        ArrayList<Record> pending = new ArrayList<Record>(records.size());
+        ArrayList<String> expired = new ArrayList<String>();
+        for (Record record : records.values()) {
+            if (now - record.createdAt > ttl) {
+                expired.add(record.url);
+            } else {
+                pending.add(record);
+            }
+        }
+        for (String url : expired) {
+            remove(url);
+        }
+        return pending;
+    }
+
+    /**
+     * Adds a tracker, or updates its attempt count if it is already in the journal.
+     */
+    void put(String url, long createdAt, int attempts) {
+        ensureLoaded();
+        if (url.contains("\n") || url.contains(SEPARATOR)) {
+            // Cannot be represented on a single line, keep it in memory only
+            return;
+        }
+        if (records.containsKey(url)) {
+            obsoleteRecords++;
+        }
+        records.put(url, new Record(url, createdAt, attempts));
+        append(RECORD_ADD + SEPARATOR + createdAt + SEPARATOR + attempts + SEPARATOR + url);
+    }
+
+    void remove(String url) {
+        ensureLoaded();
+        if (records.remove(url) == null) {
+            return;
+        }
+        // Both the add and the done record are now dead weight
+        obsoleteRecords += 2;
+        boolean rewritten = false;
+        if (records.isEmpty()) {
+            rewritten = truncate();
+        } else if (obsoleteRecords >= MIN_RECORDS_BEFORE_COMPACTION && obsoleteRecords > records.size()) {
+            rewritten = compact();
+        }
+        if (!rewritten) {
+            // The file still holds the add record, without this the tracker would come back on the next launch
+            append(RECORD_DONE + SEPARATOR + url);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (records != null) {
+            return;
+        }
+        records = new LinkedHashMap<String, Record>();
+        if (!file.exists()) {
+            return;
+        }
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), UTF_8);
+            StringBuilder content = new StringBuilder((int) file.length());
+            char[] buffer = new char[1024];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+            int start = 0;
+            int end;
+            // A last line without its terminator was torn by a crash and is skipped
+            while ((end = content.indexOf("\n", start)) != -1) {
+                replay(content.substring(start, end));
+                start = end + 1;
+            }
+        } catch (IOException e) {
+            Clog.e(Clog.baseLogTag, "Unable to read the tracker outbox: " + e.getMessage());
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void replay(String line) {
+        String[] fields = line.split(SEPARATOR, 4);
+        try {
+            if (fields.length == 4 && RECORD_ADD.equals(fields[0]) && !fields[3].contains(SEPARATOR)) {
+                Record record = new Record(fields[3], Long.parseLong(fields[1]), Integer.parseInt(fields[2]));
+                if (records.put(record.url, record) != null) {
+                    obsoleteRecords++;
+                }
+                return;
+            } else if (fields.length == 2 && RECORD_DONE.equals(fields[0])) {
+                if (records.remove(fields[1]) != null) {
+                    obsoleteRecords += 2;
+                }
+                return;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        Clog.w(Clog.baseLogTag, "Ignoring corrupted tracker outbox record");
+        obsoleteRecords++;
+    }
+
+    private void append(String line) {
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            Clog.e(Clog.baseLogTag, "Unable to write the tracker outbox: " + e.getMessage());
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    /**
+     * @return true if the file no longer holds any record
+     */
+    private boolean truncate() {
+        if (file.exists() && !file.delete()) {
+            Clog.w(Clog.baseLogTag, "Unable to clear the tracker outbox");
+            return false;
+        }
+        obsoleteRecords = 0;
+        return true;
+    }
+
+    /**
+     * @return true if the file was rewritten with the pending records only
+     */
+    private boolean compact() {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tmp, false), UTF_8);
+            for (Record record : records.values()) {
+                writer.write(RECORD_ADD + SEPARATOR + record.createdAt + SEPARATOR + record.attempts + SEPARATOR + record.url + "\n");
+            }
+            writer.flush();
+            closeQuietly(writer);
+            writer = null;
+            if (tmp.renameTo(file)) {
+                obsoleteRecords = 0;
+                return true;
+            }
+            Clog.w(Clog.baseLogTag, "Unable to compact the tracker outbox");
+        } catch (IOException e) {
+            Clog.e(Clog.baseLogTag, "Unable to compact the tracker outbox: " + e.getMessage());
+        } finally {
+            closeQuietly(writer);
+        }
+        return false;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
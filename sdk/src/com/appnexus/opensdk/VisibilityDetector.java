@@ -18,27 +18,52 @@ package com.appnexus.opensdk;
 
 import android.graphics.Rect;
 import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
+import android.view.ViewTreeObserver;
 
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.SDKTrace;
 import com.appnexus.opensdk.utils.Settings;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
 
+/**
+ * Tracks the visibility of the registered views on the main thread.
+ * <p>
+ * There is no polling: the detector listens to the scroll, layout and pre-draw events of the windows the
+ * views are attached to, and to the attach state of the views themselves. Events are coalesced into at most
+ * one pass per frame, posted after the frame. A pass only re-measures the views, into a shared {@link Rect},
+ * and a listener is only called when the visibility of its view flips, or for an {@link ExposureListener},
+ * when the visible share of its view changes. Nothing runs while nothing moves.
+ */
 class VisibilityDetector {
-    static final long VISIBILITY_THROTTLE_MILLIS = 250;
-    private boolean scheduled = false;
-    private List<WeakReference<View>> viewList;
-    private Runnable visibilityCheck;
-    private ScheduledExecutorService tasker;
     private static VisibilityDetector visibilityDetector;
-    private Handler mHandler;
+
+    private final ArrayList<TrackedView> trackedViews = new ArrayList<TrackedView>();
+    // Reused by every pass so that a pass does not allocate
+    private final ArrayList<TrackedView> passSnapshot = new ArrayList<TrackedView>();
+    private final Rect clippedArea = new Rect();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final TreeListener treeListener = new TreeListener();
+    // Tracked views observing each window observer, the tree listener is registered once per observer
+    private final HashMap<ViewTreeObserver, Integer> observerCounts = new HashMap<ViewTreeObserver, Integer>();
+    private boolean scheduled = false;
+
+    private final Runnable visibilityCheck = new Runnable() {
+        @Override
+        public void run() {
+            scheduled = false;
+            long traceStart = SDKTrace.begin(SDKTrace.VISIBILITY_CHECK);
+            try {
+                checkVisibility();
+            } finally {
+                SDKTrace.end(SDKTrace.VISIBILITY_CHECK, traceStart);
+            }
+        }
+    };
 
     static VisibilityDetector getInstance() {
         if (visibilityDetector == null) {
@@ -50,83 +75,95 @@ class VisibilityDetector {
     private VisibilityDetector() {
     }
 
-    private boolean contains(List<WeakReference<View>> list, View reference)
-    {
-        if (list != null) {
-            for (WeakReference<View> viewWeakReference : list) {
-                if (viewWeakReference.get() == reference) {
-                    return true;
-                }
+    private int indexOf(View view, VisibilityListener listener) {
+        for (int i = 0; i < trackedViews.size(); i++) {
+            TrackedView trackedView = trackedViews.get(i);
+            if (trackedView.viewReference.get() == view && trackedView.listener == listener) {
+                return i;
             }
         }
-        return false;
+        return -1;
     }
 
-    private boolean remove(List<WeakReference<View>> list, View reference)
-    {
-        for (Iterator<WeakReference<View>> iterator = list.iterator(); iterator.hasNext(); ) {
-            WeakReference<View> weakRef = iterator.next();
-            if (weakRef.get() == reference) {
-                if (reference != null && !(reference instanceof BannerAdView)) {
-                    reference.setTag(R.string.native_view_tag, null);
-                }
-                iterator.remove();
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Tracks view for the listener it is, or holds in its native view tag.
+     */
+    void addVisibilityListener(View view) {
+        addVisibilityListener(view, null);
     }
 
-    void addVisibilityListener(View view) {
+    /**
+     * Tracks view for listener, independently of the listener of {@link #addVisibilityListener(View)}.
+     * The listener is held until {@link #removeVisibilityListener(View, VisibilityListener)} or until the view
+     * is garbage collected, so it must not hold the view strongly.
+     */
+    void addVisibilityListener(View view, VisibilityListener listener) {
         if (view == null) {
             Clog.d(Clog.nativeLogTag, "Unable to check visibility for null reference");
             return;
         }
 
-        if (mHandler == null) {
-            mHandler = new Handler();
-        }
-        if (viewList == null) {
-            viewList = new ArrayList<>();
-        }
-        if (!contains(viewList, view)) {
-            this.viewList.add(new WeakReference<View>(view));
-            if (this.viewList.size() == 1) {
-                scheduleVisibilityCheck();
+        int index = indexOf(view, listener);
+        if (index == -1) {
+            TrackedView trackedView = new TrackedView(view, listener);
+            trackedViews.add(trackedView);
+            view.addOnAttachStateChangeListener(treeListener);
+            if (view.getWindowToken() != null) {
+                trackedView.observe(view);
             }
+        } else {
+            // The listener may have changed, make sure it hears about the current state
+            trackedViews.get(index).notified = false;
         }
+        scheduleVisibilityCheck();
     }
 
-    void scheduleVisibilityCheck(){
-        if(scheduled) return;
+    /**
+     * Requests a visibility pass after the current frame. Calls made before the pass runs are coalesced.
+     */
+    void scheduleVisibilityCheck() {
+        if (scheduled || trackedViews.isEmpty()) return;
         scheduled = true;
-        this.visibilityCheck = new Runnable() {
-            @Override
-            public void run() {
-                ArrayList<WeakReference<View>> tempList = new ArrayList<>(viewList);
-                for (WeakReference<View> viewWeakReference : tempList) {
-                    VisibilityListener listener = getListener(viewWeakReference);
-                    View view = viewWeakReference.get();
-                    if (listener != null) {
-                        Clog.d(Clog.visibilityLogTag, view.toString() + ", isVisible: " + isVisible(view));
-                        listener.onVisibilityChanged(isVisible(view));
-                    } else {
-                        destroy(view);
-                    }
+        mHandler.post(visibilityCheck);
+    }
+
+    private void checkVisibility() {
+        // Listeners may destroy views while being notified
+        passSnapshot.clear();
+        passSnapshot.addAll(trackedViews);
+        for (int i = 0; i < passSnapshot.size(); i++) {
+            TrackedView trackedView = passSnapshot.get(i);
+            if (trackedView.removed) {
+                continue;
+            }
+            View view = trackedView.viewReference.get();
+            VisibilityListener listener = view == null ? null
+                    : trackedView.listener != null ? trackedView.listener : getListener(view);
+            if (listener == null) {
+                destroy(trackedView);
+                continue;
+            }
+            if (listener instanceof ExposureListener) {
+                int percentVisible = getVisiblePercentage(view);
+                if (!trackedView.notified || percentVisible != trackedView.percentVisible) {
+                    trackedView.percentVisible = percentVisible;
+                    trackedView.notified = true;
+                    ((ExposureListener) listener).onExposureChanged(percentVisible);
                 }
+                continue;
             }
-        };
-        tasker = Executors.newSingleThreadScheduledExecutor();
-        tasker.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                mHandler.post(visibilityCheck);
+            boolean visible = isVisible(view);
+            if (!trackedView.notified || visible != trackedView.visible) {
+                trackedView.visible = visible;
+                trackedView.notified = true;
+                Clog.d(Clog.visibilityLogTag, "Visibility changed, isVisible: %s", visible);
+                listener.onVisibilityChanged(visible);
             }
-        }, 0, VISIBILITY_THROTTLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        passSnapshot.clear();
     }
 
-    private VisibilityListener getListener(WeakReference<View> viewWeakReference) {
-        View view = viewWeakReference.get();
+    private VisibilityListener getListener(View view) {
         if (view != null) {
             if (view instanceof VisibilityListener) {
                 return (VisibilityListener) view;
@@ -148,9 +185,7 @@ class VisibilityDetector {
             return view.getWindowToken() != null;
         }
 
-        // holds the visible part of a view
-        Rect clippedArea = new Rect();
-
+        // holds the visible part of a view, shared as this only runs on the main thread
         if (!view.getGlobalVisibleRect(clippedArea)) {
             return false;
         }
@@ -168,18 +203,47 @@ class VisibilityDetector {
         return false;
     }
 
+    /**
+     * @return the share of the view on screen, from 0 to 100. 0 if the view or its window is hidden.
+     */
+    int getVisiblePercentage(View view) {
+        if (view == null || view.getVisibility() != View.VISIBLE || view.getParent() == null
+                || view.getWindowToken() == null || view.getWindowVisibility() != View.VISIBLE) {
+            return 0;
+        }
+        final long totalArea = (long) view.getHeight() * view.getWidth();
+        if (totalArea <= 0 || !view.getGlobalVisibleRect(clippedArea)) {
+            return 0;
+        }
+        final long visibleViewArea = (long) clippedArea.height() * clippedArea.width();
+        return (int) Math.min(100, visibleViewArea * 100 / totalArea);
+    }
+
     void destroy(View view) {
-        if (contains(viewList, view)) {
-            remove(viewList, view);
+        removeVisibilityListener(view, null);
+    }
+
+    void removeVisibilityListener(View view, VisibilityListener listener) {
+        int index = indexOf(view, listener);
+        if (index != -1) {
+            destroy(trackedViews.get(index));
         }
-        if (viewList == null || viewList.size() == 0) {
-            if (tasker != null) {
-                tasker.shutdownNow();
+    }
+
+    private void destroy(TrackedView trackedView) {
+        trackedViews.remove(trackedView);
+        trackedView.removed = true;
+        trackedView.stopObserving();
+        View view = trackedView.viewReference.get();
+        if (view != null) {
+            view.removeOnAttachStateChangeListener(treeListener);
+            if (trackedView.listener == null && !(view instanceof BannerAdView)) {
+                view.setTag(R.string.native_view_tag, null);
             }
+        }
+        if (trackedViews.isEmpty()) {
             scheduled = false;
-            if (mHandler != null) {
-                mHandler.removeCallbacks(visibilityCheck);
-            }
+            mHandler.removeCallbacks(visibilityCheck);
         }
     }
 
@@ -187,4 +251,119 @@ class VisibilityDetector {
         void onVisibilityChanged(boolean visible);
     }
 
-}
\ No newline at end of file
+    /**
+     * Listener interested in how much of the view is on screen rather than in whether it is on screen.
+     * Gets {@link #onExposureChanged(int)} instead of {@link #onVisibilityChanged(boolean)}.
+     */
+    interface ExposureListener extends VisibilityListener {
+        /**
+         * @param percentVisible share of the view on screen, from 0 to 100
+         */
+        void onExposureChanged(int percentVisible);
+    }
+
+    private class TrackedView {
+        final WeakReference<View> viewReference;
+        // null for the listener the view is or holds in its tag
+        final VisibilityListener listener;
+        // The window observer the tree listener is registered with, while the view is attached
+        ViewTreeObserver observer;
+        boolean visible;
+        int percentVisible;
+        boolean notified;
+        boolean removed;
+
+        TrackedView(View view, VisibilityListener listener) {
+            this.viewReference = new WeakReference<View>(view);
+            this.listener = listener;
+        }
+
+        void observe(View view) {
+            stopObserving();
+            ViewTreeObserver viewTreeObserver = view.getViewTreeObserver();
+            if (viewTreeObserver.isAlive()) {
+                observer = viewTreeObserver;
+                Integer count = observerCounts.get(observer);
+                if (count == null) {
+                    observer.addOnScrollChangedListener(treeListener);
+                    observer.addOnGlobalLayoutListener(treeListener);
+                    observer.addOnPreDrawListener(treeListener);
+                    count = 0;
+                }
+                observerCounts.put(observer, count + 1);
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        void stopObserving() {
+            if (observer != null) {
+                Integer count = observerCounts.get(observer);
+                if (count != null && count > 1) {
+                    observerCounts.put(observer, count - 1);
+                } else {
+                    observerCounts.remove(observer);
+                    if (observer.isAlive()) {
+                        observer.removeOnScrollChangedListener(treeListener);
+                        observer.removeGlobalOnLayoutListener(treeListener);
+                        observer.removeOnPreDrawListener(treeListener);
+                    }
+                }
+                observer = null;
+            }
+        }
+    }
+
+    /**
+     * Single listener shared by all windows and views, every event only requests a pass.
+     */
+    private class TreeListener implements ViewTreeObserver.OnScrollChangedListener,
+            ViewTreeObserver.OnGlobalLayoutListener, ViewTreeObserver.OnPreDrawListener,
+            View.OnAttachStateChangeListener {
+
+        @Override
+        public void onScrollChanged() {
+            scheduleVisibilityCheck();
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            scheduleVisibilityCheck();
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            scheduleVisibilityCheck();
+            return true;
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View view) {
+            boolean tracked = false;
+            for (TrackedView trackedView : trackedViews) {
+                if (trackedView.viewReference.get() == view) {
+                    // Only observe window observers, the floating one of a detached view is merged away on attach
+                    trackedView.observe(view);
+                    tracked = true;
+                }
+            }
+            if (tracked) {
+                scheduleVisibilityCheck();
+            }
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View view) {
+            boolean tracked = false;
+            for (TrackedView trackedView : trackedViews) {
+                if (trackedView.viewReference.get() == view) {
+                    trackedView.stopObserving();
+                    tracked = true;
+                }
+            }
+            if (tracked) {
+                scheduleVisibilityCheck();
+            }
+        }
+    }
+
+}
@@ -16,54 +16,146 @@
 
 package com.appnexus.opensdk.tasksmanager;
 
-import android.os.Handler;
-import android.os.HandlerThread;
+import com.appnexus.opensdk.utils.Clog;
 
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of background workers serving {@link TaskPriority} lanes.
+ * A worker always picks the oldest task of the highest priority lane, so a stalled tracker
+ * only holds up its own worker and never the ad requests queued behind it.
+ * Workers are started on demand and stopped once idle.
+ */
 class BackgroundThreadExecutor implements CancellableExecutor {
 
-    private Handler h;
+    private static final int HANDLER_COUNT = 3;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private ThreadPoolExecutor pool;
     private boolean running = false;
-    private final int HANDLER_COUNT = 3;
-    private int index = 0;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger[] pending = new AtomicInteger[TaskPriority.values().length];
 
     BackgroundThreadExecutor() {
-        HandlerThread backgroundThread = new HandlerThread("BackgroundThread");
-        backgroundThread.start();
-        h = new Handler(backgroundThread.getLooper());
-        running = true;
+        for (int i = 0; i < pending.length; i++) {
+            pending[i] = new AtomicInteger();
+        }
+        startThread();
     }
 
-
     @Override
     public void execute(Runnable runnable) {
-        if (running) {
-            h.post(runnable);
+        execute(runnable, TaskPriority.DEFAULT);
+    }
+
+    /**
+     * Queues the task in its lane.
+     * @return false if the task was not queued (lane full or pool stopped), it is then up to the caller to run it elsewhere
+     */
+    public synchronized boolean execute(Runnable runnable, TaskPriority priority) {
+        if (!running || runnable == null) {
+            return false;
+        }
+        AtomicInteger lane = pending[priority.ordinal()];
+        if (lane.incrementAndGet() > priority.getCapacity()) {
+            lane.decrementAndGet();
+            Clog.w(Clog.baseLogTag, "Background queue for " + priority + " is full, rejecting task");
+            return false;
+        }
+        try {
+            pool.execute(new PrioritizedTask(runnable, priority, sequence.getAndIncrement()));
+            return true;
+        } catch (RejectedExecutionException e) {
+            lane.decrementAndGet();
+            Clog.w(Clog.baseLogTag, "Background task rejected: " + e.getMessage());
+            return false;
         }
     }
 
     @Override
-    public boolean cancel(Runnable runnable) {
-        if (running) {
-            h.removeCallbacks(runnable);
-            return true;
+    public synchronized boolean cancel(Runnable runnable) {
+        if (!running) {
+            return false;
+        }
+        boolean removed = false;
+        // The queue iterator works on a snapshot, removing while iterating is safe
+        for (Runnable queued : pool.getQueue()) {
+            PrioritizedTask task = (PrioritizedTask) queued;
+            if (task.runnable == runnable && pool.remove(task)) {
+                pending[task.priority.ordinal()].decrementAndGet();
+                removed = true;
+            }
         }
-        return false;
+        return removed;
     }
 
-    public void shutdown() {
+    public synchronized void shutdown() {
         if (running) {
-            h.getLooper().quit();
-            h = null;
+            pool.shutdownNow();
+            pool = null;
+            for (AtomicInteger lane : pending) {
+                lane.set(0);
+            }
             running = false;
         }
     }
 
-    public void startThread() {
+    public synchronized void startThread() {
         if (!running) {
-            HandlerThread backgroundThread = new HandlerThread("BackgroundThread");
-            backgroundThread.start();
-            h = new Handler(backgroundThread.getLooper());
+            pool = new ThreadPoolExecutor(HANDLER_COUNT, HANDLER_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new BackgroundThreadFactory());
+            pool.allowCoreThreadTimeOut(true);
             running = true;
         }
     }
+
+    /**
+     * @return the number of tasks waiting in the given lane, for tests
+     */
+    int getPendingCount(TaskPriority priority) {
+        return pending[priority.ordinal()].get();
+    }
+
+    private class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final Runnable runnable;
+        private final TaskPriority priority;
+        private final long sequence;
+
+        PrioritizedTask(Runnable runnable, TaskPriority priority, long sequence) {
+            this.runnable = runnable;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            pending[priority.ordinal()].decrementAndGet();
+            runnable.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (priority != other.priority) {
+                return priority.ordinal() < other.priority.ordinal() ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "BackgroundThread-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.tasksmanager;
+
+/**
+ * Lanes of the background thread pool, in the order they are served.
+ * Tasks of the same lane run in submission order.
+ */
+public enum TaskPriority {
+    AD_REQUEST(16), // Ad requests and the content needed to render an ad (SSM handler, MRAID expand)
+    TRACKER(64),    // Impression and click trackers
+    IMAGE(32),      // Native images and icons
+    DEFAULT(16);    // Everything else
+
+    private final int capacity;
+
+    TaskPriority(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the maximum number of pending tasks in this lane
+     */
+    int getCapacity() {
+        return capacity;
+    }
+}
@@ -16,12 +16,16 @@
 
 package com.appnexus.opensdk.tasksmanager;
 
+import com.appnexus.opensdk.SDKSettings;
+import com.appnexus.opensdk.utils.Clog;
+
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class TasksManager {
 
     private Executor mainThreadExecutor;
-    private Executor backgroundThreadExecutor;
+    private BackgroundThreadExecutor backgroundThreadExecutor;
 
     // When the TasksManager class is loaded, TasksManagerWrapper is not loaded and hence doesn’t create object when loading the class.
     // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
@@ -59,18 +63,35 @@ public class TasksManager {
 
     /**
      * This API can be used to execute code block on the background thread.
+     * The task is never dropped, it runs on the external executor when the lane is full.
      * @param task takes in task (to be executed on background thread) as a runnable
      * */
     public void executeOnBackgroundThread(Runnable task) {
-        backgroundThreadExecutor.execute(task);
+        if (task != null && !backgroundThreadExecutor.execute(task, TaskPriority.DEFAULT)) {
+            try {
+                SDKSettings.getExternalExecutor().execute(task);
+            } catch (RejectedExecutionException e) {
+                Clog.e(Clog.baseLogTag, "Background task rejected by the external executor: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This API can be used to execute code block on the background thread, ahead of any pending task of a lower priority.
+     * @param task takes in task (to be executed on background thread) as a runnable
+     * @param priority lane of the task
+     * @return false if the lane is full and the task was not queued, the caller should then run it elsewhere
+     * */
+    public boolean executeOnBackgroundThread(Runnable task, TaskPriority priority) {
+        return backgroundThreadExecutor.execute(task, priority);
     }
 
     /**
-     * Utility method to cancel an ongoing background thread task
+     * Utility method to cancel a background thread task that has not started yet
      * @param task takes in task to be cancelled
      * */
     public void cancelTaksOnBackgroundThread(Runnable task) {
-        ((CancellableExecutor) backgroundThreadExecutor).cancel(task);
+        backgroundThreadExecutor.cancel(task);
 
     }
 }
@@ -25,23 +25,24 @@ import com.appnexus.opensdk.ANGDPRSettings;
 import com.appnexus.opensdk.ANMultiAdRequest;
 import com.appnexus.opensdk.Ad;
 import com.appnexus.opensdk.AdViewRequestManager;
+import com.appnexus.opensdk.MediaType;
 import com.appnexus.opensdk.R;
 import com.appnexus.opensdk.ResultCode;
 import com.appnexus.opensdk.SDKSettings;
 import com.appnexus.opensdk.SharedNetworkManager;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ClogListener;
+import com.appnexus.opensdk.utils.DebugCapture;
+import com.appnexus.opensdk.utils.HTTPCompression;
 import com.appnexus.opensdk.utils.JsonUtil;
+import com.appnexus.opensdk.utils.LatencyMetrics;
+import com.appnexus.opensdk.utils.SDKTrace;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.WebviewUtil;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
@@ -49,9 +50,9 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class UTAdRequest {
 
@@ -130,16 +131,18 @@ public class UTAdRequest {
         }else{
             Clog.e(Clog.baseLogTag, "Exiting because of UTAdRequester is null, response will not be processed further and no listener will be invoked");
         }
-        Clog.clearLastResponse();
     }
 
     HashMap<String, UTAdResponse> makeRequest() {
+        HttpURLConnection conn = null;
+        boolean reusable = false;
+        long traceStart = SDKTrace.begin(SDKTrace.AD_REQUEST);
         try {
 
             Settings.getSettings().deviceAccessAllowed = ANGDPRSettings.canIAccessDeviceData(requestParams.getContext()); // Make sure GDPR device access is allowed.
             String baseUrl = Settings.getAdRequestUrl();
             URL url = new URL(baseUrl);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn = Settings.getHttpTransport().openConnection(url);
             conn.setDoOutput(true);
             conn.setDoInput(true);
             conn.setRequestProperty("Content-Type", "application/json");
@@ -159,71 +162,62 @@ public class UTAdRequest {
 
 
             conn.setRequestMethod("POST");
-
-            conn.setConnectTimeout(Settings.HTTP_CONNECTION_TIMEOUT);
-            conn.setReadTimeout(Settings.HTTP_SOCKET_TIMEOUT);
+            HTTPCompression.acceptCompressedResponse(conn, HTTPCompression.Endpoint.AD_REQUEST);
 
             // Make post request
-            String postData = requestParams.getPostData();
-            Clog.setLastRequest(postData);
-            OutputStreamWriter wr = new OutputStreamWriter(conn.getOutputStream());
-            wr.write(postData);
-            wr.flush();
+            String placementId = requestParams.getPlacementID();
+            MediaType format = requestParams.getMediaType();
+            long phaseStart = LatencyMetrics.start();
+            byte[] postData = requestParams.writePostData();
+            LatencyMetrics.record(LatencyMetrics.Phase.REQUEST_BUILD, placementId, format, null, phaseStart);
+            DebugCapture.Exchange exchange = DebugCapture.captureRequest(baseUrl, postData);
+            phaseStart = LatencyMetrics.start();
+            int requestWireBytes = HTTPCompression.writeRequestBody(conn, postData, HTTPCompression.Endpoint.AD_REQUEST);
 
             // Start the connection
             conn.connect();
+            LatencyMetrics.record(LatencyMetrics.Phase.CONNECT, placementId, format, null, phaseStart);
 
             // Read request response
+            phaseStart = LatencyMetrics.start();
             int httpResult = conn.getResponseCode();
+            LatencyMetrics.record(LatencyMetrics.Phase.TTFB, placementId, format, null, phaseStart);
 
             HashMap<String, UTAdResponse> adResponseMap = new HashMap<>();
             if (httpResult == HttpURLConnection.HTTP_OK) {
-                StringBuilder builder = new StringBuilder();
-                InputStream is = conn.getInputStream();
-                BufferedReader reader = new BufferedReader(new InputStreamReader(is, "utf-8"));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    builder.append(line);
-                }
-                reader.close();
-                is.close();
-
-                String result = builder.toString();
-
-                Clog.i(Clog.httpRespLogTag, "RESPONSE - " + result);
                 Map<String, List<String>> headers = conn.getHeaderFields();
                 if (Settings.getSettings().deviceAccessAllowed && !Settings.getSettings().doNotTrack) {
                     WebviewUtil.cookieSync(headers);
                 }
                 ANMultiAdRequest anMultiAdRequest = getMultiAdRequest();
                 if (anMultiAdRequest == null) {
-                    adResponseMap.put(requestParams.getUUID(), new UTAdResponse(result, conn.getHeaderFields(), requestParams.getMediaType(), requestParams.getOrientation()));
+                    phaseStart = LatencyMetrics.start();
+                    JSONObject response = readResponse(conn, null, postData.length, requestWireBytes);
+                    LatencyMetrics.record(LatencyMetrics.Phase.DOWNLOAD, placementId, format, null, phaseStart);
+                    logResponse(exchange, response);
+                    JSONObject tag = JsonUtil.getJSONObjectFromArray(JsonUtil.getJSONArray(response, "tags"), 0);
+                    long start = System.nanoTime();
+                    UTAdResponse adResponse = new UTAdResponse(tag, headers, requestParams.getMediaType(), requestParams.getOrientation());
+                    adResponse.setParseTimeNanos(System.nanoTime() - start);
+                    LatencyMetrics.recordDuration(LatencyMetrics.Phase.PARSE, placementId, format, null, adResponse.getParseTimeNanos());
+                    adResponseMap.put(requestParams.getUUID(), adResponse);
                 } else {
-                    LinkedHashMap<String, JSONObject> jsonMap = new LinkedHashMap<>();
-                    JSONObject response = new JSONObject(result);
-                    JSONArray tagsArray = JsonUtil.getJSONArray(response, "tags");
-                    if (tagsArray !=  null) {
-                        for (int i = 0; i < tagsArray.length(); i++) {
-                            JSONObject tag = tagsArray.getJSONObject(i);
-                            jsonMap.put(JsonUtil.getJSONString(tag, "uuid"), tag);
-                        }
-                        ArrayList<WeakReference<Ad>> adUnitList = new ArrayList();
-                        adUnitList.addAll(anMultiAdRequest.getAdUnitList());
-                        for (WeakReference<Ad> adWeakReference : adUnitList) {
-                            Ad ad = adWeakReference.get();
-                            if (ad != null) {
-                                UTRequestParameters requestParameters = ad.getRequestParameters();
-                                adResponseMap.put(ad.getRequestParameters().getUUID(), new UTAdResponse(result, jsonMap.get(ad.getRequestParameters().getUUID()), conn.getHeaderFields(), requestParameters.getMediaType(), requestParameters.getOrientation()));
-                            }
-                        }
-                    } else {
+                    MultiAdResponseRouter router = new MultiAdResponseRouter(anMultiAdRequest, headers, adResponseMap);
+                    phaseStart = LatencyMetrics.start();
+                    JSONObject response = readResponse(conn, router, postData.length, requestWireBytes);
+                    LatencyMetrics.record(LatencyMetrics.Phase.DOWNLOAD, placementId, format, null, phaseStart);
+                    logResponse(exchange, response);
+                    if (JsonUtil.getJSONArray(response, "tags") == null) {
+                        reusable = true;
                         return null;
                     }
+                    router.finish();
                 }
             } else {
                 Clog.d(Clog.httpRespLogTag, Clog.getString(R.string.http_bad_status, httpResult));
                 adResponseMap.put(requestParams.getUUID(), new UTAdResponse(true));
             }
+            reusable = true;
             return adResponseMap;
 
         } catch (SocketTimeoutException e) {
@@ -240,10 +234,88 @@ public class UTAdRequest {
         } catch (Exception e) {
             e.printStackTrace();
             Clog.e(Clog.httpReqLogTag, Clog.getString(R.string.unknown_exception));
+        } finally {
+            Settings.getHttpTransport().release(conn, reusable);
+            SDKTrace.end(SDKTrace.AD_REQUEST, traceStart);
         }
         return null;
     }
 
+    private JSONObject readResponse(HttpURLConnection conn, UTResponseStreamParser.TagListener listener,
+                                    int requestBodyBytes, int requestWireBytes) throws IOException {
+        HTTPCompression.ResponseStream is = HTTPCompression.getResponseStream(conn, HTTPCompression.Endpoint.AD_REQUEST);
+        try {
+            return UTResponseStreamParser.parse(is, listener);
+        } finally {
+            is.close();
+            if (Clog.isLoggable(Clog.httpRespLogTag, ClogListener.LOG_LEVEL.D)) {
+                Clog.d(Clog.httpRespLogTag, "Ad request sent " + requestWireBytes + " of " + requestBodyBytes
+                        + " bytes, response received " + is.getWireBytes() + " of " + is.getBodyBytes() + " bytes");
+            }
+        }
+    }
+
+    private void logResponse(DebugCapture.Exchange exchange, JSONObject response) {
+        if (response != null) {
+            // Only serialized if captured or logged
+            DebugCapture.captureResponse(exchange, response);
+            Clog.v(Clog.httpRespLogTag, "RESPONSE - %s", response);
+        }
+    }
+
+    /**
+     * Hands each tag of a Multi Ad Request response to the ad unit that requested it while the response is
+     * still being read, so the body is parsed exactly once whatever the number of ad units.
+     */
+    private static class MultiAdResponseRouter implements UTResponseStreamParser.TagListener {
+
+        private final HashMap<String, UTRequestParameters> pendingAdUnits = new HashMap<>();
+        private final Map<String, List<String>> headers;
+        private final HashMap<String, UTAdResponse> adResponseMap;
+
+        MultiAdResponseRouter(ANMultiAdRequest anMultiAdRequest, Map<String, List<String>> headers, HashMap<String, UTAdResponse> adResponseMap) {
+            this.headers = headers;
+            this.adResponseMap = adResponseMap;
+            ArrayList<WeakReference<Ad>> adUnitList = new ArrayList();
+            adUnitList.addAll(anMultiAdRequest.getAdUnitList());
+            for (WeakReference<Ad> adWeakReference : adUnitList) {
+                Ad ad = adWeakReference.get();
+                if (ad != null) {
+                    UTRequestParameters requestParameters = ad.getRequestParameters();
+                    pendingAdUnits.put(requestParameters.getUUID(), requestParameters);
+                }
+            }
+        }
+
+        @Override
+        public void onTagParsed(JSONObject tag, long readTimeNanos) {
+            String uuid = JsonUtil.getJSONString(tag, "uuid");
+            UTRequestParameters requestParameters = pendingAdUnits.remove(uuid);
+            if (requestParameters == null) {
+                Clog.w(Clog.SRMLogTag, "Ignoring response tag with unknown uuid: " + uuid);
+                return;
+            }
+            long start = System.nanoTime();
+            UTAdResponse adResponse = new UTAdResponse(tag, headers, requestParameters.getMediaType(), requestParameters.getOrientation());
+            adResponse.setParseTimeNanos(readTimeNanos + System.nanoTime() - start);
+            LatencyMetrics.recordDuration(LatencyMetrics.Phase.PARSE, requestParameters.getPlacementID(),
+                    requestParameters.getMediaType(), null, adResponse.getParseTimeNanos());
+            adResponseMap.put(uuid, adResponse);
+            Clog.d(Clog.SRMLogTag, "Parsed response for " + uuid + " in " + TimeUnit.NANOSECONDS.toMicros(adResponse.getParseTimeNanos()) + "us");
+        }
+
+        /**
+         * Ad units the server did not answer get an empty response
+         */
+        void finish() {
+            for (Map.Entry<String, UTRequestParameters> adUnit : pendingAdUnits.entrySet()) {
+                UTRequestParameters requestParameters = adUnit.getValue();
+                adResponseMap.put(adUnit.getKey(), new UTAdResponse((JSONObject) null, headers, requestParameters.getMediaType(), requestParameters.getOrientation()));
+            }
+            pendingAdUnits.clear();
+        }
+    }
+
     private class AsyncRequest extends AsyncTask<Void, Integer, HashMap<String, UTAdResponse>> {
 
         @Override
@@ -312,7 +384,7 @@ public class UTAdRequest {
                     for (WeakReference<Ad> adWeakReference : adUnitList) {
                         if (adWeakReference != null) {
                             Ad ad = adWeakReference.get();
-                            Clog.d(Clog.SRMLogTag, "RECIEVED: " + ad);
+                            Clog.d(Clog.SRMLogTag, "RECIEVED: %s", ad);
                             if (ad != null) {
                                 UTAdRequester requester = new AdViewRequestManager(ad);
                                 ad.getMultiAd().setRequestManager(requester);
@@ -323,7 +395,7 @@ public class UTAdRequest {
                                     continue;
                                 }
                                 UTAdResponse result = adResponseMap.get(ad.getRequestParameters().getUUID());
-                                Clog.d(Clog.SRMLogTag, "RECIEVED: RESPONSE: " + result);
+                                Clog.d(Clog.SRMLogTag, "RECIEVED: RESPONSE: %s", result);
 
                                 if (requester != null) {
                                     if (result == null) {
@@ -338,7 +410,7 @@ public class UTAdRequest {
                                         requester.failed(code, null);
                                         continue;
                                     }
-                                    Clog.d(Clog.SRMLogTag, "SUCCESS: " + ad);
+                                    Clog.d(Clog.SRMLogTag, "SUCCESS: %s", ad);
                                     requester.onReceiveUTResponse(result);
                                 } else {
                                     Clog.e(Clog.baseLogTag, "Exiting because of UTAdRequester is null, response will not be processed further and no listener will be invoked");
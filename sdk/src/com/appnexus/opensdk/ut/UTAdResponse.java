@@ -31,7 +31,10 @@ import com.appnexus.opensdk.ut.adresponse.RTBNativeAdResponse;
 import com.appnexus.opensdk.ut.adresponse.RTBVASTAdResponse;
 import com.appnexus.opensdk.ut.adresponse.SSMHTMLAdResponse;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ClogListener;
+import com.appnexus.opensdk.utils.DebugCapture;
 import com.appnexus.opensdk.utils.JsonUtil;
+import com.appnexus.opensdk.utils.SDKTrace;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 
@@ -100,6 +103,7 @@ public class UTAdResponse {
     private MediaType mediaType;
     private String orientation;
     private ANAdResponseInfo adResponseInfo;
+    private long parseTimeNanos;
 
     public UTAdResponse(String body, Map<String, List<String>> headers, MediaType requestMediaType, String orientation) {
         this(body, null, headers, requestMediaType, orientation);
@@ -109,26 +113,55 @@ public class UTAdResponse {
         this.isHttpError = isHttpError;
     }
 
+    /**
+     * Builds the response from a tag that was already read from the stream by {@link UTResponseStreamParser}.
+     */
+    public UTAdResponse(JSONObject tag, Map<String, List<String>> headers, MediaType requestMediaType, String orientation) {
+        this.tag = tag;
+        this.mediaType = requestMediaType;
+        this.orientation = orientation;
+
+        printHeaders(headers);
+
+        if (tag != null) {
+            long traceStart = SDKTrace.begin(SDKTrace.PARSE_RESPONSE);
+            try {
+                parseTagSafely(tag);
+            } finally {
+                SDKTrace.end(SDKTrace.PARSE_RESPONSE, traceStart);
+            }
+        }
+    }
+
     public UTAdResponse(String body, JSONObject tag, Map<String, List<String>> headers, MediaType requestMediaType, String orientation) {
         if (StringUtil.isEmpty(body)) {
-            Clog.clearLastResponse();
             return;
         }
         this.tag = tag;
         this.mediaType = requestMediaType;
         this.orientation = orientation;
 
-        Clog.setLastResponse(body);
+        DebugCapture.captureResponse(null, body);
 
-        Clog.d(Clog.httpRespLogTag, Clog.getString(R.string.response_body, body));
+        Clog.d(Clog.httpRespLogTag, R.string.response_body, body);
 
         printHeaders(headers);
 
-        parseResponseV2(body);
+        long traceStart = SDKTrace.begin(SDKTrace.PARSE_RESPONSE);
+        try {
+            if (tag != null) {
+                // The caller already extracted this response's tag, no need to parse the whole body again
+                parseTagSafely(tag);
+            } else {
+                parseResponseV2(body);
+            }
+        } finally {
+            SDKTrace.end(SDKTrace.PARSE_RESPONSE, traceStart);
+        }
     }
 
     private void printHeaders(Map<String, List<String>> headers) {
-        if (headers != null) {
+        if (headers != null && Clog.isLoggable(Clog.httpRespLogTag, ClogListener.LOG_LEVEL.V)) {
             for (Map.Entry<String, List<String>> header : headers.entrySet()) {
                 if (header.getKey() != null) {
                     for (String valueStr : header.getValue()) {
@@ -168,18 +201,7 @@ public class UTAdResponse {
                 } else {
                     tagObject = tag;
                 }
-                // If it contains nobid response, don't parse further.
-                if (JsonUtil.getJSONBoolean(tagObject, RESPONSE_KEY_NO_BID)) {
-                    adResponseInfo = new ANAdResponseInfo();
-                    tagId = JsonUtil.getJSONInt(tagObject, RESPONSE_KEY_TAG_ID);
-                    auctionID = JsonUtil.getJSONString(tagObject, RESPONSE_KEY_AUCTION_ID);
-                    adResponseInfo.setTagId(String.valueOf(tagId));
-                    adResponseInfo.setAuctionId(auctionID);
-
-                    return;
-                }
-
-                handleAdResponse(tagObject);
+                parseTag(tagObject);
             }
         } catch (Exception e) {
             // Catches XMLPullParserException, JSONException, NullPointerException and IOException
@@ -187,6 +209,30 @@ public class UTAdResponse {
         }
     }
 
+    private void parseTagSafely(JSONObject tagObject) {
+        try {
+            parseTag(tagObject);
+        } catch (Exception e) {
+            // Catches XMLPullParserException, JSONException, NullPointerException and IOException
+            Clog.e(Clog.httpRespLogTag, "Error parsing the ad response: " + e.getMessage());
+        }
+    }
+
+    private void parseTag(JSONObject tagObject) throws Exception {
+        // If it contains nobid response, don't parse further.
+        if (JsonUtil.getJSONBoolean(tagObject, RESPONSE_KEY_NO_BID)) {
+            adResponseInfo = new ANAdResponseInfo();
+            tagId = JsonUtil.getJSONInt(tagObject, RESPONSE_KEY_TAG_ID);
+            auctionID = JsonUtil.getJSONString(tagObject, RESPONSE_KEY_AUCTION_ID);
+            adResponseInfo.setTagId(String.valueOf(tagId));
+            adResponseInfo.setAuctionId(auctionID);
+
+            return;
+        }
+
+        handleAdResponse(tagObject);
+    }
+
     /**
      * @param response (JSONObject)
      * @return (boolean)
@@ -558,6 +604,17 @@ public class UTAdResponse {
         return adResponseInfo;
     }
 
+    /**
+     * @return time spent reading this response's tag from the stream and building its ads, 0 if unknown
+     */
+    public long getParseTimeNanos() {
+        return parseTimeNanos;
+    }
+
+    void setParseTimeNanos(long parseTimeNanos) {
+        this.parseTimeNanos = parseTimeNanos;
+    }
+
     private AdType getAdType(String adTypeString){
         if (adTypeString.equalsIgnoreCase(UTConstants.AD_TYPE_BANNER)) {
             return AdType.BANNER;
@@ -22,9 +22,6 @@ import android.content.pm.PackageManager;
 import android.content.res.Configuration;
 import android.location.Location;
 import android.location.LocationManager;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.telephony.TelephonyManager;
 import android.util.Pair;
 
 import com.appnexus.opensdk.ANClickThroughAction;
@@ -42,6 +39,7 @@ import com.appnexus.opensdk.SDKSettings;
 import com.appnexus.opensdk.TargetingParameters;
 import com.appnexus.opensdk.utils.AdvertisingIDUtil;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ClogListener;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 
@@ -49,12 +47,15 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Locale;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import com.appnexus.opensdk.viewability.ANOmidViewabilty;
 
@@ -174,6 +175,10 @@ public class UTRequestParameters {
     private static final String TRAFFICE_SOURCE_CODE = "traffic_source_code";
 
     private static final String US_PRIVACY = "us_privacy";
+    private static final String TPUIDS = "tpuids";
+    private static final String TPUIDS_PROVIDER = "provider";
+    private static final String TPUIDS_PROVIDER_FACEBOOK = "audienceNetwork";
+    private static final String TPUIDS_USER_ID = "user_id";
 
 
     private static final int ALLOWED_TYPE_BANNER = 1;
@@ -452,339 +457,514 @@ public class UTRequestParameters {
     }
 
     private String getFacebookBidderToken(Context context) {
+        Method method = UTRequestTemplate.getInstance().getFacebookBidderTokenMethod(FB_SETTINGS_CLASS);
+        if (method == null) {
+            return null;
+        }
         try {
-            Class clazz = Class.forName(FB_SETTINGS_CLASS);
-            Method method = clazz.getMethod("getBidderToken", Context.class);
             Object result = method.invoke(null, context);
             if (result instanceof String) {
                 return (String) result;
             }
         } catch (NullPointerException e) {
             Clog.d(Clog.csrLogTag, e.getMessage());
-        } catch (NoSuchMethodException e) {
-            Clog.d(Clog.csrLogTag, e.getMessage());
         } catch (InvocationTargetException e) {
             Clog.d(Clog.csrLogTag, e.getMessage());
         } catch (IllegalAccessException e) {
             Clog.d(Clog.csrLogTag, e.getMessage());
-        } catch (ClassNotFoundException e) {
-            Clog.d(Clog.csrLogTag, e.getMessage());
         }
         return null;
     }
 
-    private void appendFBToken(JSONObject postData, Context context) {
-        String token = getFacebookBidderToken(context);
-        if (token != null) {
-            try {
-                JSONObject fan = new JSONObject();
-                fan.put("provider", "audienceNetwork");
-                fan.put("user_id", token);
-                JSONArray tpuids = new JSONArray();
-                tpuids.put(fan);
-                postData.put("tpuids", tpuids);
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-
-    // Package only for testing purpose
-    String getPostData() {
-        Context context = this.getContext();
-        if (null == context) {
-            Clog.e(Clog.baseLogTag, "UTRequestParameters.getPostData() -- context is NULL.");
-            return "";
-        }
-
+    /**
+     * The values of one request, read once and shared by {@link #getPostData()} and {@link #writePostData}.
+     */
+    private static class RequestValues {
+        final ArrayList<UTRequestParameters> tagParameters = new ArrayList<UTRequestParameters>();
+        final ArrayList<String> tagUUIDs = new ArrayList<String>();
+        // 0 when not part of the request
+        int memberId = 0;
+        int publisherId = 0;
+        // Top level keywords, null when not part of the request
+        ArrayList<Pair<String, String>> keywords;
+        // Serialized sections, empty when not part of the request
+        String user;
+        String externalUserIds;
+        String deviceInfo;
+        String deviceTracking;
+        String app;
+        String sdk;
+        String gdprConsent;
+        String iabSupport = "";
+        String usPrivacy;
+        String geoCountryCode;
+        String geoZip;
+        long auctionTimeout;
+        Double lat;
+        Double lon;
+        Integer locDataAge;
+        Integer locDataPrecision;
+        long devTime;
+        String facebookBidderToken;
+    }
+
+    private RequestValues readRequestValues(Context context) {
         // Try to retrieve aaid and limitedAdTracking if they were not set
         AdvertisingIDUtil.retrieveAndSetAAID(context);
 
         orientation = context.getResources().getConfiguration().orientation
                 == Configuration.ORIENTATION_LANDSCAPE ? "h" : "v";
-        JSONObject postData = new JSONObject();
-        try {
-            // add tags
-            JSONArray tags = getTagsObject(postData);
-            if (tags != null && tags.length() > 0) {
-                postData.put(TAGS, tags);
+        UTRequestTemplate template = UTRequestTemplate.getInstance();
+        template.attach(context);
+        RequestValues values = new RequestValues();
+
+        // tags
+        int limit = adUnitList != null && adUnitList.size() > 0 ? adUnitList.size() : 1;
+        boolean isMultiAdList = (adUnitList != null && adUnitList.size() > 0);
+        for (int count = 0; count < limit; count++) {
+            String uuid = UUID.randomUUID().toString();
+            UTRequestParameters utRequestParameters = this;
+            if (isMultiAdList) {
+                Ad ad = adUnitList.get(count).get();
+                if (ad == null) {
+                    continue;
+                }
+                ad.getRequestParameters().setUUID(uuid);
+                utRequestParameters = ad.getRequestParameters();
             }
-            // add user
-            UTRequestParameters localParams = this;
-            if (anMultiAdRequest.get() != null) {
-                localParams = anMultiAdRequest.get().getRequestParameters();
+            if (!StringUtil.isEmpty(utRequestParameters.getInvCode()) && utRequestParameters.getMemberID() > 0) {
+                values.memberId = utRequestParameters.getMemberID();
             }
-            JSONObject user = getUserObject(localParams);
-            if (user != null && user.length() > 0) {
-                postData.put(USER, user);
+            if ((anMultiAdRequest.get() == null) && utRequestParameters.getPublisherId() > 0) {
+                values.publisherId = utRequestParameters.getPublisherId();
             }
+            values.tagParameters.add(utRequestParameters);
+            values.tagUUIDs.add(uuid);
+        }
 
-            JSONArray eidArray = getExternalUserIdArray();
-            if (eidArray != null && eidArray.length() > 0) {
-                postData.put(EXTENDED_IDS, eidArray);
+        // user
+        UTRequestParameters localParams = this;
+        if (anMultiAdRequest.get() != null) {
+            localParams = anMultiAdRequest.get().getRequestParameters();
+        }
+        values.user = getUserFragment(template, localParams);
+        values.externalUserIds = getExternalUserIdFragment(template);
+
+        // device
+        readDeviceValues(values, template, context);
+
+        values.geoCountryCode = SDKSettings.getGeoOverrideCountryCode();
+        values.geoZip = SDKSettings.getGeoOverrideZipCode();
+        values.auctionTimeout = SDKSettings.getAuctionTimeout();
+        values.app = getAppFragment(template, context);
+        values.sdk = getSDKFragment(template);
+
+        if (anMultiAdRequest.get() != null || (adUnitList != null && adUnitList.size() > 0)) {
+            ANMultiAdRequest multiAdRequest = anMultiAdRequest.get();
+            values.keywords = getCustomKeywords();
+            int memberID = getMemberID();
+            int publisherId = getPublisherId();
+            if (multiAdRequest != null) {
+                values.keywords = multiAdRequest.getCustomKeywords();
+                memberID = multiAdRequest.getRequestParameters().getMemberID();
+                publisherId = multiAdRequest.getRequestParameters().getPublisherId();
             }
-
-            // add device
-            JSONObject device = getDeviceObject();
-            if (device != null && device.length() > 0) {
-                postData.put(DEVICE, device);
+            if (memberID > 0) {
+                values.memberId = memberID;
             }
-
-            // add geoOverride
-            JSONObject geoOverride = getGeoOverride();
-            if (geoOverride != null && geoOverride.length() > 0) {
-                postData.put(GEO_OVERRIDE, geoOverride);
+            if (publisherId > 0) {
+                values.publisherId = publisherId;
             }
+        }
 
-            // add auctionTimeout
-            long auctionTimeout = SDKSettings.getAuctionTimeout();
-            if (auctionTimeout > 0) {
-                postData.put(AUCTION_TIMEOUT_MS, auctionTimeout);
-            }
+        values.gdprConsent = getGDPRConsentFragment(template);
+        if (SDKSettings.getOMEnabled()) {
+            values.iabSupport = getIABSupportFragment(template);
+        }
+        values.facebookBidderToken = getFacebookBidderToken(context);
+        values.usPrivacy = getUSPrivacyFragment(template, context);
+        return values;
+    }
 
+    // Package only for testing purpose
+    String getPostData() {
+        try {
+            return new String(writePostData(), UTConstants.UTF_8);
+        } catch (IOException e) {
+            Clog.e(Clog.httpReqLogTag, "IOException: " + e.getMessage());
+            return "";
+        }
+    }
 
-            // add app
-            JSONObject app = getAppObject();
-            if (device != null && device.length() > 0) {
-                postData.put(APP, app);
-            }
+    /**
+     * Writes the request as UTF-8 JSON, without building it as a String first.
+     *
+     * @return the request body
+     */
+    byte[] writePostData() throws IOException {
+        Context context = this.getContext();
+        if (null == context) {
+            Clog.e(Clog.baseLogTag, "UTRequestParameters.writePostData() -- context is NULL.");
+            return new byte[0];
+        }
+        byte[] postData = writePostData(readRequestValues(context));
+        if (Clog.isLoggable(Clog.httpReqLogTag, ClogListener.LOG_LEVEL.V)) {
+            Clog.v(Clog.httpReqLogTag, "POST data: " + new String(postData, UTConstants.UTF_8));
+        }
+        return postData;
+    }
 
-            postData.put(SDK_VERSION, ANSDK + Settings.getSettings().sdkVersion);
+    private byte[] writePostData(RequestValues values) throws IOException {
+        ByteArrayOutputStream written = new ByteArrayOutputStream(2048);
+        UTRequestWriter writer = new UTRequestWriter(written);
+        try {
+            writePostData(writer, values);
+        } catch (JSONException e) {
+            Clog.e(Clog.httpReqLogTag, "JSONException: " + e.getMessage());
+        }
+        writer.flush();
+        return written.toByteArray();
+    }
 
-            // add sdk
-            JSONObject sdk = getSDKObject();
-            if (sdk != null && sdk.length() > 0) {
-                postData.put(SDK, sdk);
+    /**
+     * Streams the request members, the tags first.
+     */
+    private void writePostData(UTRequestWriter writer, RequestValues values) throws IOException, JSONException {
+        writer.beginObject();
+        if (!values.tagParameters.isEmpty()) {
+            writer.name(TAGS).beginArray();
+            for (int i = 0; i < values.tagParameters.size(); i++) {
+                writeTag(writer, values.tagParameters.get(i), values.tagUUIDs.get(i));
             }
+            writer.endArray();
+        }
+        writer.rawMember(USER, values.user);
+        writer.rawMember(EXTENDED_IDS, values.externalUserIds);
+
+        writer.name(DEVICE).beginObject();
+        writer.rawMembers(values.deviceInfo);
+        if (values.lat != null && values.lon != null) {
+            writer.name(DEVICE_GEO).beginObject();
+            writer.name(GEO_LAT).value(values.lat);
+            writer.name(GEO_LON).value(values.lon);
+            if (values.locDataAge != null) writer.name(GEO_AGE).value(values.locDataAge);
+            if (values.locDataPrecision != null) writer.name(GEO_PREC).value(values.locDataPrecision);
+            writer.endObject();
+        }
+        writer.name(DEVICE_DEVTIME).value(values.devTime);
+        writer.rawMembers(values.deviceTracking);
+        writer.endObject();
+
+        if (!StringUtil.isEmpty(values.geoCountryCode) || !StringUtil.isEmpty(values.geoZip)) {
+            writer.name(GEO_OVERRIDE).beginObject();
+            if (!StringUtil.isEmpty(values.geoCountryCode)) {
+                writer.name(COUNTRY_CODE).value(values.geoCountryCode);
+            }
+            if (!StringUtil.isEmpty(values.geoZip)) {
+                writer.name(ZIP).value(values.geoZip);
+            }
+            writer.endObject();
+        }
+        if (values.auctionTimeout > 0) {
+            writer.name(AUCTION_TIMEOUT_MS).value(values.auctionTimeout);
+        }
+        writer.rawMember(APP, values.app);
+        writer.name(SDK_VERSION).value(ANSDK + Settings.getSettings().sdkVersion);
+        writer.rawMember(SDK, values.sdk);
+        writer.name(SUPPLY_TYPE).value(SUPPLY_TYPE_CONTENT);
+        if (values.keywords != null) {
+            writeCustomKeywords(writer, values.keywords);
+        }
+        if (values.memberId > 0) {
+            writer.name(MEMBER_ID).value(values.memberId);
+        }
+        if (values.publisherId > 0) {
+            writer.name(PUBLISHER_ID).value(values.publisherId);
+        }
+        writer.rawMember(GDPR_CONSENT, values.gdprConsent);
+        writer.rawMember(IAB_SUPPORT, values.iabSupport);
+        if (values.facebookBidderToken != null) {
+            writer.name(TPUIDS).beginArray().beginObject();
+            writer.name(TPUIDS_PROVIDER).value(TPUIDS_PROVIDER_FACEBOOK);
+            writer.name(TPUIDS_USER_ID).value(values.facebookBidderToken);
+            writer.endObject().endArray();
+        }
+        writer.rawMember(US_PRIVACY, values.usPrivacy);
+        writer.endObject();
+    }
 
-            postData.put(SUPPLY_TYPE, SUPPLY_TYPE_CONTENT);
-
-            if (anMultiAdRequest.get() != null || (adUnitList != null && adUnitList.size() > 0)) {
-                // add custom keywords
-                ANMultiAdRequest multiAdRequest = anMultiAdRequest.get();
-                ArrayList<Pair<String, String>> customKeywords = getCustomKeywords();
-                int memberID = getMemberID();
-                int publisherId = getPublisherId();
-                if (multiAdRequest != null) {
-                    customKeywords = multiAdRequest.getCustomKeywords();
-                    memberID = multiAdRequest.getRequestParameters().getMemberID();
-                    publisherId = multiAdRequest.getRequestParameters().getPublisherId();
-                }
-                JSONArray keywordsArray = getCustomKeywordsArray(customKeywords);
-                if (keywordsArray != null && keywordsArray.length() > 0) {
-                    postData.put(KEYWORDS, keywordsArray);
-                }
-
-
-                //add Member ID
-                if (memberID > 0) {
-                    postData.put(MEMBER_ID, memberID);
-                }
+    /**
+     * Streams one tag of the request, identified by uuid.
+     */
+    private void writeTag(UTRequestWriter writer, UTRequestParameters utRequestParameters, String uuid) throws IOException, JSONException {
+        writer.beginObject();
+        if (!StringUtil.isEmpty(utRequestParameters.getInvCode()) && utRequestParameters.getMemberID() > 0) {
+            writer.name(TAG_CODE).value(utRequestParameters.getInvCode());
+        } else if (!StringUtil.isEmpty(utRequestParameters.getPlacementID())) {
+            writer.name(TAG_ID).value(StringUtil.getIntegerValue(utRequestParameters.getPlacementID()));
+        } else {
+            writer.name(TAG_ID).value(0);
+        }
+        if (uuid != null) {
+            writer.name(TAG_UUID).value(uuid);
+        }
+        if (!StringUtil.isEmpty(getExtInvCode())) {
+            writer.name(EXT_INV_CODE).value(getExtInvCode());
+        }
+        if (!StringUtil.isEmpty(getTrafficSourceCode())) {
+            writer.name(TRAFFICE_SOURCE_CODE).value(getTrafficSourceCode());
+        }
+        writer.name(TAG_PRIMARY_SIZE).beginObject();
+        writer.name(SIZE_WIDTH).value(utRequestParameters.primarySize.width());
+        writer.name(SIZE_HEIGHT).value(utRequestParameters.primarySize.height());
+        writer.endObject();
 
-                if (publisherId > 0) {
-                    postData.put(PUBLISHER_ID, publisherId);
+        if (utRequestParameters.forceCreativeId > 0) {
+            writer.name(FORCE_CREATIVE_ID).value(utRequestParameters.forceCreativeId);
+        }
+        writeCustomKeywords(writer, utRequestParameters.getCustomKeywords());
+
+        writer.name(TAG_SIZES).beginArray();
+        ArrayList<AdSize> sizesArray = utRequestParameters.getSizes();
+        if (sizesArray != null) {
+            for (AdSize s : sizesArray) {
+                writer.beginObject();
+                writer.name(SIZE_WIDTH).value(s.width());
+                writer.name(SIZE_HEIGHT).value(s.height());
+                writer.endObject();
+            }
+        }
+        writer.endArray();
+
+        writer.name(TAG_ALLOW_SMALLER_SIZES).value(getAllowSmallerSizes());
+
+        boolean omEnabled = SDKSettings.getOMEnabled();
+        ArrayList<Integer> allowedMediaAdTypes = new ArrayList<Integer>(3);
+        MediaType mediaType = utRequestParameters.getMediaType();
+        if (mediaType == MediaType.BANNER) {
+            if (utRequestParameters.isBannerEnabled) {
+                allowedMediaAdTypes.add(ALLOWED_TYPE_BANNER);
+                if (omEnabled) {
+                    writer.name(BANNER_FRAMEWORKS).rawValue(OMID_FRAMEWORK_SIGNAL);
                 }
             }
-
-            // add GDPR Consent
-            JSONObject gdprConsent = getGDPRConsentObject();
-            if (gdprConsent != null && gdprConsent.length() > 0) {
-                postData.put(GDPR_CONSENT, gdprConsent);
+            if (utRequestParameters.isBannerVideoEnabled) {
+                allowedMediaAdTypes.add(ALLOWED_TYPE_VIDEO);
+                if (omEnabled) {
+                    writer.name(VIDEO_FRAMEWORKS).rawValue(OMID_FRAMEWORK_SIGNAL);
+                }
             }
-
-            // add IAB Support Signal
-
-            if (SDKSettings.getOMEnabled()) {
-                JSONObject iabSupport = getIABSupportObject();
-                if (iabSupport != null && iabSupport.length() > 0) {
-                    postData.put(IAB_SUPPORT, iabSupport);
+            if (utRequestParameters.isBannerNativeEnabled) {
+                allowedMediaAdTypes.add(ALLOWED_TYPE_NATIVE);
+                if (omEnabled) {
+                    writer.name(NATIVE_FRAMEWORKS).rawValue(OMID_FRAMEWORK_SIGNAL);
                 }
             }
-            // add Facebook bidder token if available
-            appendFBToken(postData, context);
-
-            // add USPrivacy String
-            String privacyString = ANUSPrivacySettings.getUSPrivacyString(context);
-            if (!privacyString.isEmpty()) {
-                postData.put(US_PRIVACY, privacyString);
+        } else if (mediaType == MediaType.INTERSTITIAL) {
+            allowedMediaAdTypes.add(ALLOWED_TYPE_BANNER);
+            allowedMediaAdTypes.add(ALLOWED_TYPE_INTERSTITIAL);
+            if (omEnabled) {
+                writer.name(BANNER_FRAMEWORKS).rawValue(OMID_FRAMEWORK_SIGNAL);
+            }
+        } else if (mediaType == MediaType.NATIVE) {
+            allowedMediaAdTypes.add(ALLOWED_TYPE_NATIVE);
+            if (omEnabled) {
+                writer.name(NATIVE_FRAMEWORKS).rawValue(OMID_FRAMEWORK_SIGNAL);
+            }
+        } else if (mediaType == MediaType.INSTREAM_VIDEO) {
+            allowedMediaAdTypes.add(ALLOWED_TYPE_VIDEO);
+            if (omEnabled) {
+                writer.name(VIDEO_FRAMEWORKS).rawValue(OMID_FRAMEWORK_SIGNAL);
             }
-
-
-        } catch (JSONException e) {
-            Clog.e(Clog.httpReqLogTag, "JSONException: " + e.getMessage());
         }
-        Clog.i(Clog.httpReqLogTag, "POST data: " + postData.toString());
-        return postData.toString();
-    }
+        writer.name(TAG_ALLOWED_MEDIA_AD_TYPES).beginArray();
+        for (int type : allowedMediaAdTypes) {
+            writer.value(type);
+        }
+        writer.endArray();
 
-    private JSONObject getGeoOverride() {
-        try {
-            JSONObject geoOverride = new JSONObject();
-            if (!StringUtil.isEmpty(SDKSettings.getGeoOverrideCountryCode())) {
-                geoOverride.put(COUNTRY_CODE, SDKSettings.getGeoOverrideCountryCode());
+        if (mediaType == MediaType.INSTREAM_VIDEO
+                && (utRequestParameters.videoAdMinDuration > 0 || utRequestParameters.videoAdMaxDuration > 0)) {
+            writer.name(TAG_VIDEO).beginObject();
+            if (utRequestParameters.videoAdMinDuration > 0) {
+                writer.name(TAG_MINDURATION).value(utRequestParameters.videoAdMinDuration);
             }
-            if (!StringUtil.isEmpty(SDKSettings.getGeoOverrideZipCode())) {
-                geoOverride.put(ZIP, SDKSettings.getGeoOverrideZipCode());
+            if (utRequestParameters.videoAdMaxDuration > 0) {
+                writer.name(TAG_MAXDURATION).value(utRequestParameters.videoAdMaxDuration);
             }
-            return geoOverride;
-        }catch (JSONException e) {
-            Clog.e(Clog.httpReqLogTag, "JSONException: " + e.getMessage());
+            writer.endObject();
         }
-        return null;
-    }
 
-    private String orientation;
+        writer.name(TAG_PREBID).value(false);
+        if (utRequestParameters.getReserve() > 0) {
+            writer.name(TAG_RESERVE).value((double) utRequestParameters.getReserve());
+            writer.name(TAG_DISABLE_PSA).value(true);
+        } else {
+            writer.name(TAG_DISABLE_PSA).value(!utRequestParameters.getShouldServePSAs());
+        }
+        writer.name(TAG_ASSET_URL).value(TAG_ASSET_URL_VALUE);
 
-    public String getOrientation() {
-        return orientation;
+        if ((mediaType == MediaType.NATIVE || (mediaType == MediaType.BANNER && isBannerNativeEnabled()))
+                && utRequestParameters.getRendererId() != 0) {
+            writer.name(TAG_NATIVE).beginObject();
+            writer.name(TAG_RENDERER_ID).value(utRequestParameters.getRendererId());
+            writer.endObject();
+        }
+        writer.endObject();
     }
 
-    private JSONArray getTagsObject(JSONObject postData) {
-        JSONArray tags = new JSONArray();
-        int limit = adUnitList != null && adUnitList.size() > 0 ? adUnitList.size() : 1;
-        boolean isMultiAdList = (adUnitList != null && adUnitList.size() > 0);
-        for (int count = 0; count < limit; count++) {
-            String uuid = UUID.randomUUID().toString();
-            UTRequestParameters utRequestParameters = this;
-            if (isMultiAdList) {
-                Ad ad = adUnitList.get(count).get();
-                if (ad == null) {
-                    continue;
-                }
-                ad.getRequestParameters().setUUID(uuid);
-                utRequestParameters = ad.getRequestParameters();
+    /**
+     * Writes the keywords as key/values pairs, values of keys differing only by case are merged under the first key.
+     */
+    private void writeCustomKeywords(UTRequestWriter writer, ArrayList<Pair<String, String>> customKeywords) throws IOException {
+        if (customKeywords == null || customKeywords.isEmpty()) {
+            return;
+        }
+        ArrayList<String> keys = new ArrayList<String>();
+        ArrayList<ArrayList<String>> values = new ArrayList<ArrayList<String>>();
+        for (Pair<String, String> pair : customKeywords) {
+            if (StringUtil.isEmpty(pair.first) || StringUtil.isEmpty(pair.second)) {
+                continue;
             }
-            JSONObject tag = new JSONObject();
-            try {
-                if (!StringUtil.isEmpty(utRequestParameters.getInvCode()) && utRequestParameters.getMemberID() > 0) {
-                    tag.put(TAG_CODE, utRequestParameters.getInvCode());
-                    postData.put(MEMBER_ID, utRequestParameters.getMemberID());
-                } else if (!StringUtil.isEmpty(utRequestParameters.getPlacementID())) {
-                    tag.put(TAG_ID, StringUtil.getIntegerValue(utRequestParameters.getPlacementID()));
-                } else {
-                    tag.put(TAG_ID, 0);
-                }
-
-                if (uuid != null) {
-                    tag.put(TAG_UUID, uuid);
-                }
-
-                if ((anMultiAdRequest.get() == null) && utRequestParameters.getPublisherId() > 0) {
-                    postData.put(PUBLISHER_ID, utRequestParameters.getPublisherId());
-                }
-
-                if (!StringUtil.isEmpty(getExtInvCode())) {
-                    tag.put(EXT_INV_CODE, getExtInvCode());
-                }
-                if (!StringUtil.isEmpty(getTrafficSourceCode())) {
-                    tag.put(TRAFFICE_SOURCE_CODE, getTrafficSourceCode());
+            int index = -1;
+            for (int i = 0; i < keys.size(); i++) {
+                if (keys.get(i).equalsIgnoreCase(pair.first)) {
+                    index = i;
+                    break;
                 }
+            }
+            if (index == -1) {
+                keys.add(pair.first);
+                values.add(new ArrayList<String>());
+                index = keys.size() - 1;
+            }
+            values.get(index).add(pair.second);
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        writer.name(KEYWORDS).beginArray();
+        for (int i = 0; i < keys.size(); i++) {
+            writer.beginObject();
+            writer.name(KEYVAL_KEY).value(keys.get(i));
+            writer.name(KEYVAL_VALUE).beginArray();
+            for (String value : values.get(i)) {
+                writer.value(value);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+    }
 
-                JSONObject primesize = new JSONObject();
-                primesize.put(SIZE_WIDTH, utRequestParameters.primarySize.width());
-                primesize.put(SIZE_HEIGHT, utRequestParameters.primarySize.height());
-                tag.put(TAG_PRIMARY_SIZE, primesize);
-
-                if (utRequestParameters.forceCreativeId > 0) {
-                    tag.put(FORCE_CREATIVE_ID, utRequestParameters.forceCreativeId);
-                }
+    /**
+     * @return the members of the serialized object, without the enclosing braces
+     */
+    private static String members(JSONObject object) {
+        String json = object.toString();
+        return json.substring(1, json.length() - 1);
+    }
 
-                // add custom parameters if there are any
-                JSONArray keywordsArray = getCustomKeywordsArray(utRequestParameters.getCustomKeywords());
-                if (keywordsArray != null && keywordsArray.length() > 0) {
-                    tag.put(KEYWORDS, keywordsArray);
-                }
+    private static String nonEmpty(JSONObject object) {
+        return object != null && object.length() > 0 ? object.toString() : "";
+    }
 
+    private static String nonEmpty(JSONArray array) {
+        return array != null && array.length() > 0 ? array.toString() : "";
+    }
 
-                ArrayList<AdSize> sizesArray = utRequestParameters.getSizes();
-                JSONArray sizes = new JSONArray();
-                if (sizesArray != null && sizesArray.size() > 0) {
-                    for (AdSize s : sizesArray) {
-                        JSONObject size = new JSONObject();
-                        size.put(SIZE_WIDTH, s.width());
-                        size.put(SIZE_HEIGHT, s.height());
-                        sizes.put(size);
-                    }
-                }
-                tag.put(TAG_SIZES, sizes);
+    private String getUserFragment(UTRequestTemplate template, UTRequestParameters utRequestParameters) {
+        Settings settings = Settings.getSettings();
+        List<?> inputs = Arrays.asList(utRequestParameters.getAge(), utRequestParameters.getGender(),
+                settings.language, settings.publisherUserId, utRequestParameters.getExternalUid(), settings.doNotTrack);
+        String user = template.user.get(inputs);
+        if (user == null) {
+            user = nonEmpty(getUserObject(utRequestParameters));
+            template.user.put(inputs, user);
+        }
+        return user;
+    }
 
-                tag.put(TAG_ALLOW_SMALLER_SIZES, getAllowSmallerSizes());
+    private String getExternalUserIdFragment(UTRequestTemplate template) {
+        List<ANUserId> userIds = Settings.getSettings().userIds;
+        // ANUserId is immutable, a copy of the list is enough to tell if it changed
+        List<ANUserId> inputs = userIds != null ? new ArrayList<ANUserId>(userIds) : Collections.<ANUserId>emptyList();
+        String eids = template.externalUserIds.get(inputs);
+        if (eids == null) {
+            eids = nonEmpty(getExternalUserIdArray());
+            template.externalUserIds.put(inputs, eids);
+        }
+        return eids;
+    }
 
-                JSONArray allowedMediaAdTypes = new JSONArray();
-                JSONArray omidFrameworksValue = new JSONArray(OMID_FRAMEWORK_SIGNAL);
+    private String getAppFragment(UTRequestTemplate template, Context context) {
+        if (StringUtil.isEmpty(Settings.getSettings().app_id)) {
+            Settings.getSettings().app_id = context.getApplicationContext().getPackageName();
+        }
+        List<?> inputs = Collections.singletonList(Settings.getSettings().app_id);
+        String app = template.app.get(inputs);
+        if (app == null) {
+            app = getAppObject().toString();
+            template.app.put(inputs, app);
+        }
+        return app;
+    }
 
-                if (utRequestParameters.getMediaType() == MediaType.BANNER) {
-                    if (utRequestParameters.isBannerEnabled) {
-                        allowedMediaAdTypes.put(ALLOWED_TYPE_BANNER);
-                        if(SDKSettings.getOMEnabled()) {
-                            tag.put(BANNER_FRAMEWORKS, omidFrameworksValue);
-                        }
-                    }
-                    if (utRequestParameters.isBannerVideoEnabled) {
-                        allowedMediaAdTypes.put(ALLOWED_TYPE_VIDEO);
-                        if(SDKSettings.getOMEnabled()) {
-                            tag.put(VIDEO_FRAMEWORKS, omidFrameworksValue);
-                        }
-                    }
-                    if (utRequestParameters.isBannerNativeEnabled) {
-                        allowedMediaAdTypes.put(ALLOWED_TYPE_NATIVE);
-                        if(SDKSettings.getOMEnabled()) {
-                            tag.put(NATIVE_FRAMEWORKS, omidFrameworksValue);
-                        }
-                    }
-                } else if (utRequestParameters.getMediaType() == MediaType.INTERSTITIAL) {
-                    allowedMediaAdTypes.put(ALLOWED_TYPE_BANNER);
-                    allowedMediaAdTypes.put(ALLOWED_TYPE_INTERSTITIAL);
-                    if(SDKSettings.getOMEnabled()) {
-                        tag.put(BANNER_FRAMEWORKS, omidFrameworksValue);
-                    }
-                } else if (utRequestParameters.getMediaType() == MediaType.NATIVE) {
-                    allowedMediaAdTypes.put(ALLOWED_TYPE_NATIVE);
-                    if(SDKSettings.getOMEnabled()) {
-                        tag.put(NATIVE_FRAMEWORKS, omidFrameworksValue);
-                    }
-                } else if (utRequestParameters.getMediaType() == MediaType.INSTREAM_VIDEO) {
-                    allowedMediaAdTypes.put(ALLOWED_TYPE_VIDEO);
-                    if(SDKSettings.getOMEnabled()) {
-                        tag.put(VIDEO_FRAMEWORKS, omidFrameworksValue);
-                    }
-                }
+    private String getSDKFragment(UTRequestTemplate template) {
+        List<?> inputs = Collections.singletonList(Settings.getSettings().sdkVersion);
+        String sdk = template.sdk.get(inputs);
+        if (sdk == null) {
+            sdk = nonEmpty(getSDKObject());
+            template.sdk.put(inputs, sdk);
+        }
+        return sdk;
+    }
 
-                tag.put(TAG_ALLOWED_MEDIA_AD_TYPES, allowedMediaAdTypes);
+    private String getIABSupportFragment(UTRequestTemplate template) {
+        List<?> inputs = Collections.singletonList(Settings.getSettings().sdkVersion);
+        String iabSupport = template.iabSupport.get(inputs);
+        if (iabSupport == null) {
+            iabSupport = nonEmpty(getIABSupportObject());
+            template.iabSupport.put(inputs, iabSupport);
+        }
+        return iabSupport;
+    }
 
-                if (utRequestParameters.getMediaType() == MediaType.INSTREAM_VIDEO) {
-                    JSONObject videoObject = utRequestParameters.getVideoObject();
-                    if (videoObject.length() > 0) {
-                        tag.put(TAG_VIDEO, videoObject);
-                    }
-                }
+    private String getGDPRConsentFragment(UTRequestTemplate template) {
+        List<?> inputs = Collections.singletonList(template.getPreferencesVersion());
+        String gdprConsent = template.gdprConsent.get(inputs);
+        if (gdprConsent == null) {
+            gdprConsent = nonEmpty(getGDPRConsentObject());
+            template.gdprConsent.put(inputs, gdprConsent);
+        }
+        return gdprConsent;
+    }
 
+    private String getUSPrivacyFragment(UTRequestTemplate template, Context context) {
+        List<?> inputs = Collections.singletonList(template.getPreferencesVersion());
+        String usPrivacy = template.usPrivacy.get(inputs);
+        if (usPrivacy == null) {
+            String privacyString = ANUSPrivacySettings.getUSPrivacyString(context);
+            usPrivacy = !privacyString.isEmpty() ? JSONObject.quote(privacyString) : "";
+            template.usPrivacy.put(inputs, usPrivacy);
+        }
+        return usPrivacy;
+    }
 
-                tag.put(TAG_PREBID, false);
-                if (utRequestParameters.getReserve() > 0) {
-                    tag.put(TAG_RESERVE, utRequestParameters.getReserve());
-                    tag.put(TAG_DISABLE_PSA, true);
-                } else {
-                    tag.put(TAG_DISABLE_PSA, !utRequestParameters.getShouldServePSAs());
-                }
-                tag.put(TAG_ASSET_URL, TAG_ASSET_URL_VALUE);
+    private boolean isDeviceAccessAllowed(UTRequestTemplate template, Context context) {
+        List<?> inputs = Collections.singletonList(template.getPreferencesVersion());
+        Boolean deviceAccessAllowed = template.deviceAccessAllowed.get(inputs);
+        if (deviceAccessAllowed == null) {
+            deviceAccessAllowed = ANGDPRSettings.canIAccessDeviceData(context);
+            template.deviceAccessAllowed.put(inputs, deviceAccessAllowed);
+        }
+        return deviceAccessAllowed;
+    }
 
-                if (utRequestParameters.getMediaType() == MediaType.NATIVE || (utRequestParameters.getMediaType() == MediaType.BANNER && isBannerNativeEnabled())) {
-                    JSONObject nativeObject = getNativeRendererObject(utRequestParameters);
-                    if (nativeObject != null) {
-                        tag.put(TAG_NATIVE, nativeObject);
-                    }
-                }
+    private String orientation;
 
-            } catch (JSONException e) {
-                Clog.e(Clog.baseLogTag, "Exception: " + e.getMessage());
-            }
-            if (tag.length() > 0) {
-                tags.put(tag);
-            }
-        }
-        return tags;
+    public String getOrientation() {
+        return orientation;
     }
 
     private void setUUID(String uuid) {
@@ -795,19 +975,6 @@ public class UTRequestParameters {
         return uuid;
     }
 
-    private JSONObject getNativeRendererObject(UTRequestParameters utRequestParameters) {
-        if (utRequestParameters.getRendererId() != 0) {
-            try {
-                JSONObject nativeObject = new JSONObject();
-                nativeObject.put(TAG_RENDERER_ID, utRequestParameters.getRendererId());
-                return nativeObject;
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-        }
-        return null;
-    }
-
 
     private JSONObject getUserObject(UTRequestParameters utRequestParameters) {
         JSONObject user = new JSONObject();
@@ -872,7 +1039,37 @@ public class UTRequestParameters {
     }
 
 
-    private JSONObject getDeviceObject() {
+    private void readDeviceValues(RequestValues values, UTRequestTemplate template, Context context) {
+        Settings settings = Settings.getSettings();
+        template.readTelephony(context);
+        int connectionType = template.getConnectionType(context);
+        List<?> infoInputs = Arrays.asList(settings.deviceMake, settings.deviceModel, settings.ua,
+                settings.mcc, settings.mnc, settings.carrierName, connectionType);
+        values.deviceInfo = template.deviceInfo.get(infoInputs);
+        if (values.deviceInfo == null) {
+            values.deviceInfo = members(getDeviceInfoObject(connectionType));
+            template.deviceInfo.put(infoInputs, values.deviceInfo);
+        }
+
+        readLocation(values, template, context);
+        // devtime
+        values.devTime = System.currentTimeMillis();
+
+        // Update the value of device access consent in setting each time a request is made.
+        settings.deviceAccessAllowed = isDeviceAccessAllowed(template, context);
+        List<?> trackingInputs = Arrays.asList(settings.limitTrackingEnabled, settings.deviceAccessAllowed,
+                SDKSettings.isAAIDUsageDisabled(), settings.doNotTrack, settings.aaid);
+        values.deviceTracking = template.deviceTracking.get(trackingInputs);
+        if (values.deviceTracking == null) {
+            values.deviceTracking = members(getDeviceTrackingObject());
+            template.deviceTracking.put(trackingInputs, values.deviceTracking);
+        }
+    }
+
+    /**
+     * @return the device members that only change with the network
+     */
+    private JSONObject getDeviceInfoObject(int connectionType) {
         JSONObject device = new JSONObject();
         try {
             // Device make
@@ -881,147 +1078,34 @@ public class UTRequestParameters {
             // Device model
             if (!StringUtil.isEmpty(Settings.getSettings().deviceModel))
                 device.put(DEVICE_MODEL, Settings.getSettings().deviceModel);
-            // POST data that requires context
-            Context context = this.getContext();
-            if (context != null) {
-                // Default User Agent
-                if (!StringUtil.isEmpty(Settings.getSettings().ua)) {
-                    device.put(DEVICE_USERAGENT, Settings.getSettings().ua);
-                }
-
-                TelephonyManager telephonyManager = (TelephonyManager) context
-                        .getSystemService(Context.TELEPHONY_SERVICE);
-                // Get mobile country codes
-
-                if (Settings.getSettings().mcc == null || Settings.getSettings().mnc == null) {
-                    String networkOperator = telephonyManager.getNetworkOperator();
-                    if (!StringUtil.isEmpty(networkOperator)) {
-                        try {
-                            Settings.getSettings().mcc = networkOperator.substring(0, 3);
-                            Settings.getSettings().mnc = networkOperator.substring(3);
-                        } catch (Exception e) {
-                            // Catches IndexOutOfBoundsException
-                            Settings.getSettings().mcc = null;
-                            Settings.getSettings().mnc = null;
-                        }
-                    }
-                }
-                if (Settings.getSettings().mcc != null && Settings.getSettings().mnc != null) {
-                    device.put(DEVICE_MNC, StringUtil.getIntegerValue(Settings.getSettings().mnc));
-                    device.put(DEVICE_MCC, StringUtil.getIntegerValue(Settings.getSettings().mcc));
-                }
-
-                // Get carrier
-                if (Settings.getSettings().carrierName == null) {
-                    try {
-                        Settings.getSettings().carrierName = telephonyManager.getNetworkOperatorName();
-                    } catch (SecurityException ex) {
-                        // Some phones require READ_PHONE_STATE permission just ignore name
-                        Settings.getSettings().carrierName = "";
-                    }
-                }
-                if (!StringUtil.isEmpty(Settings.getSettings().carrierName))
-                    device.put(DEVICE_CARRIER, Settings.getSettings().carrierName);
-
-                // check connection type
-                int connection_type = 0;
-                ConnectivityManager cm = (ConnectivityManager) context
-                        .getSystemService(Context.CONNECTIVITY_SERVICE);
-                NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-                if (activeNetwork != null && activeNetwork.isConnected()) {
-                    NetworkInfo wifi = cm.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
-                    if (wifi != null) {
-                        connection_type = wifi.isConnected() ? 1 : 2;
-                    }
-                }
-                device.put(DEVICE_CONNECTIONTYPE, connection_type);
-            }
-
-            Double lat, lon;
-            Integer locDataAge, locDataPrecision;
-            Location lastLocation = null;
-            Location appLocation = SDKSettings.getLocation();
-            // Do we have access to location?
-            if (SDKSettings.getLocationEnabled()) {
-
-                // First priority is the app supplied location
-                if (appLocation != null) {
-                    lastLocation = appLocation;
-                } else if (context != null
-                        && (context.checkCallingOrSelfPermission("android.permission.ACCESS_FINE_LOCATION") == PackageManager.PERMISSION_GRANTED
-                        || context.checkCallingOrSelfPermission("android.permission.ACCESS_COARSE_LOCATION") == PackageManager.PERMISSION_GRANTED)) {
-                    // Get lat, long from any GPS information that might be currently
-                    // available
-                    LocationManager lm = (LocationManager) context
-                            .getSystemService(Context.LOCATION_SERVICE);
-
-                    for (String provider_name : lm.getProviders(true)) {
-                        Location l = lm.getLastKnownLocation(provider_name);
-                        if (l == null) {
-                            continue;
-                        }
-
-                        if (lastLocation == null) {
-                            lastLocation = l;
-                        } else {
-                            if (l.getTime() > 0 && lastLocation.getTime() > 0) {
-                                if (l.getTime() > lastLocation.getTime()) {
-                                    lastLocation = l;
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    Clog.w(Clog.baseLogTag, "Location permissions ACCESS_COARSE_LOCATION and/or ACCESS_FINE_LOCATION are not set in the host app. This may affect demand.");
-                }
-            }
-
-            // Set the location info back to the application
-            if (appLocation != lastLocation) {
-                SDKSettings.setLocation(lastLocation);
-            }
-
-            if (lastLocation != null) {
-                if (SDKSettings.getLocationDecimalDigits() <= -1) {
-                    lat = lastLocation.getLatitude();
-                    lon = lastLocation.getLongitude();
-                } else {
-                    lat = Double.parseDouble(String.format(Locale.ENGLISH, "%." + SDKSettings.getLocationDecimalDigits() + "f", lastLocation.getLatitude()));
-                    lon = Double.parseDouble(String.format(Locale.ENGLISH, "%." + SDKSettings.getLocationDecimalDigits() + "f", lastLocation.getLongitude()));
-                }
-                locDataPrecision = Math.round(lastLocation.getAccuracy());
-                //Don't report location data from the future
-                locDataAge = (int) Math.max(0, (System.currentTimeMillis() - lastLocation.getTime()));
-            } else {
-                lat = null;
-                lon = null;
-                locDataAge = null;
-                locDataPrecision = null;
-            }
-            JSONObject geo = new JSONObject();
-            //noinspection ConstantConditions
-            if (lat != null && lon != null) {
-                geo.put(GEO_LAT, lat);
-                geo.put(GEO_LON, lon);
-                //noinspection ConstantConditions
-                if (locDataAge != null) geo.put(GEO_AGE, locDataAge);
-                //noinspection ConstantConditions
-                if (locDataPrecision != null) geo.put(GEO_PREC, locDataPrecision);
+            // Default User Agent
+            if (!StringUtil.isEmpty(Settings.getSettings().ua)) {
+                device.put(DEVICE_USERAGENT, Settings.getSettings().ua);
             }
-            if (geo.length() > 0) {
-                device.put(DEVICE_GEO, geo);
+            // Mobile country codes
+            if (Settings.getSettings().mcc != null && Settings.getSettings().mnc != null) {
+                device.put(DEVICE_MNC, StringUtil.getIntegerValue(Settings.getSettings().mnc));
+                device.put(DEVICE_MCC, StringUtil.getIntegerValue(Settings.getSettings().mcc));
             }
+            // Carrier
+            if (!StringUtil.isEmpty(Settings.getSettings().carrierName))
+                device.put(DEVICE_CARRIER, Settings.getSettings().carrierName);
+            device.put(DEVICE_CONNECTIONTYPE, connectionType);
+        } catch (JSONException e) {
+            Clog.e(Clog.baseLogTag, e.getMessage());
+        }
+        return device;
+    }
 
-            // devtime
-            long dev_time = System.currentTimeMillis();
-            device.put(DEVICE_DEVTIME, dev_time);
-
+    /**
+     * @return the members of the device that depend on the tracking settings and consent
+     */
+    private JSONObject getDeviceTrackingObject() {
+        JSONObject device = new JSONObject();
+        try {
             // limited ad tracking
             device.put(DEVICE_LMT, Settings.getSettings().limitTrackingEnabled);
 
-            // Update the value of device access consent in setting each time a request is made.
-            Settings.getSettings().deviceAccessAllowed = ANGDPRSettings.canIAccessDeviceData(context);
-
             if (Settings.getSettings().deviceAccessAllowed && !SDKSettings.isAAIDUsageDisabled() && !Settings.getSettings().doNotTrack) {
                 if (!StringUtil.isEmpty(Settings.getSettings().aaid)) {
                     JSONObject device_id = new JSONObject();
@@ -1034,17 +1118,68 @@ public class UTRequestParameters {
         } catch (JSONException e) {
             Clog.e(Clog.baseLogTag, e.getMessage());
         }
-
         return device;
     }
 
-    private JSONObject getAppObject() {
-        if (StringUtil.isEmpty(Settings.getSettings().app_id)) {
-            Context context = this.getContext();
-            if (context != null) {
-                Settings.getSettings().app_id = context.getApplicationContext().getPackageName();
+    private void readLocation(RequestValues values, UTRequestTemplate template, Context context) {
+        Location lastLocation = null;
+        Location appLocation = SDKSettings.getLocation();
+        // Do we have access to location?
+        if (SDKSettings.getLocationEnabled()) {
+
+            // First priority is the app supplied location
+            if (appLocation != null) {
+                lastLocation = appLocation;
+            } else if (context.checkCallingOrSelfPermission("android.permission.ACCESS_FINE_LOCATION") == PackageManager.PERMISSION_GRANTED
+                    || context.checkCallingOrSelfPermission("android.permission.ACCESS_COARSE_LOCATION") == PackageManager.PERMISSION_GRANTED) {
+                // Get lat, long from any GPS information that might be currently
+                // available
+                LocationManager lm = (LocationManager) context
+                        .getSystemService(Context.LOCATION_SERVICE);
+
+                for (String provider_name : template.getLocationProviders(lm)) {
+                    Location l = lm.getLastKnownLocation(provider_name);
+                    if (l == null) {
+                        continue;
+                    }
+
+                    if (lastLocation == null) {
+                        lastLocation = l;
+                    } else {
+                        if (l.getTime() > 0 && lastLocation.getTime() > 0) {
+                            if (l.getTime() > lastLocation.getTime()) {
+                                lastLocation = l;
+                            }
+                        }
+                    }
+                }
+            } else {
+                Clog.w(Clog.baseLogTag, "Location permissions ACCESS_COARSE_LOCATION and/or ACCESS_FINE_LOCATION are not set in the host app. This may affect demand.");
+            }
+        }
+
+        // Set the location info back to the application
+        if (appLocation != lastLocation) {
+            SDKSettings.setLocation(lastLocation);
+        }
+
+        if (lastLocation != null) {
+            if (SDKSettings.getLocationDecimalDigits() <= -1) {
+                values.lat = lastLocation.getLatitude();
+                values.lon = lastLocation.getLongitude();
+            } else {
+                // Same rounding as SDKSettings.setLocation
+                double power = Math.pow(10, SDKSettings.getLocationDecimalDigits());
+                values.lat = Math.round(lastLocation.getLatitude() * power) / power;
+                values.lon = Math.round(lastLocation.getLongitude() * power) / power;
             }
+            values.locDataPrecision = Math.round(lastLocation.getAccuracy());
+            //Don't report location data from the future
+            values.locDataAge = (int) Math.max(0, (System.currentTimeMillis() - lastLocation.getTime()));
         }
+    }
+
+    private JSONObject getAppObject() {
         JSONObject app = new JSONObject();
         try {
             if (!StringUtil.isEmpty(Settings.getSettings().app_id)) {
@@ -1055,23 +1190,6 @@ public class UTRequestParameters {
         return app;
     }
 
-    private JSONObject getVideoObject() {
-
-        JSONObject videoDict = new JSONObject();
-        try {
-            if (this.videoAdMinDuration > 0) {
-                videoDict.put(TAG_MINDURATION, this.videoAdMinDuration);
-            }
-
-            if (this.videoAdMaxDuration > 0) {
-                videoDict.put(TAG_MAXDURATION, this.videoAdMaxDuration);
-            }
-        } catch (JSONException ex) {
-
-        }
-        return videoDict;
-    }
-
 
     private JSONObject getSDKObject() {
 
@@ -1119,40 +1237,6 @@ public class UTRequestParameters {
     }
 
 
-    private JSONArray getCustomKeywordsArray
-            (ArrayList<Pair<String, String>> customKeywords) {
-        JSONArray keywords = new JSONArray();
-        try {
-            if (customKeywords != null) {
-                for (Pair<String, String> pair : customKeywords) {
-                    if (!StringUtil.isEmpty(pair.first) && !StringUtil.isEmpty(pair.second) && !updateIfKeyExists(pair.first, pair.second, keywords)) {
-                        JSONObject key_val = new JSONObject();
-                        key_val.put(KEYVAL_KEY, pair.first);
-                        JSONArray val = new JSONArray();
-                        val.put(pair.second);
-                        key_val.put(KEYVAL_VALUE, val);
-                        keywords.put(key_val);
-                    }
-                }
-            }
-        } catch (JSONException e) {
-        }
-        return keywords;
-    }
-
-    private boolean updateIfKeyExists(String key, String value, JSONArray keywords) throws
-            JSONException {
-        for (int i = 0; i < keywords.length(); i++) {
-            JSONObject key_val = keywords.getJSONObject(i);
-            if (key_val.getString(KEYVAL_KEY).equalsIgnoreCase(key)) {
-                key_val.getJSONArray(KEYVAL_VALUE).put(value);
-                return true;
-            }
-        }
-        return false;
-    }
-
-
     public void setForceCreativeId(int forceCreativeId) {
         this.forceCreativeId = forceCreativeId;
     }
@@ -0,0 +1,287 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.ut;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.location.LocationManager;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.preference.PreferenceManager;
+import android.telephony.TelephonyManager;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.Settings;
+import com.appnexus.opensdk.utils.StringUtil;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process wide cache of the /ut/v3 request sections that rarely change between two requests.
+ * <p>
+ * The device, app, sdk, user, eids and consent sections are kept serialized, each with the inputs it was
+ * built from, and are only rebuilt when one of these inputs changed. Inputs held by {@link Settings} are
+ * compared on every request. System state that is expensive to read is invalidated by the system instead:
+ * connectivity and location provider broadcasts, and a listener on the default SharedPreferences holding
+ * the GDPR and US Privacy strings. A refresh only builds the tags, devtime and geo.
+ */
+class UTRequestTemplate {
+
+    static final int CONNECTION_TYPE_UNKNOWN = 0;
+    static final int CONNECTION_TYPE_WIFI = 1;
+    static final int CONNECTION_TYPE_CELLULAR = 2;
+
+    /**
+     * A serialized section and the inputs it was built from. Safe to use from any thread.
+     */
+    static class Fragment<T> {
+
+        private static class Entry<T> {
+            final List<?> inputs;
+            final T value;
+
+            Entry(List<?> inputs, T value) {
+                this.inputs = inputs;
+                this.value = value;
+            }
+        }
+
+        private volatile Entry<T> entry;
+
+        /**
+         * @return the value built from inputs equal to these, null if none
+         */
+        T get(List<?> inputs) {
+            Entry<T> current = entry;
+            return current != null && current.inputs.equals(inputs) ? current.value : null;
+        }
+
+        /**
+         * @param inputs must not be modified afterwards
+         */
+        void put(List<?> inputs, T value) {
+            entry = new Entry<T>(inputs, value);
+        }
+    }
+
+    // Sections of the request, serialized. An empty String stands for an empty section.
+    final Fragment<String> user = new Fragment<String>();
+    final Fragment<String> externalUserIds = new Fragment<String>();
+    final Fragment<String> deviceInfo = new Fragment<String>();
+    final Fragment<String> deviceTracking = new Fragment<String>();
+    final Fragment<String> app = new Fragment<String>();
+    final Fragment<String> sdk = new Fragment<String>();
+    final Fragment<String> iabSupport = new Fragment<String>();
+    final Fragment<String> gdprConsent = new Fragment<String>();
+    final Fragment<String> usPrivacy = new Fragment<String>();
+    final Fragment<Boolean> deviceAccessAllowed = new Fragment<Boolean>();
+
+    private Context appContext;
+    private BroadcastReceiver systemReceiver;
+    private SharedPreferences preferences;
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferencesListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            preferencesVersion.incrementAndGet();
+        }
+    };
+
+    // Set by the system, cleared before reading the state they invalidate
+    private final AtomicInteger preferencesVersion = new AtomicInteger();
+    private volatile boolean networkChanged = true;
+    private volatile boolean operatorChanged = true;
+    private volatile boolean providersChanged = true;
+    private boolean receiverRegistered = false;
+
+    private int connectionType = CONNECTION_TYPE_UNKNOWN;
+    private List<String> locationProviders;
+    private String facebookSettingsClass;
+    private Method facebookBidderTokenMethod;
+
+    private static class UTRequestTemplateWrapper {
+        // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
+        private static final UTRequestTemplate INSTANCE = new UTRequestTemplate();
+    }
+
+    static UTRequestTemplate getInstance() {
+        return UTRequestTemplateWrapper.INSTANCE;
+    }
+
+    private UTRequestTemplate() {
+    }
+
+    /**
+     * Starts listening to the changes of the system state the cached sections depend on. Called before each
+     * request, it only does work the first time it is called with a given application.
+     */
+    synchronized void attach(Context context) {
+        Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        if (applicationContext == appContext) {
+            return;
+        }
+        detach();
+        appContext = applicationContext;
+        systemReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (LocationManager.PROVIDERS_CHANGED_ACTION.equals(intent.getAction())) {
+                    providersChanged = true;
+                } else {
+                    networkChanged = true;
+                    operatorChanged = true;
+                }
+            }
+        };
+        IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+        filter.addAction(LocationManager.PROVIDERS_CHANGED_ACTION);
+        try {
+            appContext.registerReceiver(systemReceiver, filter);
+            receiverRegistered = true;
+        } catch (Exception e) {
+            // Read the network and location state on every request
+            Clog.w(Clog.httpReqLogTag, "Unable to listen to connectivity changes: " + e.getMessage());
+            receiverRegistered = false;
+        }
+        // The listener is weakly referenced by SharedPreferences, preferencesListener holds it
+        preferences = PreferenceManager.getDefaultSharedPreferences(appContext);
+        preferences.registerOnSharedPreferenceChangeListener(preferencesListener);
+        preferencesVersion.incrementAndGet();
+        networkChanged = true;
+        operatorChanged = true;
+        providersChanged = true;
+    }
+
+    private void detach() {
+        if (systemReceiver != null) {
+            try {
+                appContext.unregisterReceiver(systemReceiver);
+            } catch (IllegalArgumentException e) {
+                // Receiver was not registered, nothing to do
+            }
+            systemReceiver = null;
+        }
+        if (preferences != null) {
+            preferences.unregisterOnSharedPreferenceChangeListener(preferencesListener);
+            preferences = null;
+        }
+    }
+
+    /**
+     * @return a number that changes each time the default SharedPreferences change. Sections read from them
+     * use it as their input.
+     */
+    int getPreferencesVersion() {
+        return preferencesVersion.get();
+    }
+
+    /**
+     * Reads the mobile country codes and the carrier name into {@link Settings}, if they were not read yet or
+     * the network changed since the mobile country codes were found missing.
+     */
+    synchronized void readTelephony(Context context) {
+        Settings settings = Settings.getSettings();
+        boolean countryCodesMissing = settings.mcc == null || settings.mnc == null;
+        if (!countryCodesMissing && settings.carrierName != null) {
+            return;
+        }
+        TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        if (telephonyManager == null) {
+            return;
+        }
+        if (countryCodesMissing && (operatorChanged || !receiverRegistered)) {
+            operatorChanged = false;
+            String networkOperator = telephonyManager.getNetworkOperator();
+            if (!StringUtil.isEmpty(networkOperator)) {
+                try {
+                    settings.mcc = networkOperator.substring(0, 3);
+                    settings.mnc = networkOperator.substring(3);
+                } catch (Exception e) {
+                    // Catches IndexOutOfBoundsException
+                    settings.mcc = null;
+                    settings.mnc = null;
+                }
+            }
+        }
+        if (settings.carrierName == null) {
+            try {
+                settings.carrierName = telephonyManager.getNetworkOperatorName();
+            } catch (SecurityException ex) {
+                // Some phones require READ_PHONE_STATE permission just ignore name
+                settings.carrierName = "";
+            }
+        }
+    }
+
+    /**
+     * @return {@link #CONNECTION_TYPE_WIFI}, {@link #CONNECTION_TYPE_CELLULAR} or {@link #CONNECTION_TYPE_UNKNOWN}
+     * when not connected. Read again only after a connectivity change.
+     */
+    synchronized int getConnectionType(Context context) {
+        if (networkChanged || !receiverRegistered) {
+            networkChanged = false;
+            connectionType = readConnectionType(context);
+        }
+        return connectionType;
+    }
+
+    private static int readConnectionType(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        if (activeNetwork != null && activeNetwork.isConnected()) {
+            NetworkInfo wifi = cm.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
+            if (wifi != null) {
+                return wifi.isConnected() ? CONNECTION_TYPE_WIFI : CONNECTION_TYPE_CELLULAR;
+            }
+        }
+        return CONNECTION_TYPE_UNKNOWN;
+    }
+
+    /**
+     * @return the enabled location providers. Read again only after a provider was enabled or disabled.
+     */
+    synchronized List<String> getLocationProviders(LocationManager locationManager) {
+        if (providersChanged || !receiverRegistered || locationProviders == null) {
+            providersChanged = false;
+            locationProviders = locationManager.getProviders(true);
+        }
+        return locationProviders;
+    }
+
+    /**
+     * @return the method returning the Facebook bidder token, looked up once per class name. null if the
+     * Facebook adapter is not part of the app.
+     */
+    synchronized Method getFacebookBidderTokenMethod(String className) {
+        if (!className.equals(facebookSettingsClass)) {
+            facebookSettingsClass = className;
+            facebookBidderTokenMethod = null;
+            try {
+                facebookBidderTokenMethod = Class.forName(className).getMethod("getBidderToken", Context.class);
+            } catch (ClassNotFoundException e) {
+                Clog.d(Clog.csrLogTag, e.getMessage());
+            } catch (NoSuchMethodException e) {
+                Clog.d(Clog.csrLogTag, e.getMessage());
+            }
+        }
+        return facebookBidderTokenMethod;
+    }
+}
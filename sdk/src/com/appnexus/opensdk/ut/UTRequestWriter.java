@@ -0,0 +1,284 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.ut;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes JSON as UTF-8 straight to a stream, through a single buffer.
+ * <p>
+ * The output is byte for byte what org.json would produce for the same values: strings are escaped as
+ * {@link JSONObject#quote(String)} does, '/' included, and numbers are formatted by
+ * {@link JSONObject#numberToString(Number)}. Serialized fragments built by org.json can be written as they are.
+ * android.util.JsonWriter escapes and formats numbers differently, hence this writer.
+ * <p>
+ * Commas are added as needed. Nothing validates the nesting, callers are expected to write well formed JSON.
+ */
+class UTRequestWriter {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_DEPTH = 16;
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count = 0;
+
+    // Whether the object or array at each depth already holds a value
+    private final boolean[] hasValue = new boolean[MAX_DEPTH];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    /**
+     * @param out where the JSON goes, does not need to be buffered
+     */
+    UTRequestWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    UTRequestWriter beginObject() throws IOException {
+        beforeValue();
+        write('{');
+        push();
+        return this;
+    }
+
+    UTRequestWriter endObject() throws IOException {
+        depth--;
+        write('}');
+        return this;
+    }
+
+    UTRequestWriter beginArray() throws IOException {
+        beforeValue();
+        write('[');
+        push();
+        return this;
+    }
+
+    UTRequestWriter endArray() throws IOException {
+        depth--;
+        write(']');
+        return this;
+    }
+
+    UTRequestWriter name(String name) throws IOException {
+        beforeValue();
+        string(name);
+        write(':');
+        afterName = true;
+        return this;
+    }
+
+    UTRequestWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            ascii("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    UTRequestWriter value(boolean value) throws IOException {
+        beforeValue();
+        ascii(value ? "true" : "false");
+        return this;
+    }
+
+    UTRequestWriter value(long value) throws IOException {
+        beforeValue();
+        ascii(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * @throws JSONException if value is not a finite number, as org.json would
+     */
+    UTRequestWriter value(Number value) throws IOException, JSONException {
+        String number = JSONObject.numberToString(value);
+        beforeValue();
+        ascii(number);
+        return this;
+    }
+
+    /**
+     * Writes an already serialized value.
+     */
+    UTRequestWriter rawValue(String json) throws IOException {
+        beforeValue();
+        utf8(json);
+        return this;
+    }
+
+    /**
+     * Writes already serialized members of the current object: "a":1,"b":2. Nothing if empty.
+     */
+    UTRequestWriter rawMembers(String json) throws IOException {
+        if (json != null && json.length() > 0) {
+            beforeValue();
+            utf8(json);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a name and an already serialized value, skipped if the value is empty.
+     */
+    UTRequestWriter rawMember(String name, String json) throws IOException {
+        if (json != null && json.length() > 0) {
+            name(name);
+            rawValue(json);
+        }
+        return this;
+    }
+
+    /**
+     * Writes what is left in the buffer to the stream, and flushes it.
+     */
+    void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private void push() {
+        depth++;
+        hasValue[depth] = false;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasValue[depth]) {
+                write(',');
+            }
+            hasValue[depth] = true;
+        }
+    }
+
+    // Same escaping as org.json's JSONStringer
+    private void string(String value) throws IOException {
+        write('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    write('\\');
+                    write(c);
+                    break;
+                case '\t':
+                    write('\\');
+                    write('t');
+                    break;
+                case '\b':
+                    write('\\');
+                    write('b');
+                    break;
+                case '\n':
+                    write('\\');
+                    write('n');
+                    break;
+                case '\r':
+                    write('\\');
+                    write('r');
+                    break;
+                case '\f':
+                    write('\\');
+                    write('f');
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        write('\\');
+                        write('u');
+                        write(HEX[(c >> 12) & 0xF]);
+                        write(HEX[(c >> 8) & 0xF]);
+                        write(HEX[(c >> 4) & 0xF]);
+                        write(HEX[c & 0xF]);
+                    } else {
+                        i = utf8(value, i);
+                    }
+                    break;
+            }
+        }
+        write('"');
+    }
+
+    private void ascii(String value) throws IOException {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            write(value.charAt(i));
+        }
+    }
+
+    private void utf8(String value) throws IOException {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            i = utf8(value, i);
+        }
+    }
+
+    /**
+     * Encodes the character at index as String.getBytes("UTF-8") does, unpaired surrogates become '?'.
+     *
+     * @return the index of the last char consumed
+     */
+    private int utf8(String value, int index) throws IOException {
+        char c = value.charAt(index);
+        if (c < 0x80) {
+            write(c);
+        } else if (c < 0x800) {
+            write(0xC0 | (c >> 6));
+            write(0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+            write(0xF0 | (codePoint >> 18));
+            write(0x80 | ((codePoint >> 12) & 0x3F));
+            write(0x80 | ((codePoint >> 6) & 0x3F));
+            write(0x80 | (codePoint & 0x3F));
+            return index + 1;
+        } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+            write('?');
+        } else {
+            write(0xE0 | (c >> 12));
+            write(0x80 | ((c >> 6) & 0x3F));
+            write(0x80 | (c & 0x3F));
+        }
+        return index;
+    }
+
+    private void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
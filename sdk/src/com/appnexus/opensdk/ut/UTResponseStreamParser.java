@@ -0,0 +1,174 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.ut;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import com.appnexus.opensdk.R;
+import com.appnexus.opensdk.utils.Clog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Pull parser for the /ut/v3 response.
+ * <p>
+ * Reads the response straight from the connection stream and hands every entry of the "tags" array to
+ * a {@link TagListener} as soon as it has been read, so the body never exists as a single String and is
+ * never parsed twice. The only large allocations left are the ad content strings themselves, which are
+ * shared with the {@link com.appnexus.opensdk.ut.adresponse.BaseAdResponse} built from the tag.
+ */
+public class UTResponseStreamParser {
+
+    private static final String RESPONSE_KEY_TAGS = "tags";
+
+    /**
+     * Receives the tags of the response in the order the server sent them.
+     */
+    public interface TagListener {
+        /**
+         * @param tag           the tag subtree of the response
+         * @param readTimeNanos time spent reading this tag from the stream
+         */
+        void onTagParsed(JSONObject tag, long readTimeNanos);
+    }
+
+    /**
+     * Reads the whole response from the stream.
+     *
+     * @param is       the response stream, read as UTF-8
+     * @param listener notified for each tag of the response
+     * @return the response root, sharing the tag objects passed to the listener. null if the body was empty.
+     * A malformed body is logged and whatever was read before the error is returned.
+     * @throws IOException if reading the stream fails
+     */
+    public static JSONObject parse(InputStream is, TagListener listener) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(is, UTConstants.UTF_8));
+        reader.setLenient(true);
+        JSONObject root = new JSONObject();
+        try {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                Clog.e(Clog.httpRespLogTag, Clog.getString(R.string.response_json_error, reader.peek().toString()));
+                return root;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (RESPONSE_KEY_TAGS.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    JSONArray tags = new JSONArray();
+                    root.put(RESPONSE_KEY_TAGS, tags);
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        long start = System.nanoTime();
+                        Object tag = readValue(reader);
+                        long readTimeNanos = System.nanoTime() - start;
+                        tags.put(tag);
+                        if (tag instanceof JSONObject && listener != null) {
+                            listener.onTagParsed((JSONObject) tag, readTimeNanos);
+                        }
+                    }
+                    reader.endArray();
+                } else {
+                    root.put(name, readValue(reader));
+                }
+            }
+            reader.endObject();
+        } catch (EOFException e) {
+            if (root.length() == 0) {
+                // Empty body
+                return null;
+            }
+            Clog.e(Clog.httpRespLogTag, Clog.getString(R.string.response_json_error, e.getMessage()));
+        } catch (MalformedJsonException e) {
+            Clog.e(Clog.httpRespLogTag, Clog.getString(R.string.response_json_error, e.getMessage()));
+        } catch (IllegalStateException e) {
+            // Thrown by JsonReader for a token that does not fit the structure read so far
+            Clog.e(Clog.httpRespLogTag, Clog.getString(R.string.response_json_error, e.getMessage()));
+        } catch (JSONException e) {
+            Clog.e(Clog.httpRespLogTag, Clog.getString(R.string.response_json_error, e.getMessage()));
+        } finally {
+            reader.close();
+        }
+        return root;
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return toNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                reader.skipValue();
+                return JSONObject.NULL;
+        }
+    }
+
+    private static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            object.put(name, readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    private static JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    // Mirrors the number handling of org.json, so JsonUtil getters behave as with new JSONObject(body)
+    static Object toNumber(String literal) {
+        try {
+            if (literal.indexOf('.') != -1 || literal.indexOf('e') != -1 || literal.indexOf('E') != -1) {
+                return Double.valueOf(literal);
+            }
+            long value = Long.parseLong(literal);
+            if (value <= Integer.MAX_VALUE && value >= Integer.MIN_VALUE) {
+                return (int) value;
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            return literal;
+        }
+    }
+}
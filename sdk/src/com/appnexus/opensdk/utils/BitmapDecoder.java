@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+/**
+ * Decodes images no larger than they are displayed.
+ * <p>
+ * The bounds are read first, and the image is subsampled by the largest power of two that keeps it at least
+ * as large as the target size. The pixels are decoded into a pooled bitmap when one fits, and in the
+ * requested config: RGB_565 halves the memory of opaque images, and hardware bitmaps keep the pixels out
+ * of the Java heap on Oreo and above.
+ */
+class BitmapDecoder {
+
+    private BitmapDecoder() {
+    }
+
+    /**
+     * @param width  width the image is displayed at in pixels, 0 to decode at full resolution
+     * @param height height the image is displayed at in pixels, 0 to decode at full resolution
+     * @param config the config to decode into, ARGB_8888 if null
+     * @param pool   bitmaps to decode into, may be null
+     * @return the decoded image, null if the data is not an image
+     */
+    static Bitmap decode(byte[] data, int width, int height, Bitmap.Config config, BitmapPool pool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+
+        Bitmap.Config preferredConfig = config != null ? config : Bitmap.Config.ARGB_8888;
+        options.inPreferredConfig = preferredConfig;
+        if (isHardware(preferredConfig)) {
+            // Hardware bitmaps can neither be decoded into nor reused
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        // Mutable, so that the bitmap can go back to the pool once the ad is gone
+        options.inMutable = true;
+        if (pool != null && options.outWidth > 0 && options.outHeight > 0
+                && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT || options.inSampleSize == 1)) {
+            int sampledWidth = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int sampledHeight = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = pool.get(sampledWidth, sampledHeight, preferredConfig);
+            if (options.inBitmap != null) {
+                try {
+                    Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+                    if (bitmap != null) {
+                        return bitmap;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // The pooled bitmap did not fit after all, decode into a new one
+                }
+                options.inBitmap = null;
+            }
+        }
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * @return the largest power of two the source can be divided by while staying at least as large as the
+     * target in both dimensions. 1 if any dimension is unknown.
+     */
+    static int calculateInSampleSize(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+        if (sourceWidth <= 0 || sourceHeight <= 0 || targetWidth <= 0 || targetHeight <= 0) {
+            return inSampleSize;
+        }
+        while (sourceWidth / (inSampleSize * 2) >= targetWidth && sourceHeight / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    @TargetApi(Build.VERSION_CODES.O)
+    private static boolean isHardware(Bitmap.Config config) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Bitmaps nobody uses anymore, kept to be decoded into through BitmapFactory.Options.inBitmap instead of
+ * allocating new ones. Bounded by the bytes held, the least recently added bitmaps are dropped first.
+ * Thread safe.
+ */
+class BitmapPool {
+
+    private final LinkedList<Bitmap> bitmaps = new LinkedList<Bitmap>();
+    private final long maxSize;
+    private long size = 0;
+
+    BitmapPool(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Adds a bitmap that is not drawn nor referenced by any ad anymore. Immutable bitmaps are ignored.
+     */
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        long bytes = getAllocationByteCount(bitmap);
+        if (bytes > maxSize) {
+            return;
+        }
+        bitmaps.addFirst(bitmap);
+        size += bytes;
+        while (size > maxSize) {
+            size -= getAllocationByteCount(bitmaps.removeLast());
+        }
+    }
+
+    /**
+     * @return a bitmap a width x height image of this config can be decoded into, null if none. Before KitKat
+     * the bitmap must be exactly the same size.
+     */
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        boolean anySize = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+        long needed = (long) width * height * getBytesPerPixel(config);
+        Bitmap best = null;
+        for (Bitmap bitmap : bitmaps) {
+            if (anySize) {
+                long bytes = getAllocationByteCount(bitmap);
+                if (bytes >= needed && (best == null || bytes < getAllocationByteCount(best))) {
+                    best = bitmap;
+                }
+            } else if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                best = bitmap;
+                break;
+            }
+        }
+        if (best != null) {
+            remove(best);
+        }
+        return best;
+    }
+
+    private void remove(Bitmap bitmap) {
+        Iterator<Bitmap> iterator = bitmaps.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == bitmap) {
+                iterator.remove();
+                size -= getAllocationByteCount(bitmap);
+                return;
+            }
+        }
+    }
+
+    synchronized void clear() {
+        bitmaps.clear();
+        size = 0;
+    }
+
+    synchronized int count() {
+        return bitmaps.size();
+    }
+
+    static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static long getAllocationByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+}
@@ -19,8 +19,15 @@ package com.appnexus.opensdk.utils;
 import android.content.Context;
 import android.util.Log;
 
+import org.json.JSONObject;
+
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.appnexus.opensdk.utils.ClogListener.LOG_LEVEL;
 
@@ -157,6 +164,186 @@ public class Clog {
         }
     }
 
+    /**
+     * Whether a message of this level and tag would reach logcat or a {@link ClogListener}.
+     * Guard the logging of messages that are costly to build, or whose arguments are, with it.
+     */
+    public static boolean isLoggable(String LogTag, LOG_LEVEL level) {
+        if (!listeners.isEmpty() && listensTo(level)) {
+            return true;
+        }
+        try {
+            int priority = toPriority(level);
+            return Settings.getSettings().debug_mode || Log.isLoggable(baseLogTag, priority)
+                    || Log.isLoggable(truncateLogTag(LogTag), priority);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /*
+     * Deferred formatting: the message is only formatted, with String.format or from a string resource,
+     * once isLoggable passed. A Throwable passed as the last argument is not a format argument, it takes
+     * the Throwable overload.
+     */
+    public static void v(String LogTag, String format, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.V)) {
+            v(LogTag, format(format, arg));
+        }
+    }
+
+    public static void v(String LogTag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.V)) {
+            v(LogTag, format(format, arg1, arg2));
+        }
+    }
+
+    public static void v(String LogTag, int resId, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.V)) {
+            v(LogTag, getFormattedString(resId, arg));
+        }
+    }
+
+    public static void v(String LogTag, int resId, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.V)) {
+            v(LogTag, getFormattedString(resId, arg1, arg2));
+        }
+    }
+
+    public static void d(String LogTag, String format, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.D)) {
+            d(LogTag, format(format, arg));
+        }
+    }
+
+    public static void d(String LogTag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.D)) {
+            d(LogTag, format(format, arg1, arg2));
+        }
+    }
+
+    public static void d(String LogTag, int resId, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.D)) {
+            d(LogTag, getFormattedString(resId, arg));
+        }
+    }
+
+    public static void d(String LogTag, int resId, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.D)) {
+            d(LogTag, getFormattedString(resId, arg1, arg2));
+        }
+    }
+
+    public static void i(String LogTag, String format, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.I)) {
+            i(LogTag, format(format, arg));
+        }
+    }
+
+    public static void i(String LogTag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.I)) {
+            i(LogTag, format(format, arg1, arg2));
+        }
+    }
+
+    public static void i(String LogTag, int resId, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.I)) {
+            i(LogTag, getFormattedString(resId, arg));
+        }
+    }
+
+    public static void i(String LogTag, int resId, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.I)) {
+            i(LogTag, getFormattedString(resId, arg1, arg2));
+        }
+    }
+
+    public static void w(String LogTag, String format, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.W)) {
+            w(LogTag, format(format, arg));
+        }
+    }
+
+    public static void w(String LogTag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.W)) {
+            w(LogTag, format(format, arg1, arg2));
+        }
+    }
+
+    public static void w(String LogTag, int resId, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.W)) {
+            w(LogTag, getFormattedString(resId, arg));
+        }
+    }
+
+    public static void w(String LogTag, int resId, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.W)) {
+            w(LogTag, getFormattedString(resId, arg1, arg2));
+        }
+    }
+
+    public static void e(String LogTag, String format, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.E)) {
+            e(LogTag, format(format, arg));
+        }
+    }
+
+    public static void e(String LogTag, String format, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.E)) {
+            e(LogTag, format(format, arg1, arg2));
+        }
+    }
+
+    public static void e(String LogTag, int resId, Object arg) {
+        if (isLoggable(LogTag, LOG_LEVEL.E)) {
+            e(LogTag, getFormattedString(resId, arg));
+        }
+    }
+
+    public static void e(String LogTag, int resId, Object arg1, Object arg2) {
+        if (isLoggable(LogTag, LOG_LEVEL.E)) {
+            e(LogTag, getFormattedString(resId, arg1, arg2));
+        }
+    }
+
+    private static String format(String format, Object... args) {
+        if (format == null) {
+            return null;
+        }
+        try {
+            return String.format(format, args);
+        } catch (IllegalFormatException e) {
+            return format + " " + Arrays.toString(args);
+        }
+    }
+
+    private static String getFormattedString(int id, Object... args) {
+        Context error_context = clog_context.get();
+
+        if (error_context == null)
+            return "";
+        try {
+            return error_context.getString(id, args);
+        } catch (IllegalFormatException e) {
+            return error_context.getString(id) + " " + Arrays.toString(args);
+        }
+    }
+
+    private static int toPriority(LOG_LEVEL level) {
+        switch (level) {
+            case V:
+                return Log.VERBOSE;
+            case D:
+                return Log.DEBUG;
+            case I:
+                return Log.INFO;
+            case W:
+                return Log.WARN;
+            default:
+                return Log.ERROR;
+        }
+    }
+
     /**
      * Logging helper functions for SDK
      */
@@ -289,62 +476,214 @@ public class Clog {
     }
 
     /**
-     * lastRequest/lastResponse helper methods
+     * lastRequest/lastResponse helper methods, backed by {@link DebugCapture} which must be enabled for them
+     * to return anything.
      */
 
+    /**
+     * @deprecated the SDK captures its requests through {@link DebugCapture}
+     */
+    @Deprecated
+    public static void setLastRequest(String lastRequest) {
+        DebugCapture.captureRequest(null, lastRequest);
+    }
 
-    private static String lastRequest = "";
-    private static String lastResponse = "";
+    /**
+     * @deprecated the SDK captures its requests through {@link DebugCapture}
+     */
+    @Deprecated
+    public static void setLastRequest(byte[] utf8) {
+        DebugCapture.captureRequest(null, utf8);
+    }
 
-    synchronized public static void setLastRequest(String lastRequest) {
-        Clog.lastRequest = lastRequest;
+    /**
+     * @return the body of the last ad request if {@link DebugCapture} is enabled, an empty String otherwise
+     */
+    public static String getLastRequest() {
+        List<DebugCapture.Exchange> exchanges = DebugCapture.getExchanges();
+        for (int i = exchanges.size() - 1; i >= 0; i--) {
+            if (exchanges.get(i).getRequest() != null) {
+                return exchanges.get(i).getRequest();
+            }
+        }
+        return "";
     }
 
-    synchronized public static String getLastRequest() {
-        return lastRequest;
+    /**
+     * @deprecated a failed request simply has no response in {@link DebugCapture}
+     */
+    @Deprecated
+    public static void clearLastResponse() {
     }
 
-    synchronized public static void clearLastResponse() {
-        Clog.lastResponse = "";
+    /**
+     * @deprecated the SDK captures its responses through {@link DebugCapture}
+     */
+    @Deprecated
+    public static void setLastResponse(String lastResponse) {
+        DebugCapture.captureResponse(null, lastResponse);
     }
 
-    synchronized public static void setLastResponse(String lastResponse) {
-        Clog.lastResponse = lastResponse;
+    /**
+     * @deprecated the SDK captures its responses through {@link DebugCapture}
+     */
+    @Deprecated
+    public static void setLastResponse(JSONObject lastResponse) {
+        DebugCapture.captureResponse(null, lastResponse);
     }
 
-    synchronized public static String getLastResponse() {
-        return lastResponse;
+    /**
+     * @return the body of the last ad response if {@link DebugCapture} is enabled, an empty String otherwise
+     */
+    public static String getLastResponse() {
+        List<DebugCapture.Exchange> exchanges = DebugCapture.getExchanges();
+        for (int i = exchanges.size() - 1; i >= 0; i--) {
+            if (exchanges.get(i).getResponse() != null) {
+                return exchanges.get(i).getResponse();
+            }
+        }
+        return "";
     }
 
     /**
      * ClogListener helper methods
      */
 
-    private static final ArrayList<ClogListener> listeners = new ArrayList<ClogListener>();
+    // Copy on write: registering is rare, dispatching never locks and never sees a list being modified
+    private static final CopyOnWriteArrayList<ClogListener> listeners = new CopyOnWriteArrayList<ClogListener>();
 
-    synchronized public static boolean registerListener(ClogListener listener) {
+    public static boolean registerListener(ClogListener listener) {
         return listener != null && listeners.add(listener);
     }
 
-    synchronized public static boolean unregisterListener(ClogListener listener) {
+    public static boolean unregisterListener(ClogListener listener) {
         return listener != null && listeners.remove(listener);
     }
 
-    synchronized public static void unregisterAllListeners() {
+    public static void unregisterAllListeners() {
         listeners.clear();
     }
 
-    private synchronized static void notifyListener(LOG_LEVEL level, String LogTag, String message) {
+    /**
+     * Delivers the messages to the listeners from a dedicated thread instead of the logging thread, so that a
+     * slow listener never holds up the SDK. Up to {@link Settings#CLOG_ASYNC_QUEUE_SIZE} messages wait for
+     * delivery, the oldest ones are dropped past that. Default is set to false.
+     *
+     * @param async true to deliver from a dedicated thread, false to deliver on the logging thread
+     */
+    public static void setAsyncListenerDelivery(boolean async) {
+        if (async) {
+            AsyncDelivery.start();
+        }
+        asyncDelivery = async;
+    }
+
+    public static boolean isAsyncListenerDelivery() {
+        return asyncDelivery;
+    }
+
+    /**
+     * @return the number of messages dropped because the asynchronous delivery queue was full
+     */
+    public static long getDroppedListenerMessageCount() {
+        return AsyncDelivery.dropped.get();
+    }
+
+    private static volatile boolean asyncDelivery = false;
+
+    private static boolean listensTo(LOG_LEVEL level) {
+        for (ClogListener listener : listeners) {
+            if (level.ordinal() >= listener.getLogLevel().ordinal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void notifyListener(LOG_LEVEL level, String LogTag, String message) {
         notifyListener(level, LogTag, message, null);
     }
 
-    private synchronized static void notifyListener(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+    private static void notifyListener(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        if (asyncDelivery) {
+            if (listensTo(level)) {
+                AsyncDelivery.offer(new Message(level, LogTag, message, tr));
+            }
+        } else {
+            deliver(level, LogTag, message, tr);
+        }
+    }
+
+    private static void deliver(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
         for (ClogListener listener : listeners) {
             if (level.ordinal() >= listener.getLogLevel().ordinal()) {
-                if (tr != null)
-                    listener.onReceiveMessage(level, LogTag, message, tr);
-                else
-                    listener.onReceiveMessage(level, LogTag, message);
+                // A throwing listener must not keep the message from the others
+                try {
+                    if (tr != null)
+                        listener.onReceiveMessage(level, LogTag, message, tr);
+                    else
+                        listener.onReceiveMessage(level, LogTag, message);
+                } catch (RuntimeException e) {
+                    // Straight to logcat, through Clog it would come back here
+                    Log.w(baseLogTag, "ClogListener failed to receive a message", e);
+                }
+            }
+        }
+    }
+
+    private static final class Message {
+        final LOG_LEVEL level;
+        final String LogTag;
+        final String message;
+        final Throwable tr;
+
+        Message(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            this.level = level;
+            this.LogTag = LogTag;
+            this.message = message;
+            this.tr = tr;
+        }
+    }
+
+    // Bounded drop-oldest queue, drained by a single daemon thread started on first use
+    private static final class AsyncDelivery {
+        static final ArrayBlockingQueue<Message> queue = new ArrayBlockingQueue<Message>(Settings.CLOG_ASYNC_QUEUE_SIZE);
+        static final AtomicLong dropped = new AtomicLong();
+        private static Thread thread;
+
+        static synchronized void start() {
+            if (thread != null) {
+                return;
+            }
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        try {
+                            Message message = queue.take();
+                            deliver(message.level, message.LogTag, message.message, message.tr);
+                        } catch (InterruptedException e) {
+                            return;
+                        } catch (Exception e) {
+                            // A failing listener must not stop the delivery to the others
+                            Log.e(baseLogTag, "Exception while notifying a ClogListener", e);
+                        }
+                    }
+                }
+            }, "ClogDelivery");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+
+        static void offer(Message message) {
+            while (!queue.offer(message)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
             }
         }
     }
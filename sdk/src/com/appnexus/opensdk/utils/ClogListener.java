@@ -34,7 +34,9 @@ public abstract class ClogListener {
      * Callback for all messages set to Clog after listener is registered.
      * Implement special handling of Clog messages here.
      * Make sure not to print to Clog in this method, or else
-     * the program will deadlock.
+     * the messages will loop back to the listener endlessly.
+     * Called on the logging thread, or on a dedicated thread
+     * if {@link Clog#setAsyncListenerDelivery(boolean)} is set.
      *
      * @param level the level of verbosity
      * @param LogTag the log tag associated with the message
@@ -46,7 +48,9 @@ public abstract class ClogListener {
      * Callback for all messages set to Clog after listener is registered.
      * Implement special handling of Clog messages here.
      * Make sure not to print to Clog in this method, or else
-     * the program will deadlock.
+     * the messages will loop back to the listener endlessly.
+     * Called on the logging thread, or on a dedicated thread
+     * if {@link Clog#setAsyncListenerDelivery(boolean)} is set.
      *
      * @param level the level of verbosity
      * @param LogTag the log tag associated with the message
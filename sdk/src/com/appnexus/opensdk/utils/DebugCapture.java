@@ -0,0 +1,232 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recent ad requests and their responses, for debugging. Off by default, nothing is retained
+ * until {@link #enable()} is called.
+ * <p>
+ * Exchanges are kept in a fixed size ring, the oldest one being overwritten by the next. The retained text is
+ * capped: each payload gets an equal share of the byte budget, and is either truncated to it or omitted.
+ * Capturing never locks, it is a slot claim and a write.
+ */
+public class DebugCapture {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String TRUNCATED = "...[truncated %d characters]";
+    private static final String OMITTED = "[omitted, %d characters]";
+
+    /**
+     * An ad request and its response, once received.
+     */
+    public static final class Exchange {
+        private final long timestamp;
+        private final String url;
+        private final String request;
+        private volatile String response;
+
+        private Exchange(String url, String request) {
+            this.timestamp = System.currentTimeMillis();
+            this.url = url;
+            this.request = request;
+        }
+
+        /**
+         * @return when the exchange was captured, in milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the url of the request, null if unknown
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return the body of the request, null if only the response was captured
+         */
+        public String getRequest() {
+            return request;
+        }
+
+        /**
+         * @return the body of the response, null until it is received
+         */
+        public String getResponse() {
+            return response;
+        }
+    }
+
+    private static final class Ring {
+        final AtomicReferenceArray<Exchange> slots;
+        final AtomicLong next = new AtomicLong();
+        final int maxBytes;
+        // In characters, two bytes each
+        final int payloadLimit;
+        final boolean truncate;
+
+        Ring(int capacity, int maxBytes, boolean truncate) {
+            this.slots = new AtomicReferenceArray<Exchange>(capacity);
+            this.maxBytes = maxBytes;
+            // A request and a response per exchange
+            this.payloadLimit = Math.max(1, maxBytes / (capacity * 2 * 2));
+            this.truncate = truncate;
+        }
+
+        void add(Exchange exchange) {
+            slots.set((int) (next.getAndIncrement() % slots.length()), exchange);
+        }
+
+        String cap(String payload) {
+            if (payload == null || payload.length() <= payloadLimit) {
+                return payload;
+            }
+            if (truncate) {
+                return payload.substring(0, payloadLimit) + String.format(TRUNCATED, payload.length() - payloadLimit);
+            }
+            return String.format(OMITTED, payload.length());
+        }
+    }
+
+    // null while capture is off
+    private static volatile Ring ring = null;
+
+    private DebugCapture() {
+    }
+
+    /**
+     * Starts capturing with the default limits: the last {@link Settings#DEBUG_CAPTURE_EXCHANGES} exchanges,
+     * {@link Settings#DEBUG_CAPTURE_MAX_BYTES} of text at most, larger payloads truncated.
+     */
+    public static void enable() {
+        enable(Settings.DEBUG_CAPTURE_EXCHANGES, Settings.DEBUG_CAPTURE_MAX_BYTES, true);
+    }
+
+    /**
+     * Starts capturing, dropping what was captured so far.
+     *
+     * @param exchanges number of exchanges kept
+     * @param maxBytes  text retained across all the exchanges at most
+     * @param truncate  true to keep the beginning of the payloads over their share of maxBytes, false to omit them
+     */
+    public static void enable(int exchanges, int maxBytes, boolean truncate) {
+        if (exchanges <= 0 || maxBytes <= 0) {
+            disable();
+            return;
+        }
+        ring = new Ring(exchanges, maxBytes, truncate);
+    }
+
+    /**
+     * Stops capturing and releases what was captured.
+     */
+    public static void disable() {
+        ring = null;
+    }
+
+    public static boolean isEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * Captures a request, if enabled. Only decodes the body when enabled.
+     *
+     * @return to attach the response with, null if capture is off
+     */
+    public static Exchange captureRequest(String url, byte[] utf8) {
+        Ring current = ring;
+        if (current == null || utf8 == null) {
+            return null;
+        }
+        return captureRequest(current, url, new String(utf8, UTF_8));
+    }
+
+    /**
+     * @see #captureRequest(String, byte[])
+     */
+    public static Exchange captureRequest(String url, String body) {
+        Ring current = ring;
+        if (current == null || body == null) {
+            return null;
+        }
+        return captureRequest(current, url, body);
+    }
+
+    private static Exchange captureRequest(Ring current, String url, String body) {
+        Exchange exchange = new Exchange(url, current.cap(body));
+        current.add(exchange);
+        return exchange;
+    }
+
+    /**
+     * Captures a response, if enabled. Only serializes it when enabled.
+     *
+     * @param exchange the exchange of the request, or null to capture the response on its own
+     * @param response the body, any object whose toString gives it
+     */
+    public static void captureResponse(Exchange exchange, Object response) {
+        Ring current = ring;
+        if (current == null || response == null) {
+            return;
+        }
+        String body = current.cap(response.toString());
+        if (exchange == null) {
+            exchange = new Exchange(null, null);
+            current.add(exchange);
+        }
+        exchange.response = body;
+    }
+
+    /**
+     * @return the captured exchanges, oldest first, empty if capture is off
+     */
+    public static List<Exchange> getExchanges() {
+        ArrayList<Exchange> exchanges = new ArrayList<Exchange>();
+        Ring current = ring;
+        if (current == null) {
+            return exchanges;
+        }
+        int capacity = current.slots.length();
+        long end = current.next.get();
+        for (long i = Math.max(0, end - capacity); i < end; i++) {
+            Exchange exchange = current.slots.get((int) (i % capacity));
+            if (exchange != null) {
+                exchanges.add(exchange);
+            }
+        }
+        return exchanges;
+    }
+
+    /**
+     * Drops what was captured so far, capture stays on if it was.
+     */
+    public static void clear() {
+        Ring current = ring;
+        if (current != null) {
+            ring = new Ring(current.slots.length(), current.maxBytes, current.truncate);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Request and response compression of the SDK HTTP traffic.
+ * <p>
+ * Responses are requested with gzip or deflate and decoded here rather than by HttpURLConnection, which
+ * only handles gzip and hides the size of the body on the wire. Request bodies of at least
+ * {@link Settings#HTTP_MIN_COMPRESSED_REQUEST_SIZE} bytes are sent gzipped, when that makes them smaller.
+ * Compression can be turned off per {@link Endpoint}, and the bytes sent and received are counted per
+ * {@link Endpoint}, before and after compression.
+ */
+public class HTTPCompression {
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final String IDENTITY = "identity";
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String DEFLATE = "deflate";
+
+    /**
+     * The kinds of HTTP traffic of the SDK.
+     */
+    public enum Endpoint {
+        AD_REQUEST,   // /ut/v3 requests
+        SSM,          // SSM handler urls
+        MRAID_EXPAND, // Content of two part MRAID expands
+        TRACKER;      // Impression, click and response url trackers
+
+        private volatile boolean enabled = true;
+        private final Counters counters = new Counters();
+    }
+
+    /**
+     * Bytes exchanged with an {@link Endpoint} since the process started. The body counts are the sizes
+     * before compression, the wire counts the sizes actually transferred.
+     */
+    public static class Counters {
+        private final AtomicLong requestBodyBytes = new AtomicLong();
+        private final AtomicLong requestWireBytes = new AtomicLong();
+        private final AtomicLong responseBodyBytes = new AtomicLong();
+        private final AtomicLong responseWireBytes = new AtomicLong();
+
+        public long getRequestBodyBytes() {
+            return requestBodyBytes.get();
+        }
+
+        public long getRequestWireBytes() {
+            return requestWireBytes.get();
+        }
+
+        public long getResponseBodyBytes() {
+            return responseBodyBytes.get();
+        }
+
+        public long getResponseWireBytes() {
+            return responseWireBytes.get();
+        }
+
+        /**
+         * @return the bytes compression kept off the network, requests and responses combined
+         */
+        public long getBytesSaved() {
+            return getRequestBodyBytes() - getRequestWireBytes() + getResponseBodyBytes() - getResponseWireBytes();
+        }
+
+        void reset() {
+            requestBodyBytes.set(0);
+            requestWireBytes.set(0);
+            responseBodyBytes.set(0);
+            responseWireBytes.set(0);
+        }
+    }
+
+    private HTTPCompression() {
+    }
+
+    /**
+     * @param endpoint the traffic to compress or not
+     * @param enabled  false to send and receive the bodies of this endpoint uncompressed. Default is true.
+     */
+    public static void setEnabled(Endpoint endpoint, boolean enabled) {
+        endpoint.enabled = enabled;
+    }
+
+    public static boolean isEnabled(Endpoint endpoint) {
+        return endpoint.enabled;
+    }
+
+    public static Counters getCounters(Endpoint endpoint) {
+        return endpoint.counters;
+    }
+
+    // Tests only
+    static void resetCounters() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            endpoint.counters.reset();
+        }
+    }
+
+    /**
+     * Sets the Accept-Encoding of the request. The response must then be read through
+     * {@link #getResponseStream(HttpURLConnection, Endpoint)}. Call before connecting.
+     */
+    public static void acceptCompressedResponse(HttpURLConnection connection, Endpoint endpoint) {
+        // An explicit identity also keeps HttpURLConnection from asking for gzip on its own
+        connection.setRequestProperty("Accept-Encoding", endpoint.enabled ? ACCEPT_ENCODING : IDENTITY);
+    }
+
+    /**
+     * Writes the request body, gzipped if the endpoint allows it and it is worth it, and closes the stream.
+     * Call once all other request properties are set.
+     *
+     * @param body the body, uncompressed
+     * @return the number of bytes written to the connection
+     */
+    public static int writeRequestBody(HttpURLConnection connection, byte[] body, Endpoint endpoint) throws IOException {
+        byte[] wire = body;
+        if (endpoint.enabled && body.length >= Settings.HTTP_MIN_COMPRESSED_REQUEST_SIZE) {
+            byte[] compressed = gzip(body);
+            if (compressed.length < body.length) {
+                connection.setRequestProperty("Content-Encoding", GZIP);
+                wire = compressed;
+            }
+        }
+        OutputStream os = connection.getOutputStream();
+        try {
+            os.write(wire);
+        } finally {
+            os.close();
+        }
+        endpoint.counters.requestBodyBytes.addAndGet(body.length);
+        endpoint.counters.requestWireBytes.addAndGet(wire.length);
+        return wire.length;
+    }
+
+    static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 32);
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed, BUFFER_SIZE);
+        gzip.write(body);
+        gzip.close();
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @return the decoded response body of a request made with
+     * {@link #acceptCompressedResponse(HttpURLConnection, Endpoint)}. Closing it closes the connection stream.
+     */
+    public static ResponseStream getResponseStream(HttpURLConnection connection, Endpoint endpoint) throws IOException {
+        return getResponseStream(connection.getInputStream(), connection.getContentEncoding(), endpoint);
+    }
+
+    static ResponseStream getResponseStream(InputStream is, String contentEncoding, Endpoint endpoint) throws IOException {
+        CountingInputStream wire = new CountingInputStream(is);
+        return new ResponseStream(decode(wire, contentEncoding), wire, endpoint.counters);
+    }
+
+    private static InputStream decode(InputStream wire, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return wire;
+        }
+        String encoding = contentEncoding.trim();
+        boolean gzip = GZIP.equalsIgnoreCase(encoding) || X_GZIP.equalsIgnoreCase(encoding);
+        boolean deflate = DEFLATE.equalsIgnoreCase(encoding);
+        if (!gzip && !deflate) {
+            return wire;
+        }
+        // Look at the first bytes: an empty body has no gzip header, and servers disagree on what deflate is
+        PushbackInputStream in = new PushbackInputStream(wire, 2);
+        byte[] header = new byte[2];
+        int length = 0;
+        int read;
+        while (length < 2 && (read = in.read(header, length, 2 - length)) != -1) {
+            length += read;
+        }
+        if (length == 0) {
+            return in;
+        }
+        in.unread(header, 0, length);
+        if (gzip) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        // RFC 7230 deflate is zlib wrapped, some servers send the raw deflate stream instead
+        boolean zlib = length == 2 && (header[0] & 0x0F) == 8
+                && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        return new OwnedInflaterInputStream(in, new Inflater(!zlib));
+    }
+
+    /**
+     * Decoded response body, counting the bytes read before and after decoding. The counts are added to the
+     * endpoint counters when the stream is closed.
+     */
+    public static class ResponseStream extends FilterInputStream {
+        private final CountingInputStream wire;
+        private final Counters counters;
+        private long bodyBytes = 0;
+        private boolean closed = false;
+
+        ResponseStream(InputStream decoded, CountingInputStream wire, Counters counters) {
+            super(decoded);
+            this.wire = wire;
+            this.counters = counters;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                bodyBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                bodyBytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            bodyBytes += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                counters.responseBodyBytes.addAndGet(bodyBytes);
+                counters.responseWireBytes.addAndGet(wire.count);
+            }
+            super.close();
+        }
+
+        public long getBodyBytes() {
+            return bodyBytes;
+        }
+
+        public long getWireBytes() {
+            return wire.count;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            this.count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    // InflaterInputStream only releases the native memory of the Inflater it created itself
+    private static class OwnedInflaterInputStream extends InflaterInputStream {
+        OwnedInflaterInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
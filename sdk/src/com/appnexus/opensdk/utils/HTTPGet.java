@@ -25,6 +25,7 @@ import android.text.TextUtils;
 
 import com.appnexus.opensdk.R;
 import com.appnexus.opensdk.SDKSettings;
+import com.appnexus.opensdk.tasksmanager.TaskPriority;
 import com.appnexus.opensdk.tasksmanager.TasksManager;
 
 import java.io.BufferedReader;
@@ -52,53 +53,81 @@ public abstract class HTTPGet {
     public void execute() {
         if (SDKSettings.isBackgroundThreadingEnabled()) {
             if (Looper.myLooper() == Looper.getMainLooper()) {
-                TasksManager.getInstance().executeOnBackgroundThread(new Runnable() {
+                boolean queued = TasksManager.getInstance().executeOnBackgroundThread(new Runnable() {
                     @Override
                     public void run() {
                         HTTPResponse response = makeHttpRequest();
                         onPostExecute(response);
                     }
-                });
+                }, getTaskPriority());
+                if (!queued) {
+                    // Lane is full, a tracker must not be lost so fall back to the external executor
+                    executeAsync();
+                }
             } else {
                 HTTPResponse response = makeHttpRequest();
                 onPostExecute(response);
             }
         } else {
-            httpGetAsync = new HTTPGetAsync();
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-                httpGetAsync.executeOnExecutor(SDKSettings.getExternalExecutor());
-            } else {
-                httpGetAsync.execute();
-            }
+            executeAsync();
+        }
+    }
+
+    private void executeAsync() {
+        httpGetAsync = new HTTPGetAsync();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            httpGetAsync.executeOnExecutor(SDKSettings.getExternalExecutor());
+        } else {
+            httpGetAsync.execute();
         }
     }
 
     protected abstract String getUrl();
 
-    private HttpURLConnection createConnection(URL url) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    /**
+     * Lane of the background thread pool this request runs in, trackers by default.
+     * Requests that fetch content an ad needs to render should override this with {@link TaskPriority#AD_REQUEST}
+     */
+    protected TaskPriority getTaskPriority() {
+        return TaskPriority.TRACKER;
+    }
+
+    /**
+     * Kind of traffic this request is, compression is turned off and bytes are counted per kind.
+     * Trackers by default.
+     */
+    protected HTTPCompression.Endpoint getCompressionEndpoint() {
+        return HTTPCompression.Endpoint.TRACKER;
+    }
+
+    /**
+     * Cookies sent with the request, when the device access is allowed. Those of the SDK cookie domain by default.
+     */
+    protected String getCookie() {
+        return WebviewUtil.getCookie();
+    }
+
+    private void setConnectionMethod(HttpURLConnection connection) throws ProtocolException {
         connection.setDoOutput(false);
         connection.setDoInput(true);
-        connection.setUseCaches(false);
         connection.setRequestMethod("GET");
-        return connection;
     }
 
     private void setConnectionParams(HttpURLConnection connection) throws ProtocolException {
         connection.setRequestProperty("User-Agent", Settings.getSettings().ua);
+        HTTPCompression.acceptCompressedResponse(connection, getCompressionEndpoint());
         if (Settings.getSettings().deviceAccessAllowed && !Settings.getSettings().doNotTrack) {
-            String cookieString = WebviewUtil.getCookie();
+            String cookieString = getCookie();
             if (!TextUtils.isEmpty(cookieString)) {
                 connection.setRequestProperty("Cookie", cookieString);
             }
         }
-        connection.setConnectTimeout(Settings.HTTP_CONNECTION_TIMEOUT);
-        connection.setReadTimeout(Settings.HTTP_SOCKET_TIMEOUT);
     }
 
     protected HTTPResponse makeHttpRequest() {
         HTTPResponse out = new HTTPResponse();
         HttpURLConnection connection = null;
+        boolean reusable = false;
         try {
             URL reqUrl = new URL(getUrl());
             if (reqUrl.getHost() == null) {
@@ -106,16 +135,17 @@ public abstract class HTTPGet {
                 out.setSucceeded(false);
                 return out;
             }
-            Clog.i(Clog.httpReqLogTag, "HTTPGet ReqURL - " + reqUrl);
+            Clog.i(Clog.httpReqLogTag, "HTTPGet ReqURL - %s", reqUrl);
             //  Create and connect to HTTP service
-            connection = createConnection(reqUrl);
+            connection = Settings.getHttpTransport().openConnection(reqUrl);
+            setConnectionMethod(connection);
             setConnectionParams(connection);
             connection.connect();
 
 
             //Response parsing
             StringBuilder builder = new StringBuilder();
-            InputStream is = connection.getInputStream();
+            InputStream is = HTTPCompression.getResponseStream(connection, getCompressionEndpoint());
             BufferedReader reader = new BufferedReader(new InputStreamReader(is, "utf-8"));
             String line;
             while ((line = reader.readLine()) != null) {
@@ -131,6 +161,7 @@ public abstract class HTTPGet {
             boolean isStatusOK = (connection.getResponseCode()
                     == HttpURLConnection.HTTP_OK);
             out.setSucceeded(isStatusOK);
+            reusable = true;
 
         }catch (MalformedURLException e) {
             out.setSucceeded(false);
@@ -145,6 +176,8 @@ public abstract class HTTPGet {
             out.setErrorCode(HttpErrorCode.UNKNOWN_ERROR);
             e.printStackTrace();
             Clog.e(Clog.httpReqLogTag, Clog.getString(R.string.http_get_unknown_exception));
+        } finally {
+            Settings.getHttpTransport().release(connection, reusable);
         }
         return out;
     }
@@ -0,0 +1,47 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Transport used by the SDK for all of its HTTP traffic (ad requests and trackers).
+ * Every connection obtained through {@link #openConnection(URL)} must be handed back
+ * through {@link #release(HttpURLConnection, boolean)} once the response has been consumed.
+ */
+public interface HTTPTransport {
+
+    /**
+     * Opens a connection to the given url. Blocks while the host of the url is at its concurrency limit.
+     *
+     * @param url the url to connect to
+     * @return a connection with the SDK defaults (timeouts, keep-alive) applied
+     * @throws IOException if the connection could not be opened or no slot became available in time
+     */
+    HttpURLConnection openConnection(URL url) throws IOException;
+
+    /**
+     * Returns the connection to the transport.
+     *
+     * @param connection the connection previously returned by {@link #openConnection(URL)}
+     * @param reusable   true if the response was read without error and the socket may be kept alive
+     *                   for the next request to the same host, false to close it
+     */
+    void release(HttpURLConnection connection, boolean reusable);
+}
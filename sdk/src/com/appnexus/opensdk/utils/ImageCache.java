@@ -0,0 +1,585 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide cache of the native images and icons.
+ * <p>
+ * Decoded bitmaps are kept in a memory LRU bounded by their size in bytes, and the downloaded files in a
+ * bounded disk LRU under the app cache directory. Both honor the Cache-Control and Expires headers of the
+ * image: no-store and no-cache responses are not kept, and entries are only served while fresh. Concurrent
+ * requests for the same image share a single download.
+ * <p>
+ * Images are decoded at the size they are displayed at, see {@link BitmapDecoder}. The cache counts the ads
+ * using each bitmap it handed out: a bitmap neither cached nor used by an ad anymore goes to a
+ * {@link BitmapPool}, and the next images are decoded into it. Only bitmaps the SDK owns are pooled: a
+ * bitmap handed to an app that did not opt into reuse is left to the garbage collector, as the app may
+ * still be drawing it.
+ * <p>
+ * {@link #getBitmap(String)} blocks, call it from a background thread.
+ */
+class ImageCache implements ComponentCallbacks2 {
+
+    private static final String DIRECTORY = "appnexus_images";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NOT_CACHEABLE = -1;
+
+    private static class Entry {
+        final Bitmap bitmap;
+        final long expiresAt;
+
+        Entry(Bitmap bitmap, long expiresAt) {
+            this.bitmap = bitmap;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Download {
+        final CountDownLatch done = new CountDownLatch(1);
+        Bitmap bitmap;
+    }
+
+    // Who holds a bitmap handed out by the cache. Weak, a bitmap never released is simply not reused
+    private static class Usage {
+        int users = 0;
+        boolean cached = false;
+        // Handed to an app that may keep drawing it, never pooled
+        boolean shared = false;
+    }
+
+    private final LruCache<String, Entry> memory;
+    private final BitmapPool pool;
+    private final WeakHashMap<Bitmap, Usage> usages = new WeakHashMap<Bitmap, Usage>();
+    private final ConcurrentHashMap<String, Download> downloads = new ConcurrentHashMap<String, Download>();
+    private final Object diskLock = new Object();
+    private File directory;
+    private long diskSize = -1;
+
+    private static class ImageCacheWrapper {
+        // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
+        private static final ImageCache INSTANCE = new ImageCache();
+    }
+
+    static ImageCache getInstance() {
+        return ImageCacheWrapper.INSTANCE;
+    }
+
+    private ImageCache() {
+        int maxSize = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / Settings.IMAGE_MEMORY_CACHE_FRACTION);
+        memory = new LruCache<String, Entry>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.bitmap.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Entry oldValue, Entry newValue) {
+                if (newValue == null || newValue.bitmap != oldValue.bitmap) {
+                    setCached(oldValue.bitmap, false);
+                }
+            }
+        };
+        pool = new BitmapPool(Runtime.getRuntime().maxMemory() / Settings.IMAGE_BITMAP_POOL_FRACTION);
+    }
+
+    /**
+     * Enables the disk cache and the trimming of the memory cache. Only does work the first time it is called.
+     */
+    void attach(Context context) {
+        synchronized (diskLock) {
+            if (directory != null) {
+                return;
+            }
+            Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            directory = new File(applicationContext.getCacheDir(), DIRECTORY);
+            applicationContext.registerComponentCallbacks(this);
+        }
+    }
+
+    /**
+     * @return the image at url at full resolution, see {@link #getBitmap(String, int, int, Bitmap.Config)}
+     */
+    Bitmap getBitmap(String url) {
+        return getBitmap(url, 0, 0, null);
+    }
+
+    /**
+     * The bitmap is counted as used until it is passed to {@link #release(Bitmap)}.
+     *
+     * @param width  width the image is displayed at in pixels, 0 for the full resolution
+     * @param height height the image is displayed at in pixels, 0 for the full resolution
+     * @param config the config to decode into, ARGB_8888 if null
+     * @return the image at url from the memory cache, the disk cache or the network, in that order.
+     * null if it could not be downloaded or decoded.
+     */
+    Bitmap getBitmap(String url, int width, int height, Bitmap.Config config) {
+        Request request = new Request(url, width, height, config);
+        String key = request.getKey();
+        while (true) {
+            Bitmap bitmap = getFromMemory(key);
+            if (bitmap != null) {
+                return bitmap;
+            }
+            Download download = new Download();
+            Download inFlight = downloads.putIfAbsent(key, download);
+            if (inFlight == null) {
+                return download(request, download);
+            }
+            // Join the download already in progress
+            try {
+                if (!inFlight.done.await(Settings.HTTP_CONNECTION_TIMEOUT + Settings.HTTP_SOCKET_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (inFlight.bitmap == null || tryAcquire(inFlight.bitmap)) {
+                return inFlight.bitmap;
+            }
+            // Already released to the pool by everyone else, start over
+        }
+    }
+
+    private Bitmap download(Request request, Download download) {
+        String key = request.getKey();
+        try {
+            download.bitmap = load(request);
+            return download.bitmap;
+        } finally {
+            downloads.remove(key);
+            download.done.countDown();
+        }
+    }
+
+    private static class Request {
+        final String url;
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+
+        Request(String url, int width, int height, Bitmap.Config config) {
+            this.url = url;
+            this.width = Math.max(0, width);
+            this.height = Math.max(0, height);
+            this.config = config != null ? config : Bitmap.Config.ARGB_8888;
+        }
+
+        // Memory cache key, the same file decoded at another size or config is another bitmap
+        String getKey() {
+            if (width == 0 && height == 0 && config == Bitmap.Config.ARGB_8888) {
+                return url;
+            }
+            return url + "#" + width + "x" + height + ":" + config;
+        }
+
+        Bitmap decode(byte[] data, BitmapPool pool) {
+            return BitmapDecoder.decode(data, width, height, config, pool);
+        }
+    }
+
+    // For a bitmap just decoded
+    private void acquire(Bitmap bitmap) {
+        synchronized (usages) {
+            getUsage(bitmap).users++;
+        }
+    }
+
+    /**
+     * @return false if the bitmap went to the pool in the meantime
+     */
+    private boolean tryAcquire(Bitmap bitmap) {
+        synchronized (usages) {
+            Usage usage = usages.get(bitmap);
+            if (usage == null) {
+                return false;
+            }
+            usage.users++;
+            return true;
+        }
+    }
+
+    /**
+     * Tells the cache an ad does not use a bitmap it handed out anymore. Bitmaps the cache does not know
+     * about are ignored.
+     *
+     * @param reusable false if the app may still hold the bitmap, it is then never pooled
+     */
+    void release(Bitmap bitmap, boolean reusable) {
+        if (bitmap == null) {
+            return;
+        }
+        synchronized (usages) {
+            Usage usage = usages.get(bitmap);
+            if (usage == null) {
+                return;
+            }
+            usage.shared |= !reusable;
+            usage.users = Math.max(0, usage.users - 1);
+            recycleIfUnused(bitmap, usage);
+        }
+    }
+
+    private void setCached(Bitmap bitmap, boolean cached) {
+        synchronized (usages) {
+            Usage usage = getUsage(bitmap);
+            usage.cached = cached;
+            recycleIfUnused(bitmap, usage);
+        }
+    }
+
+    private Usage getUsage(Bitmap bitmap) {
+        Usage usage = usages.get(bitmap);
+        if (usage == null) {
+            usage = new Usage();
+            usages.put(bitmap, usage);
+        }
+        return usage;
+    }
+
+    private void recycleIfUnused(Bitmap bitmap, Usage usage) {
+        if (usage.users == 0 && !usage.cached) {
+            usages.remove(bitmap);
+            if (!usage.shared) {
+                pool.put(bitmap);
+            }
+        }
+    }
+
+    private void putInMemory(String key, Bitmap bitmap, long expiresAt) {
+        setCached(bitmap, true);
+        memory.put(key, new Entry(bitmap, expiresAt));
+    }
+
+    private Bitmap getFromMemory(String key) {
+        Entry entry = memory.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.bitmap.isRecycled() || entry.expiresAt <= System.currentTimeMillis()) {
+            memory.remove(key);
+            return null;
+        }
+        // Evicted and pooled since, a miss
+        return tryAcquire(entry.bitmap) ? entry.bitmap : null;
+    }
+
+    private Bitmap load(Request request) {
+        String url = request.url;
+        File file = getFile(url);
+        if (file != null) {
+            Bitmap bitmap = readFromDisk(request, file);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        HttpURLConnection connection = null;
+        boolean reusable = false;
+        try {
+            connection = Settings.getHttpTransport().openConnection(new URL(url));
+            connection.setReadTimeout(ImageService.TIMEOUT);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+            byte[] data = readFully(connection.getInputStream());
+            reusable = true;
+            Bitmap bitmap = request.decode(data, pool);
+            if (bitmap == null) {
+                return null;
+            }
+            acquire(bitmap);
+            long lifetime = getFreshnessLifetime(connection.getHeaderField("Cache-Control"),
+                    connection.getHeaderFieldDate("Expires", 0), connection.getDate());
+            if (lifetime > 0) {
+                long expiresAt = System.currentTimeMillis() + lifetime;
+                putInMemory(request.getKey(), bitmap, expiresAt);
+                if (file != null) {
+                    writeToDisk(file, data, expiresAt);
+                }
+            }
+            return bitmap;
+        } catch (Exception e) {
+            Clog.d(Clog.baseLogTag, "Unable to download image " + url + ": " + e.getMessage());
+            return null;
+        } finally {
+            Settings.getHttpTransport().release(connection, reusable);
+        }
+    }
+
+    /**
+     * @param cacheControl the Cache-Control header, null if none
+     * @param expires      the Expires header, 0 if none
+     * @param date         the Date header, 0 if none
+     * @return how long the response can be served from the cache in milliseconds, {@link #NOT_CACHEABLE} if it
+     * must not be kept
+     */
+    static long getFreshnessLifetime(String cacheControl, long expires, long date) {
+        if (cacheControl != null) {
+            long maxAge = -1;
+            for (String directive : cacheControl.split(",")) {
+                String name = directive.trim().toLowerCase();
+                if (name.equals("no-store") || name.equals("no-cache")) {
+                    // Nothing to revalidate with, no-cache is as good as no-store here
+                    return NOT_CACHEABLE;
+                }
+                if (name.startsWith("max-age=")) {
+                    try {
+                        maxAge = Long.parseLong(name.substring("max-age=".length()).replace("\"", "").trim());
+                    } catch (NumberFormatException e) {
+                        return NOT_CACHEABLE;
+                    }
+                }
+            }
+            if (maxAge >= 0) {
+                return maxAge > 0 ? TimeUnit.SECONDS.toMillis(maxAge) : NOT_CACHEABLE;
+            }
+        }
+        if (expires > 0) {
+            long lifetime = expires - (date > 0 ? date : System.currentTimeMillis());
+            return lifetime > 0 ? lifetime : NOT_CACHEABLE;
+        }
+        return Settings.IMAGE_CACHE_DEFAULT_LIFETIME;
+    }
+
+    private File getFile(String url) {
+        synchronized (diskLock) {
+            if (directory == null) {
+                return null;
+            }
+            return new File(directory, hash(url));
+        }
+    }
+
+    private Bitmap readFromDisk(Request request, File file) {
+        synchronized (diskLock) {
+            if (!file.exists()) {
+                return null;
+            }
+            DataInputStream is = null;
+            try {
+                is = new DataInputStream(new FileInputStream(file));
+                long expiresAt = is.readLong();
+                if (expiresAt <= System.currentTimeMillis()) {
+                    delete(file);
+                    return null;
+                }
+                byte[] data = readFully(is);
+                Bitmap bitmap = request.decode(data, pool);
+                if (bitmap == null) {
+                    delete(file);
+                    return null;
+                }
+                acquire(bitmap);
+                // The most recently used files are the last evicted
+                file.setLastModified(System.currentTimeMillis());
+                putInMemory(request.getKey(), bitmap, expiresAt);
+                return bitmap;
+            } catch (IOException e) {
+                delete(file);
+                return null;
+            } finally {
+                closeQuietly(is);
+            }
+        }
+    }
+
+    private void writeToDisk(File file, byte[] data, long expiresAt) {
+        synchronized (diskLock) {
+            if (data.length + 8 > Settings.IMAGE_DISK_CACHE_SIZE) {
+                return;
+            }
+            if (!directory.exists() && !directory.mkdirs()) {
+                return;
+            }
+            initDiskSize();
+            delete(file);
+            File temp = new File(directory, file.getName() + ".tmp");
+            DataOutputStream os = null;
+            try {
+                os = new DataOutputStream(new FileOutputStream(temp));
+                os.writeLong(expiresAt);
+                os.write(data);
+                os.close();
+                os = null;
+                if (temp.renameTo(file)) {
+                    diskSize += file.length();
+                    trimDisk(Settings.IMAGE_DISK_CACHE_SIZE);
+                } else {
+                    temp.delete();
+                }
+            } catch (IOException e) {
+                Clog.d(Clog.baseLogTag, "Unable to cache image: " + e.getMessage());
+                temp.delete();
+            } finally {
+                closeQuietly(os);
+            }
+        }
+    }
+
+    private void initDiskSize() {
+        if (diskSize < 0) {
+            diskSize = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    diskSize += f.length();
+                }
+            }
+        }
+    }
+
+    private void delete(File file) {
+        long length = file.length();
+        if (file.delete() && diskSize >= 0) {
+            diskSize -= length;
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the disk cache holds at most maxSize bytes.
+     */
+    private void trimDisk(long maxSize) {
+        if (diskSize <= maxSize) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && diskSize > maxSize; i++) {
+            delete(files[i]);
+        }
+    }
+
+    // Package only for testing purpose
+    void clear() {
+        memory.evictAll();
+        pool.clear();
+        synchronized (diskLock) {
+            if (directory != null) {
+                diskSize = -1;
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File f : files) {
+                        f.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    // Package only for testing purpose
+    int memorySize() {
+        return memory.size();
+    }
+
+    // Package only for testing purpose
+    BitmapPool getPool() {
+        return pool;
+    }
+
+    private static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(url.hashCode());
+        } catch (IOException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        is.close();
+        return out.toByteArray();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Running low, or in the background where the images are not shown
+            memory.evictAll();
+            pool.clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            memory.trimToSize(memory.maxSize() / 2);
+            pool.clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        memory.evictAll();
+        pool.clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
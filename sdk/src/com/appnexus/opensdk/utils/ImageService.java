@@ -16,28 +16,38 @@
 
 package com.appnexus.opensdk.utils;
 
+import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
 import android.os.Build;
 
 import com.appnexus.opensdk.SDKSettings;
+import com.appnexus.opensdk.tasksmanager.TaskPriority;
 import com.appnexus.opensdk.tasksmanager.TasksManager;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.HashMap;
 import java.util.Map;
 
 public class ImageService {
     HashMap<String, String> imageUrlMap = new HashMap<>();
+    HashMap<String, int[]> targetSizes = new HashMap<>();
+    Bitmap.Config bitmapConfig = null;
     ImageServiceListener imageServiceListener;
 
     static final int TIMEOUT = 10000;
     private ImageReceiver imageReceiver;
 
+    public ImageService() {
+    }
+
+    /**
+     * @param context enables the disk cache of the images
+     */
+    public ImageService(Context context) {
+        ImageCache.getInstance().attach(context);
+    }
+
     public void registerImageReceiver(ImageReceiver imageReceiver, HashMap<String, String> imageUrlMap) {
         if (imageReceiver != null && imageUrlMap != null && !imageUrlMap.isEmpty()) {
             this.imageReceiver = imageReceiver;
@@ -45,6 +55,33 @@ public class ImageService {
         }
     }
 
+    /**
+     * Decodes the image of key no larger than needed to be displayed at width x height pixels.
+     * By default images are decoded at their full resolution.
+     */
+    public void setTargetSize(String key, int width, int height) {
+        targetSizes.put(key, new int[]{width, height});
+    }
+
+    /**
+     * @param config the config the images are decoded into, ARGB_8888 by default. RGB_565 halves the memory
+     *               of images without transparency, HARDWARE keeps the pixels out of the Java heap on Oreo and above
+     *               but the bitmaps cannot be modified.
+     */
+    public void setBitmapConfig(Bitmap.Config config) {
+        this.bitmapConfig = config;
+    }
+
+    /**
+     * Tells the SDK a bitmap it delivered is not used by the ad anymore.
+     *
+     * @param reusable true if the app is known not to draw the bitmap anymore, its memory is then reused for
+     *                 the next images. Otherwise the bitmap is left to the garbage collector.
+     */
+    public static void release(Bitmap bitmap, boolean reusable) {
+        ImageCache.getInstance().release(bitmap, reusable);
+    }
+
     public void registerNotification(ImageServiceListener imageServiceListener) {
         this.imageServiceListener = imageServiceListener;
     }
@@ -77,6 +114,12 @@ public class ImageService {
             HashMap<String, String> imageUrlMapCopy = new HashMap<>(imageUrlMap);
             for (Map.Entry pairs : imageUrlMapCopy.entrySet()) {
                 ImageDownloader downloader = new ImageDownloader(imageReceiver, (String) pairs.getKey(), (String) pairs.getValue(), this);
+                int[] targetSize = targetSizes.get(pairs.getKey());
+                if (targetSize != null) {
+                    downloader.width = targetSize[0];
+                    downloader.height = targetSize[1];
+                }
+                downloader.config = bitmapConfig;
                 Clog.d(Clog.baseLogTag, "Downloading " + pairs.getKey() + " from url: " + pairs.getValue());
                 downloader.execute();
             }
@@ -91,6 +134,9 @@ public class ImageService {
         WeakReference<ImageService> caller;
         WeakReference<ImageReceiver> imageReceiver;
         String url;
+        int width = 0;
+        int height = 0;
+        Bitmap.Config config = null;
         private boolean isCancelled;
         ImageDownloaderAsync downloaderAsync;
 
@@ -102,15 +148,18 @@ public class ImageService {
         }
 
         public void execute() {
+            boolean queued = false;
             if (SDKSettings.isBackgroundThreadingEnabled()) {
-                TasksManager.getInstance().executeOnBackgroundThread(new Runnable() {
+                queued = TasksManager.getInstance().executeOnBackgroundThread(new Runnable() {
                     @Override
                     public void run() {
                         Bitmap bitmap = getBitmap();
                         consumeBitmap(bitmap);
                     }
-                });
-            } else {
+                }, TaskPriority.IMAGE);
+            }
+            // Background threading off, or the lane is full: the download must still complete for the ad to load
+            if (!queued) {
                 downloaderAsync = new ImageDownloaderAsync();
                 Clog.d(Clog.baseLogTag, "Downloading " + key + " from url: " + url);
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -154,17 +203,7 @@ public class ImageService {
             if (isCancelled || StringUtil.isEmpty(url)) {
                 return null;
             }
-            try {
-                URLConnection connection = new URL(url).openConnection();
-                connection.setReadTimeout(TIMEOUT);
-                InputStream is = (InputStream) connection.getContent();
-                Bitmap bitmap = BitmapFactory.decodeStream(is);
-                is.close();
-                return bitmap;
-
-            } catch (Exception ignore) {
-            }
-            return null;
+            return ImageCache.getInstance().getBitmap(url, width, height, config);
         }
 
         private void consumeBitmap(Bitmap image) {
@@ -176,6 +215,9 @@ public class ImageService {
                 } else {
                     receiver.onReceiveImage(key, image);
                 }
+            } else if (image != null) {
+                // Cancelled, never handed to the app
+                ImageCache.getInstance().release(image, true);
             }
             if (service != null) {
                 service.finishDownload(key);
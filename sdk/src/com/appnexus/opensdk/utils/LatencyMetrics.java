@@ -0,0 +1,359 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import com.appnexus.opensdk.MediaType;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the phases of ad loads, to find where the tail latency comes from in production.
+ * <p>
+ * Each timed phase is a {@link Span}, counted in a histogram per placement, per ad format and per detail (the
+ * adapter for mediation, whether the WebView came from the pool for its creation, the impression counting
+ * method for impressions). Off by default: nothing is timed nor retained until {@link #setEnabled(boolean)}.
+ * Histograms are kept for {@link Settings#LATENCY_METRICS_MAX_KEYS} keys per phase and dimension at most, the
+ * others are counted under {@link #OTHER}.
+ * <p>
+ * Spans are also handed to the {@link Listener}, if any, to export them.
+ */
+public class LatencyMetrics {
+
+    /**
+     * Key the spans are counted under once a dimension has {@link Settings#LATENCY_METRICS_MAX_KEYS} keys
+     */
+    public static final String OTHER = "other";
+    /**
+     * Key the spans are counted under when they have no value for a dimension
+     */
+    public static final String UNKNOWN = "unknown";
+
+    public enum Phase {
+        /**
+         * Writing the body of the ad request
+         */
+        REQUEST_BUILD,
+        /**
+         * Opening the connection and sending the ad request
+         */
+        CONNECT,
+        /**
+         * Waiting for the status of the ad response, time to first byte
+         */
+        TTFB,
+        /**
+         * Reading the ad response, stream parsed as it is read
+         */
+        DOWNLOAD,
+        /**
+         * Parsing the ads of the response
+         */
+        PARSE,
+        /**
+         * Waiting for a mediated network, one step of the waterfall
+         */
+        MEDIATION,
+        /**
+         * Getting the WebView of the ad
+         */
+        WEBVIEW_CREATE,
+        /**
+         * Loading the creative, until the WebView first finishes the page
+         */
+        WEBVIEW_LOAD,
+        /**
+         * From the ad being loaded to its impression being fired
+         */
+        IMPRESSION
+    }
+
+    public enum Dimension {
+        PLACEMENT,
+        FORMAT,
+        DETAIL
+    }
+
+    /**
+     * Gets the spans as they are recorded.
+     */
+    public interface Listener {
+        /**
+         * Called on the thread that recorded the span, the main thread for most phases, so keep it short.
+         */
+        void onSpanRecorded(Span span);
+    }
+
+    /**
+     * A timed phase of an ad load.
+     */
+    public static final class Span {
+        private final Phase phase;
+        private final String placementId;
+        private final MediaType format;
+        private final String detail;
+        private final long durationNanos;
+
+        Span(Phase phase, String placementId, MediaType format, String detail, long durationNanos) {
+            this.phase = phase;
+            this.placementId = placementId;
+            this.format = format;
+            this.detail = detail;
+            this.durationNanos = durationNanos;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        /**
+         * @return the placement of the ad, null if requested by inventory code or unknown
+         */
+        public String getPlacementId() {
+            return placementId;
+        }
+
+        /**
+         * @return the format of the ad, null if unknown
+         */
+        public MediaType getFormat() {
+            return format;
+        }
+
+        /**
+         * @return the adapter, pool use or counting method depending on the phase, null if none
+         */
+        public String getDetail() {
+            return detail;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return phase + " " + placementId + " " + format + " " + detail + " "
+                    + TimeUnit.NANOSECONDS.toMicros(durationNanos) + "us";
+        }
+    }
+
+    /**
+     * The state of a histogram when it was taken. Values are in microseconds, percentiles within 12.5%.
+     */
+    public static final class HistogramSnapshot {
+        private final Phase phase;
+        private final Dimension dimension;
+        private final String key;
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        HistogramSnapshot(Phase phase, Dimension dimension, String key, LatencyHistogram histogram) {
+            this.phase = phase;
+            this.dimension = dimension;
+            this.key = key;
+            this.buckets = histogram.copyBuckets();
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            this.count = total;
+            this.sum = histogram.getSum();
+            this.max = histogram.getMax();
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public Dimension getDimension() {
+            return dimension;
+        }
+
+        /**
+         * @return the placement, format name or detail the spans were counted under
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanMicros() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        public long getMaxMicros() {
+            return max;
+        }
+
+        /**
+         * @param percentile between 0 and 100, 99 for the p99
+         */
+        public long getPercentileMicros(double percentile) {
+            return LatencyHistogram.percentileOf(buckets, count, max, percentile);
+        }
+
+        @Override
+        public String toString() {
+            return phase + " " + dimension + "=" + key + " count=" + count + " mean=" + getMeanMicros()
+                    + "us p50=" + getPercentileMicros(50) + "us p90=" + getPercentileMicros(90)
+                    + "us p99=" + getPercentileMicros(99) + "us max=" + max + "us";
+        }
+    }
+
+    private static final EnumMap<Phase, EnumMap<Dimension, ConcurrentHashMap<String, LatencyHistogram>>> histograms;
+
+    static {
+        // Only the inner maps change, so the enum maps are safely read from any thread
+        histograms = new EnumMap<Phase, EnumMap<Dimension, ConcurrentHashMap<String, LatencyHistogram>>>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            EnumMap<Dimension, ConcurrentHashMap<String, LatencyHistogram>> dimensions =
+                    new EnumMap<Dimension, ConcurrentHashMap<String, LatencyHistogram>>(Dimension.class);
+            for (Dimension dimension : Dimension.values()) {
+                dimensions.put(dimension, new ConcurrentHashMap<String, LatencyHistogram>());
+            }
+            histograms.put(phase, dimensions);
+        }
+    }
+
+    private static volatile boolean enabled = false;
+    private static volatile Listener listener = null;
+
+    private LatencyMetrics() {
+    }
+
+    /**
+     * Starts or stops timing ad loads. Stopping keeps the histograms, see {@link #reset()}.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param spanListener gets each span as it is recorded, null to stop
+     */
+    public static void setListener(Listener spanListener) {
+        listener = spanListener;
+    }
+
+    /**
+     * Starts timing a phase, used by the SDK.
+     *
+     * @return the start to record the phase with, 0 if disabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a phase started with {@link #start()}, used by the SDK. Does nothing if it was started disabled.
+     */
+    public static void record(Phase phase, String placementId, MediaType format, String detail, long startNanos) {
+        if (startNanos != 0) {
+            recordDuration(phase, placementId, format, detail, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records a phase timed otherwise, used by the SDK.
+     */
+    public static void recordDuration(Phase phase, String placementId, MediaType format, String detail, long durationNanos) {
+        if (!enabled || durationNanos < 0) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        EnumMap<Dimension, ConcurrentHashMap<String, LatencyHistogram>> dimensions = histograms.get(phase);
+        histogramFor(dimensions.get(Dimension.PLACEMENT), placementId).record(micros);
+        histogramFor(dimensions.get(Dimension.FORMAT), format != null ? format.name() : null).record(micros);
+        if (detail != null) {
+            histogramFor(dimensions.get(Dimension.DETAIL), detail).record(micros);
+        }
+
+        Listener current = listener;
+        if (current != null) {
+            try {
+                current.onSpanRecorded(new Span(phase, placementId, format, detail, durationNanos));
+            } catch (RuntimeException e) {
+                Clog.w(Clog.baseLogTag, "LatencyMetrics listener failed", e);
+            }
+        }
+    }
+
+    private static LatencyHistogram histogramFor(ConcurrentHashMap<String, LatencyHistogram> keys, String key) {
+        if (key == null) {
+            key = UNKNOWN;
+        }
+        LatencyHistogram histogram = keys.get(key);
+        if (histogram != null) {
+            return histogram;
+        }
+        // The cap can be overshot by a few racing keys, that is fine
+        if (keys.size() >= Settings.LATENCY_METRICS_MAX_KEYS) {
+            key = OTHER;
+        }
+        histogram = new LatencyHistogram();
+        LatencyHistogram previous = keys.putIfAbsent(key, histogram);
+        return previous != null ? previous : histogram;
+    }
+
+    /**
+     * @return a snapshot of every histogram that counted spans, by phase then dimension
+     */
+    public static List<HistogramSnapshot> getHistograms() {
+        ArrayList<HistogramSnapshot> snapshots = new ArrayList<HistogramSnapshot>();
+        for (Map.Entry<Phase, EnumMap<Dimension, ConcurrentHashMap<String, LatencyHistogram>>> phase : histograms.entrySet()) {
+            for (Map.Entry<Dimension, ConcurrentHashMap<String, LatencyHistogram>> dimension : phase.getValue().entrySet()) {
+                for (Map.Entry<String, LatencyHistogram> key : dimension.getValue().entrySet()) {
+                    snapshots.add(new HistogramSnapshot(phase.getKey(), dimension.getKey(), key.getKey(), key.getValue()));
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return a snapshot of the histogram, null if it has not counted any span
+     */
+    public static HistogramSnapshot getHistogram(Phase phase, Dimension dimension, String key) {
+        LatencyHistogram histogram = histograms.get(phase).get(dimension).get(key);
+        return histogram != null ? new HistogramSnapshot(phase, dimension, key, histogram) : null;
+    }
+
+    /**
+     * Drops every histogram.
+     */
+    public static void reset() {
+        for (EnumMap<Dimension, ConcurrentHashMap<String, LatencyHistogram>> dimensions : histograms.values()) {
+            for (ConcurrentHashMap<String, LatencyHistogram> keys : dimensions.values()) {
+                keys.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default {@link HTTPTransport} of the SDK.
+ * <p>
+ * HttpURLConnection already keeps idle sockets in a process wide pool, but only returns a socket to
+ * that pool once the response stream has been fully read and closed. This transport makes sure that
+ * always happens, asks the server to keep the connection alive and bounds the number of connections
+ * the SDK has open in total and per host, so that bursts of ad requests and trackers reuse warm
+ * sockets instead of paying for a new TLS handshake each.
+ */
+public class PooledHTTPTransport implements HTTPTransport {
+
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
+    private final int maxConnectionsPerHost;
+    private final long acquireTimeoutMillis;
+    private final Semaphore connectionPermits;
+    private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+    private final ConcurrentHashMap<HttpURLConnection, Semaphore> leases = new ConcurrentHashMap<HttpURLConnection, Semaphore>();
+
+    // When the PooledHTTPTransport class is loaded, PooledHTTPTransportWrapper is not loaded and hence doesn’t create object when loading the class.
+    // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
+    private static class PooledHTTPTransportWrapper {
+        private static final PooledHTTPTransport INSTANCE = new PooledHTTPTransport(Settings.HTTP_MAX_CONNECTIONS,
+                Settings.HTTP_MAX_CONNECTIONS_PER_HOST, Settings.HTTP_CONNECTION_TIMEOUT);
+    }
+
+    PooledHTTPTransport(int maxConnections, int maxConnectionsPerHost, long acquireTimeoutMillis) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.connectionPermits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Factory method to obtain the Singleton instance of the PooledHTTPTransport
+     */
+    public static PooledHTTPTransport getInstance() {
+        return PooledHTTPTransportWrapper.INSTANCE;
+    }
+
+    @Override
+    public HttpURLConnection openConnection(URL url) throws IOException {
+        Semaphore hostPermit = getHostPermit(url.getHost());
+        acquire(connectionPermits, url);
+        try {
+            acquire(hostPermit, url);
+        } catch (IOException e) {
+            connectionPermits.release();
+            throw e;
+        }
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Connection", "keep-alive");
+            connection.setConnectTimeout(Settings.HTTP_CONNECTION_TIMEOUT);
+            connection.setReadTimeout(Settings.HTTP_SOCKET_TIMEOUT);
+            leases.put(connection, hostPermit);
+            return connection;
+        } catch (IOException e) {
+            hostPermit.release();
+            connectionPermits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            hostPermit.release();
+            connectionPermits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void release(HttpURLConnection connection, boolean reusable) {
+        if (connection == null) {
+            return;
+        }
+        Semaphore hostPermit = leases.remove(connection);
+        try {
+            if (reusable) {
+                // An unread error body keeps the socket out of the keep-alive pool.
+                drainQuietly(connection.getErrorStream());
+            } else {
+                connection.disconnect();
+            }
+        } finally {
+            if (hostPermit != null) {
+                hostPermit.release();
+                connectionPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Reads the remainder of the stream and closes it, so that the underlying socket can be reused.
+     *
+     * @param is the response stream, may be null
+     */
+    public static void drainQuietly(InputStream is) {
+        if (is == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+            while (is.read(buffer) != -1) {
+                // discard
+            }
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                is.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    int getAvailableConnections() {
+        return connectionPermits.availablePermits();
+    }
+
+    int getAvailableConnections(String host) {
+        return getHostPermit(host).availablePermits();
+    }
+
+    private Semaphore getHostPermit(String host) {
+        String key = host == null ? "" : host;
+        Semaphore permit = hostPermits.get(key);
+        if (permit == null) {
+            Semaphore newPermit = new Semaphore(maxConnectionsPerHost, true);
+            permit = hostPermits.putIfAbsent(key, newPermit);
+            if (permit == null) {
+                permit = newPermit;
+            }
+        }
+        return permit;
+    }
+
+    private void acquire(Semaphore permit, URL url) throws IOException {
+        try {
+            if (!permit.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SocketTimeoutException("No connection available for " + url.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SocketTimeoutException("Interrupted while waiting for a connection to " + url.getHost());
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Process;
+import android.os.Trace;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Trace sections around the hot paths of the SDK, to tell which of its phases used the frame budget.
+ * <p>
+ * Sections show up in systrace and the Android Studio profiler through {@link Trace} on API 18 and up. They
+ * can also be recorded in memory, on any API level, and dumped in the Chrome trace format to be opened in
+ * chrome://tracing or Perfetto: see {@link #startRecording()} and {@link #dumpChromeTrace(File)}. Recording
+ * is off by default, it keeps the last {@link Settings#TRACE_RECORDER_SPANS} sections without locking.
+ * <p>
+ * Sections are used as
+ * <pre>
+ * long traceStart = SDKTrace.begin(SDKTrace.AD_REQUEST);
+ * try {
+ *     ...
+ * } finally {
+ *     SDKTrace.end(SDKTrace.AD_REQUEST, traceStart);
+ * }
+ * </pre>
+ * and must be ended on the thread that began them, innermost first.
+ */
+public class SDKTrace {
+
+    public static final String FETCH = "AN.AdFetcher.handleMessage";
+    public static final String AD_REQUEST = "AN.UTAdRequest.makeRequest";
+    public static final String PARSE_RESPONSE = "AN.UTAdResponse.parse";
+    public static final String PROCESS_NEXT_AD = "AN.AdViewRequestManager.processNextAd";
+    public static final String LOAD_WEBVIEW = "AN.AdWebView.loadAd";
+    public static final String VISIBILITY_CHECK = "AN.VisibilityDetector.checkVisibility";
+    public static final String MRAID_CALL = "AN.MRAIDImplementation.dispatch_mraid_call";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String CATEGORY = "appnexus";
+
+    /**
+     * A section recorded while recording was on.
+     */
+    private static final class Span {
+        final String name;
+        final long threadId;
+        final String threadName;
+        final long startNanos;
+        final long durationNanos;
+
+        Span(String name, Thread thread, long startNanos, long durationNanos) {
+            this.name = name;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    private static final class Recorder {
+        final AtomicReferenceArray<Span> slots;
+        final AtomicLong next = new AtomicLong();
+
+        Recorder(int capacity) {
+            this.slots = new AtomicReferenceArray<Span>(capacity);
+        }
+
+        void add(Span span) {
+            slots.set((int) (next.getAndIncrement() % slots.length()), span);
+        }
+
+        List<Span> getSpans() {
+            ArrayList<Span> spans = new ArrayList<Span>();
+            int capacity = slots.length();
+            long end = next.get();
+            for (long i = Math.max(0, end - capacity); i < end; i++) {
+                Span span = slots.get((int) (i % capacity));
+                if (span != null) {
+                    spans.add(span);
+                }
+            }
+            return spans;
+        }
+    }
+
+    // Kept once recording stops, to be dumped
+    private static volatile Recorder recorder = null;
+    private static volatile boolean recording = false;
+
+    private SDKTrace() {
+    }
+
+    /**
+     * Begins a section, used by the SDK.
+     *
+     * @param name one of the section names of this class
+     * @return the start to end the section with, 0 if not recording
+     */
+    public static long begin(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            beginSection(name);
+        }
+        return recording ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Ends the innermost section of the thread, used by the SDK.
+     *
+     * @param name  the name it was begun with
+     * @param start as returned by {@link #begin(String)}
+     */
+    public static void end(String name, long start) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            endSection();
+        }
+        Recorder current = recorder;
+        if (start != 0 && recording && current != null) {
+            current.add(new Span(name, Thread.currentThread(), start, System.nanoTime() - start));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endSection() {
+        Trace.endSection();
+    }
+
+    /**
+     * Starts recording the last {@link Settings#TRACE_RECORDER_SPANS} sections, dropping what was recorded.
+     */
+    public static void startRecording() {
+        startRecording(Settings.TRACE_RECORDER_SPANS);
+    }
+
+    /**
+     * Starts recording, dropping what was recorded.
+     *
+     * @param spans number of sections kept, the oldest are dropped past it
+     */
+    public static void startRecording(int spans) {
+        if (spans <= 0) {
+            stopRecording();
+            return;
+        }
+        recorder = new Recorder(spans);
+        recording = true;
+    }
+
+    /**
+     * Stops recording, what was recorded is kept to be dumped.
+     */
+    public static void stopRecording() {
+        recording = false;
+    }
+
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * @return the number of sections that would be dumped
+     */
+    public static int getRecordedCount() {
+        Recorder current = recorder;
+        return current == null ? 0 : current.getSpans().size();
+    }
+
+    /**
+     * Drops what was recorded, recording stays on if it was.
+     */
+    public static void clear() {
+        Recorder current = recorder;
+        if (current != null) {
+            recorder = new Recorder(current.slots.length());
+        }
+    }
+
+    /**
+     * Writes the recorded sections, oldest first, as a Chrome trace: complete events in microseconds, and the
+     * names of their threads.
+     */
+    public static void writeChromeTrace(Writer writer) throws IOException {
+        Recorder current = recorder;
+        List<Span> spans = current == null ? new ArrayList<Span>() : current.getSpans();
+        int pid = Process.myPid();
+        Map<Long, String> threads = new HashMap<Long, String>();
+
+        writer.write("{\"traceEvents\":[");
+        boolean first = true;
+        for (Span span : spans) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            threads.put(span.threadId, span.threadName);
+            writer.write("{\"name\":");
+            writer.write(JSONObject.quote(span.name));
+            writer.write(",\"cat\":\"" + CATEGORY + "\",\"ph\":\"X\",\"ts\":");
+            writer.write(Long.toString(span.startNanos / 1000));
+            writer.write(",\"dur\":");
+            writer.write(Long.toString(span.durationNanos / 1000));
+            writer.write(",\"pid\":" + pid + ",\"tid\":" + span.threadId + "}");
+        }
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":" + pid + ",\"tid\":" + thread.getKey()
+                    + ",\"args\":{\"name\":" + JSONObject.quote(thread.getValue()) + "}}");
+        }
+        writer.write("],\"displayTimeUnit\":\"ms\"}");
+        writer.flush();
+    }
+
+    /**
+     * Writes the recorded sections to a file, see {@link #writeChromeTrace(Writer)}.
+     *
+     * @param file overwritten if it exists
+     * @return true if the file was written
+     */
+    public static boolean dumpChromeTrace(File file) {
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8));
+            writeChromeTrace(writer);
+            return true;
+        } catch (IOException e) {
+            Clog.e(Clog.baseLogTag, "Failed to write the trace to " + file, e);
+            return false;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -111,6 +111,16 @@ public class Settings {
      * */
     public static boolean countImpressionOn1pxRendering = false;
 
+    /**
+     * true - fire the Native Impression once the view has been on screen above the viewability threshold
+     * false - use the default or the 1px constraint to fire the Native Impression
+     * */
+    public static boolean countNativeImpressionOnViewability = false;
+
+    public static int nativeViewabilityMinPercentage = Settings.MIN_PERCENTAGE_VIEWED;
+
+    public static long nativeViewabilityMinVisibleMillis = Settings.NATIVE_AD_VISIBLE_PERIOD_MILLIS;
+
     /**
      * @deprecated
      * This feature flag is responsible for turning on/off  ib.adnxs-simple.com domain usage.
@@ -121,11 +131,36 @@ public class Settings {
     // STATICS
     public static final int HTTP_CONNECTION_TIMEOUT = 15000;
     public static final int HTTP_SOCKET_TIMEOUT = 20000;
+    public static final int HTTP_MAX_CONNECTIONS = 8;
+    public static final int HTTP_MAX_CONNECTIONS_PER_HOST = 4;
+    public static final int RECORD_EVENT_MAX_CONCURRENT = 2; // ANJAM recordEvent urls fired at a time, the others wait their turn
+    public static final int RECORD_EVENT_MAX_WAITING = 32; // ANJAM recordEvent urls waiting their turn, further ones go to the network retry queue
+    public static final int DEBUG_CAPTURE_EXCHANGES = 8; // Ad requests kept with their responses by DebugCapture, when enabled
+    public static final int DEBUG_CAPTURE_MAX_BYTES = 256 * 1024; // Text DebugCapture retains across all of them
+    public static final int CLOG_ASYNC_QUEUE_SIZE = 256; // Log messages waiting for the listeners in asynchronous delivery, the oldest are dropped past it
+    public static final int TRACE_RECORDER_SPANS = 4096; // Trace sections SDKTrace keeps in memory while recording, the oldest are dropped past it
+    public static final int LATENCY_METRICS_MAX_KEYS = 64; // Histograms LatencyMetrics keeps per phase and dimension, further placements or adapters are counted together
+    // Smaller request bodies are sent as is, gzip would save little for the CPU spent
+    public static final int HTTP_MIN_COMPRESSED_REQUEST_SIZE = 1024;
 
+    /**
+     * Not used anymore, ad refreshes share a single scheduler thread.
+     */
+    @Deprecated
     public static final int FETCH_THREAD_COUNT = 4;
 
     public static final int DEFAULT_REFRESH = 30000; // Default banner refresh interval is 30 seconds
+    public static final long REFRESH_ALIGNMENT_WINDOW = 2000; // Refreshes due within 2 seconds of each other are fired together
+    public static final long REFRESH_SCHEDULER_KEEP_ALIVE = 60000; // The refresh thread stops after a minute without requests
     public static final int MIN_REFRESH_MILLISECONDS = 15000;
+
+    /**
+     * This variable can be modified to alter the share of a banner, in percent, that must be on screen
+     * for its auto refresh to run. Auto refresh is paused below it, set it to 0 to refresh off screen banners.
+     * Default value is set to 50 percent.
+     */
+    public static int REFRESH_MIN_VISIBLE_PERCENTAGE = 50;
+
     public static final int DEFAULT_INTERSTITIAL_CLOSE_BUTTON_DELAY = 10000;
 
     public static final long MEDIATED_NETWORK_TIMEOUT = 15000;
@@ -137,7 +172,13 @@ public class Settings {
     public static final long NATIVE_AD_RESPONSE_EXPIRATION_TIME_INDEX = 5 * 60 * 1000; // 5 minutes
     public static final long NATIVE_AD_RESPONSE_EXPIRATION_TIME_INMOBI = 55 * 60 * 1000; // 55 minutes
 
+    public static final int IMAGE_MEMORY_CACHE_FRACTION = 16; // Share of the heap the decoded native images can use
+    public static final int IMAGE_BITMAP_POOL_FRACTION = 32; // Share of the heap the bitmaps kept for reuse can use
+    public static final long IMAGE_DISK_CACHE_SIZE = 10 * 1024 * 1024; // 10 MB
+    public static final long IMAGE_CACHE_DEFAULT_LIFETIME = 60 * 60 * 1000; // an hour, for images without Cache-Control or Expires
+
     public static final long NATIVE_AD_ABOUT_TO_EXPIRE_INTERVAL_DEFAULT = 60 * 1000; // 1 minute
+    public static final long TIMING_WHEEL_TICK = 1000; // Expiry callbacks due within the same second run together
 
     /**
      * This variable can be modified to alter the interval in ms,
@@ -221,6 +262,11 @@ public class Settings {
         return Settings.getSettings().debug_mode ? VIDEO_HTML.replace("apn_vastvideo.html", "apn_vastvideo.html?ast_debug=true") : VIDEO_HTML;
     }
 
+    // All SDK HTTP traffic goes through this transport so that connections to the same host are reused
+    public static HTTPTransport getHttpTransport() {
+        return PooledHTTPTransport.getInstance();
+    }
+
     // There is only one cookie domain
     public static String getCookieDomain(){
         return UTConstants.COOKIE_DOMAIN;
@@ -20,10 +20,10 @@ import android.content.res.AssetManager;
 import android.content.res.Resources;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Scanner;
 
 public class StringUtil {
 
@@ -38,15 +38,34 @@ public class StringUtil {
 
     // returns true if success, false if exception
     public static boolean appendRes(StringBuilder sb, Resources res, int resId) {
-        InputStream inputStream = res.openRawResource(resId);
-        Scanner scanner = new Scanner(inputStream, "UTF-8").useDelimiter("\\A");
-        if(scanner.hasNext()){
-            sb.append(scanner.next());
-            scanner.close();
+        try {
+            String content = readFully(res.openRawResource(resId));
+            if (content.length() == 0) {
+                return false;
+            }
+            sb.append(content);
             return true;
-        }else{
-            scanner.close();
+        } catch (IOException e) {
             return false;
+        } catch (Resources.NotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the whole stream as UTF-8 and closes it.
+     */
+    public static String readFully(InputStream inputStream) throws IOException {
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream(Math.max(inputStream.available(), 1024));
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return content.toString("UTF-8");
+        } finally {
+            inputStream.close();
         }
     }
 
@@ -0,0 +1,319 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+
+/**
+ * Runs long delayed tasks on the main thread, such as the expiry of native ad responses, from a single
+ * pending main looper message instead of one per task.
+ * <p>
+ * Tasks are kept in a hierarchical timing wheel: 64 slots of one tick on the first level, 64 slots of 64 ticks
+ * on the second, and so on. Scheduling and cancelling are O(1), and the tasks of a slot are moved down a level
+ * only when the wheel reaches it. All the tasks due at the same tick run from the same message. A task can run
+ * up to one tick early, never late, so that an ad is never shown past its lifetime.
+ * <p>
+ * Thread safe, tasks always run on the main thread.
+ */
+public class TimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4; // 64^4 ticks, about 194 days of one second
+
+    /**
+     * A scheduled task, to cancel it.
+     */
+    public static final class Timeout {
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private Slot slot;
+        private Timeout previous;
+        private Timeout next;
+        private volatile boolean cancelled = false;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Makes sure the task does not run, if it has not yet.
+         */
+        public void cancel() {
+            wheel.cancel(this);
+        }
+
+        /**
+         * @return true if the task has neither run nor been cancelled
+         */
+        public boolean isPending() {
+            synchronized (wheel) {
+                return slot != null;
+            }
+        }
+    }
+
+    // Doubly linked, so that a task is removed without looking for it
+    private static final class Slot {
+        private Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.previous = null;
+            timeout.next = head;
+            if (head != null) {
+                head.previous = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.slot = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        Timeout removeAll() {
+            Timeout all = head;
+            head = null;
+            return all;
+        }
+
+        boolean isEmpty() {
+            return head == null;
+        }
+    }
+
+    private final long tickMillis;
+    private final Slot[][] wheels = new Slot[LEVELS][WHEEL_SIZE];
+    private final Slot due = new Slot();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private long currentTick = -1;
+    private int pending = 0;
+    private long wakeUpTime = Long.MAX_VALUE;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<Timeout> expired = new ArrayList<Timeout>();
+            synchronized (TimingWheel.this) {
+                wakeUpTime = Long.MAX_VALUE;
+                advance(SystemClock.uptimeMillis() / tickMillis);
+                Timeout timeout = due.removeAll();
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    timeout.slot = null;
+                    timeout.previous = null;
+                    timeout.next = null;
+                    expired.add(timeout);
+                    timeout = next;
+                }
+                pending -= expired.size();
+                scheduleWakeUp();
+            }
+            for (Timeout timeout : expired) {
+                if (!timeout.cancelled) {
+                    timeout.task.run();
+                }
+            }
+        }
+    };
+
+    // When the TimingWheel class is loaded, TimingWheelHolder is not loaded and hence doesn’t create object when loading the class.
+    // It looks like an Eager initialization, but is a Lazy initialization, with Thread safety.
+    private static class TimingWheelHolder {
+        private static final TimingWheel INSTANCE = new TimingWheel(Settings.TIMING_WHEEL_TICK);
+    }
+
+    public static TimingWheel getInstance() {
+        return TimingWheelHolder.INSTANCE;
+    }
+
+    TimingWheel(long tickMillis) {
+        this.tickMillis = tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int index = 0; index < WHEEL_SIZE; index++) {
+                wheels[level][index] = new Slot();
+            }
+        }
+    }
+
+    /**
+     * @param task  runs on the main thread once delay has elapsed
+     * @param delay in milliseconds, the task runs on the next main looper message if 0 or less
+     * @return to cancel the task
+     */
+    public synchronized Timeout schedule(Runnable task, long delay) {
+        long now = SystemClock.uptimeMillis();
+        if (currentTick < 0) {
+            currentTick = now / tickMillis;
+        }
+        Timeout timeout = new Timeout(this, task, (now + Math.max(0, delay)) / tickMillis);
+        place(timeout);
+        pending++;
+        scheduleWakeUp();
+        return timeout;
+    }
+
+    private synchronized void cancel(Timeout timeout) {
+        timeout.cancelled = true;
+        if (timeout.slot != null) {
+            timeout.slot.remove(timeout);
+            pending--;
+            if (pending == 0) {
+                handler.removeCallbacks(tick);
+                wakeUpTime = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Cancels all the scheduled tasks.
+     */
+    public synchronized void clear() {
+        for (Slot[] wheel : wheels) {
+            for (Slot slot : wheel) {
+                clear(slot);
+            }
+        }
+        clear(due);
+        pending = 0;
+        currentTick = -1;
+        handler.removeCallbacks(tick);
+        wakeUpTime = Long.MAX_VALUE;
+    }
+
+    private void clear(Slot slot) {
+        while (!slot.isEmpty()) {
+            Timeout timeout = slot.head;
+            timeout.cancelled = true;
+            slot.remove(timeout);
+        }
+    }
+
+    synchronized int size() {
+        return pending;
+    }
+
+    private void place(Timeout timeout) {
+        long remaining = timeout.deadline - currentTick;
+        if (remaining <= 0) {
+            due.add(timeout);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = WHEEL_BITS * level;
+            if (remaining < 1L << (shift + WHEEL_BITS)) {
+                wheels[level][(int) ((timeout.deadline >> shift) & WHEEL_MASK)].add(timeout);
+                return;
+            }
+        }
+        // Further than the wheel goes, parked in its last slot until it gets closer
+        int shift = WHEEL_BITS * (LEVELS - 1);
+        wheels[LEVELS - 1][(int) (((currentTick >> shift) - 1) & WHEEL_MASK)].add(timeout);
+    }
+
+    private void advance(long nowTick) {
+        if (currentTick < 0) {
+            currentTick = nowTick;
+            return;
+        }
+        while (currentTick < nowTick) {
+            long next = nextEventTick();
+            if (next > nowTick) {
+                currentTick = nowTick;
+                return;
+            }
+            currentTick = next;
+            // Higher levels first, their tasks may land in the slot of this tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = WHEEL_BITS * level;
+                if ((currentTick & ((1L << shift) - 1)) == 0) {
+                    cascade(wheels[level][(int) ((currentTick >> shift) & WHEEL_MASK)]);
+                }
+            }
+            cascade(wheels[0][(int) (currentTick & WHEEL_MASK)]);
+        }
+    }
+
+    private void cascade(Slot slot) {
+        Timeout timeout = slot.removeAll();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    // The first tick after the current one at which a slot with tasks is reached, Long.MAX_VALUE if none
+    private long nextEventTick() {
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = WHEEL_BITS * level;
+            long base = currentTick >> shift;
+            for (int i = 1; i <= WHEEL_SIZE; i++) {
+                long tick = (base + i) << shift;
+                if (tick >= next) {
+                    break;
+                }
+                if (!wheels[level][(int) ((base + i) & WHEEL_MASK)].isEmpty()) {
+                    next = tick;
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    private void scheduleWakeUp() {
+        if (pending == 0) {
+            return;
+        }
+        long time;
+        if (!due.isEmpty()) {
+            time = SystemClock.uptimeMillis();
+        } else {
+            long next = nextEventTick();
+            if (next == Long.MAX_VALUE) {
+                return;
+            }
+            time = next * tickMillis;
+        }
+        // A later wake up is kept, it simply finds nothing to do
+        if (time < wakeUpTime) {
+            handler.removeCallbacks(tick);
+            handler.postAtTime(tick, time);
+            wakeUpTime = time;
+        }
+    }
+}
@@ -200,6 +200,69 @@ public class WebviewUtil {
         return null;
     }
 
+    /**
+     * @return the cookies the WebView cookie jar holds for url, null if none
+     */
+    public static String getCookie(String url) {
+        try {
+            CookieManager cm = CookieManager.getInstance();
+            if (cm == null) {
+                Clog.i(Clog.httpRespLogTag, "Unable to find a CookieManager");
+                return null;
+            }
+            return cm.getCookie(url);
+        } catch (Exception e) {
+            // Catches PackageManager$NameNotFoundException for webview
+            Clog.e(Clog.httpRespLogTag, "Unable to find a CookieManager - Exception: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Stores every cookie set by a response to url in the WebView cookie jar,
+     * as the WebView would have had it loaded the url itself.
+     *
+     * @param headers headers of the response to url
+     */
+    @SuppressWarnings("deprecation")
+    public static void storeCookies(String url, Map<String, List<String>> headers) {
+        if (headers == null || headers.isEmpty()) return;
+        try {
+            CookieManager cm = CookieManager.getInstance();
+            if (cm == null) {
+                Clog.i(Clog.httpRespLogTag, "Unable to find a CookieManager");
+                return;
+            }
+            boolean stored = false;
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                String key = entry.getKey();
+                if (key != null && (key.equalsIgnoreCase(VERSION_ZERO_HEADER)
+                        || key.equalsIgnoreCase(VERSION_ONE_HEADER))) {
+                    for (String cookieStr : entry.getValue()) {
+                        if (!TextUtils.isEmpty(cookieStr)) {
+                            cm.setCookie(url, cookieStr);
+                            stored = true;
+                        }
+                    }
+                }
+            }
+            if (!stored) {
+                return;
+            }
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+                // CookieSyncManager is deprecated in API 21 Lollipop
+                CookieSyncManager csm = CookieSyncManager.getInstance();
+                if (csm != null) {
+                    csm.sync();
+                }
+            } else {
+                cm.flush();
+            }
+        } catch (Exception e) {
+            Clog.e(Clog.httpRespLogTag, "Unable to store cookies - Exception: " + e.getMessage());
+        }
+    }
+
     public static boolean isValidUrl(String url) {
         try {
             new URL(url).toURI();
@@ -58,6 +58,18 @@ public class ANOmidAdSession {
         }
     }
 
+    /**
+     * @return the OMID service script to inject first in the head of the creative, null if OMID is disabled
+     * or the script is not available. See {@link #prependOMIDJSToHTML(String)} for where it goes.
+     */
+    public String getOMIDJSToInject() {
+        if (!SDKSettings.getOMEnabled()) {
+            return null;
+        }
+        String omidScript = ANOmidViewabilty.getInstance().getOmidJsServiceContent();
+        return StringUtil.isEmpty(omidScript) ? null : omidScript;
+    }
+
     public void initAdSession(WebView webView, boolean isVideoAd) {
         if (!SDKSettings.getOMEnabled())
             return;
@@ -30,6 +30,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNotSame;
 import static junit.framework.Assert.assertTrue;
@@ -281,6 +282,35 @@ public class AdFetcherTest extends BaseRoboTest {
         assertEquals(AdFetcher.STATE.SINGLE_REQUEST, adFetcher.getState());
     }
 
+    @Test
+    public void testPauseAndResumeRefresh() {
+        adFetcher.setPeriod(30000);
+        adFetcher.start();
+        Lock.pause(1000); // added this so jenkins can have enough time to process
+        assertExpectedBGTasksAfterOneAdRequest(2);
+        int jobs = RefreshScheduler.getInstance().size();
+
+        // Off screen, the refresh is no longer scheduled but the fetcher keeps refreshing
+        adFetcher.setPaused(true);
+        assertTrue(adFetcher.isPaused());
+        assertEquals(AdFetcher.STATE.AUTO_REFRESH, adFetcher.getState());
+        assertEquals(jobs - 1, RefreshScheduler.getInstance().size());
+
+        adFetcher.setPaused(false);
+        assertFalse(adFetcher.isPaused());
+        assertEquals(jobs, RefreshScheduler.getInstance().size());
+    }
+
+    @Test
+    public void testPausedStillLoadsFirstAd() {
+        adFetcher.setPaused(true);
+        adFetcher.setPeriod(30000);
+        adFetcher.start();
+        Lock.pause(1000); // added this so jenkins can have enough time to process
+        assertExpectedBGTasksAfterOneAdRequest(2);
+        assertEquals(AdFetcher.STATE.AUTO_REFRESH, adFetcher.getState());
+    }
+
     class MockAdOwner extends BannerAdView {
 
         public MockAdOwner(Context context) {
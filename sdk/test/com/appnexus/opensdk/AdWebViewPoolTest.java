@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.ComponentCallbacks2;
+import android.content.MutableContextWrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class AdWebViewPoolTest extends BaseRoboTest {
+
+    private AdWebViewPool pool;
+    private BannerAdView bannerAdView;
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        pool = AdWebViewPool.getInstance();
+        pool.shrink(0);
+        pool.setContext(activity.getApplicationContext());
+        bannerAdView = new BannerAdView(activity);
+    }
+
+    @Override
+    @After
+    public void tearDown() {
+        pool.shrink(0);
+        super.tearDown();
+    }
+
+    @Test
+    public void testPoolIsCapped() {
+        for (int i = 0; i < AdWebViewPool.MAX_POOL_SIZE; i++) {
+            assertTrue(pool.addPooledView());
+        }
+        assertFalse(pool.addPooledView());
+        assertEquals(AdWebViewPool.MAX_POOL_SIZE, pool.size());
+    }
+
+    @Test
+    public void testObtainBindsPooledView() {
+        pool.addPooledView();
+        AdWebView adWebView = pool.obtain(bannerAdView, null);
+        assertEquals(0, pool.size());
+        assertSame(bannerAdView, adWebView.adView);
+        assertSame(activity, ((MutableContextWrapper) adWebView.getContext()).getBaseContext());
+
+        // Empty pool, a view is built on the spot
+        AdWebView built = pool.obtain(bannerAdView, null);
+        assertNotSame(adWebView, built);
+        assertSame(bannerAdView, built.adView);
+    }
+
+    @Test
+    public void testDestroyedViewsAreSkipped() {
+        pool.addPooledView();
+        pool.addPooledView();
+        AdWebView first = pool.obtain(bannerAdView, null);
+        first.destroy();
+        assertFalse(pool.obtain(bannerAdView, null).isDestroyed());
+    }
+
+    @Test
+    public void testShrinksUnderMemoryPressure() {
+        pool.addPooledView();
+        pool.addPooledView();
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(1, pool.size());
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(0, pool.size());
+    }
+}
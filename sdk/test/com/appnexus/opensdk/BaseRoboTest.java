@@ -7,6 +7,7 @@ import com.appnexus.opensdk.shadows.ShadowSettings;
 import com.appnexus.opensdk.ut.UTConstants;
 import com.appnexus.opensdk.util.Lock;
 import com.appnexus.opensdk.util.MockMainActivity;
+import com.appnexus.opensdk.utils.TimingWheel;
 import com.squareup.okhttp.HttpUrl;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 
@@ -36,6 +37,8 @@ public class BaseRoboTest {
         SDKSettings.setExternalExecutor(null);
         Robolectric.getBackgroundThreadScheduler().reset();
         Robolectric.getForegroundThreadScheduler().reset();
+        // The clock starts over, so do the expiry timers
+        TimingWheel.getInstance().clear();
         ShadowLog.stream = System.out;
         activity = Robolectric.buildActivity(MockMainActivity.class).create().start().resume().visible().get();
         shadowOf(activity).grantPermissions("android.permission.INTERNET");
@@ -21,6 +21,7 @@ import android.util.Log;
 import com.appnexus.opensdk.util.TestUtil;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.ClogListener;
+import com.appnexus.opensdk.utils.Settings;
 
 import org.junit.After;
 import org.junit.Before;
@@ -29,6 +30,9 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
@@ -49,6 +53,7 @@ public class ClogListenerTest {
     @After
     public void tearDown() {
         Clog.unregisterAllListeners();
+        Clog.setAsyncListenerDelivery(false);
     }
 
     // use Log instead of Clog during testing to prevent deadlock
@@ -205,6 +210,143 @@ public class ClogListenerTest {
         assertTrue(didReceiveMessage);
     }
 
+    @Test
+    public void testDeferredFormatting() throws Exception {
+        final String[] received = new String[1];
+        Clog.registerListener(new ClogListener() {
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message) {
+                received[0] = message;
+            }
+
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            }
+
+            @Override
+            public LOG_LEVEL getLogLevel() {
+                return LOG_LEVEL.V;
+            }
+        });
+
+        assertTrue(Clog.isLoggable(TestUtil.testLogTag, ClogListener.LOG_LEVEL.V));
+        Clog.v(TestUtil.testLogTag, "%s of %d", "one", 2);
+        assertEquals("one of 2", received[0]);
+
+        // A bad format still logs its arguments
+        Clog.d(TestUtil.testLogTag, "count %d", "three");
+        assertEquals("count %d [three]", received[0]);
+    }
+
+    @Test
+    public void testAsyncDelivery() throws Exception {
+        final CountDownLatch received = new CountDownLatch(5);
+        final Thread loggingThread = Thread.currentThread();
+        final boolean[] deliveredOnLoggingThread = {false};
+        Clog.setAsyncListenerDelivery(true);
+        Clog.registerListener(new ClogListener() {
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message) {
+                deliveredOnLoggingThread[0] |= Thread.currentThread() == loggingThread;
+                received.countDown();
+            }
+
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            }
+
+            @Override
+            public LOG_LEVEL getLogLevel() {
+                return LOG_LEVEL.V;
+            }
+        });
+
+        clogStuff();
+
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertFalse(deliveredOnLoggingThread[0]);
+    }
+
+    @Test
+    public void testAsyncDeliveryDropsOldest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch last = new CountDownLatch(1);
+        Clog.setAsyncListenerDelivery(true);
+        Clog.registerListener(new ClogListener() {
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message) {
+                try {
+                    // A stalled listener
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+                if ("last".equals(message)) {
+                    last.countDown();
+                }
+            }
+
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            }
+
+            @Override
+            public LOG_LEVEL getLogLevel() {
+                return LOG_LEVEL.V;
+            }
+        });
+
+        long dropped = Clog.getDroppedListenerMessageCount();
+        // Never blocks the logging thread
+        for (int i = 0; i < Settings.CLOG_ASYNC_QUEUE_SIZE * 2; i++) {
+            Clog.v(TestUtil.testLogTag, "message " + i);
+        }
+        Clog.v(TestUtil.testLogTag, "last");
+        assertTrue(Clog.getDroppedListenerMessageCount() > dropped);
+
+        release.countDown();
+        assertTrue(last.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testThrowingListenerDoesNotStopDelivery() throws Exception {
+        final CountDownLatch received = new CountDownLatch(5);
+        Clog.setAsyncListenerDelivery(true);
+        Clog.registerListener(new ClogListener() {
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message) {
+                throw new IllegalStateException("listener failure");
+            }
+
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            }
+
+            @Override
+            public LOG_LEVEL getLogLevel() {
+                return LOG_LEVEL.V;
+            }
+        });
+        Clog.registerListener(new ClogListener() {
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message) {
+                received.countDown();
+            }
+
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            }
+
+            @Override
+            public LOG_LEVEL getLogLevel() {
+                return LOG_LEVEL.V;
+            }
+        });
+
+        clogStuff();
+
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+    }
+
     private void clogStuff() {
         Clog.v(TestUtil.testLogTag, "verbose");
         Clog.d(TestUtil.testLogTag, "debug");
@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.iab.omid.library.appnexus.ScriptInjector;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Checks the assembler against the chain of String rewrites AdWebView used before.
+ * <p>
+ * Also holds the benchmark comparing both, run with {@code -Dbenchmark=true}:
+ * ./gradlew :sdk:testDebugUnitTest --tests '*CreativeHtmlAssemblerTest*' -Dbenchmark=true
+ */
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class CreativeHtmlAssemblerTest {
+
+    private static final String OMID = "var omid = {version: '1.3.20'};";
+
+    private static final String[] CREATIVES = {
+            "<script src='https://cdn.adnxs.com/ad.js'></script>",
+            "  \n<div id='ad'><img src='https://cdn.adnxs.com/banner.png'/></div>\n  ",
+            "<html><body><a href='https://www.appnexus.com'>ad</a></body></html>",
+            "<html><head><title>creative</title></head><body>ad</body></html>",
+            "<html lang='en'><head></head><body>not starting with a bare html tag</body></html>",
+            "<!DOCTYPE html><html><head></head><body>doctype</body></html>",
+            "<div>$1 off \\ today</div>",
+            " ",
+    };
+
+    @Test
+    public void testMatchesLegacyChain() {
+        String prefix = ScriptResources.getInstance().getHtmlPrefix(RuntimeEnvironment.application);
+        String scripts = ScriptResources.getInstance().getSDKScripts(RuntimeEnvironment.application);
+        for (String creative : CREATIVES) {
+            assertEquals(creative, legacyChain(creative, scripts, null), CreativeHtmlAssembler.assemble(creative, prefix, null));
+            assertEquals(creative, legacyChain(creative, scripts, OMID), CreativeHtmlAssembler.assemble(creative, prefix, OMID));
+        }
+    }
+
+    @Test
+    public void testWithoutSDKScripts() {
+        assertEquals("<html><head>" + ScriptResources.VIEWPORT + "</head><body>ad</body></html>",
+                CreativeHtmlAssembler.assemble("<html><head></head><body>ad</body></html>", null, null));
+        assertEquals("<html><body style='padding:0;margin:0;'>ad</body></html>",
+                CreativeHtmlAssembler.assemble("ad", null, null));
+    }
+
+    @Test
+    public void testEmptyCreative() {
+        assertEquals("", CreativeHtmlAssembler.assemble("", "<html><head></head>", OMID));
+        assertEquals(null, CreativeHtmlAssembler.assemble(null, "<html><head></head>", OMID));
+    }
+
+    @Test
+    public void benchmark() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        String prefix = ScriptResources.getInstance().getHtmlPrefix(RuntimeEnvironment.application);
+        String scripts = ScriptResources.getInstance().getSDKScripts(RuntimeEnvironment.application);
+        // Typical banner tags, rich media, and heavy HTML5 creatives
+        int[] sizes = {2 * 1024, 20 * 1024, 150 * 1024, 500 * 1024};
+        int iterations = 200;
+        for (int size : sizes) {
+            String creative = creativeOfSize(size);
+            // Warm up
+            for (int i = 0; i < 20; i++) {
+                legacyChain(creative, scripts, OMID);
+                CreativeHtmlAssembler.assemble(creative, prefix, OMID);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                legacyChain(creative, scripts, OMID);
+            }
+            long legacy = (System.nanoTime() - start) / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                CreativeHtmlAssembler.assemble(creative, prefix, OMID);
+            }
+            long assembler = (System.nanoTime() - start) / iterations;
+            System.out.println(String.format("creative %6d bytes: legacy %8d us, assembler %8d us",
+                    size, legacy / 1000, assembler / 1000));
+        }
+    }
+
+    private static String creativeOfSize(int size) {
+        StringBuilder creative = new StringBuilder(size + 64);
+        creative.append("<div id='ad'>");
+        while (creative.length() < size) {
+            creative.append("<p class='copy'>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>");
+        }
+        return creative.append("</div>").toString();
+    }
+
+    // preLoadContent, prependRawResources, prependViewPort and prependOMIDJSToHTML as AdWebView chained them
+    private static String legacyChain(String html, String scripts, String omid) {
+        html = html.trim();
+        if (!html.startsWith("<html>")) {
+            html = new StringBuilder().append("<html><body style='padding:0;margin:0;'>").append(html).append("</body></html>").toString();
+        }
+        html = html.replaceFirst("<html>", "<html><head><script>" + scripts + "</script></head>");
+        html = html.replaceFirst("<head>", "<head>" + ScriptResources.VIEWPORT);
+        if (omid != null) {
+            html = ScriptInjector.injectScriptContentIntoHtml(omid, html);
+        }
+        return html;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.Context;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class ImpressionTrackerViewabilityTest extends BaseRoboTest {
+
+    private VisibilityDetector visibilityDetector;
+    private ExposedTestView view;
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        SDKSettings.setCountNativeImpressionOnViewability(true);
+        SDKSettings.setNativeViewabilityThreshold(50, 1000);
+        visibilityDetector = VisibilityDetector.getInstance();
+        view = new ExposedTestView(activity);
+        activity.addContentView(view, new ViewGroup.LayoutParams(100, 100));
+        view.layout(0, 0, 100, 100);
+    }
+
+    @Override
+    @After
+    public void tearDown() {
+        visibilityDetector.destroy(view);
+        SDKSettings.setCountNativeImpressionOnViewability(false);
+        SDKSettings.setNativeViewabilityThreshold(50, 1000);
+        super.tearDown();
+    }
+
+    @Test
+    public void testVisiblePercentage() {
+        view.visibleHeight = 100;
+        assertEquals(100, visibilityDetector.getVisiblePercentage(view));
+        view.visibleHeight = 25;
+        assertEquals(25, visibilityDetector.getVisiblePercentage(view));
+        view.visibleHeight = 0;
+        assertEquals(0, visibilityDetector.getVisiblePercentage(view));
+    }
+
+    @Test
+    public void testFiresAfterDwellTime() {
+        view.visibleHeight = 60;
+        createTracker();
+        uiScheduler.advanceBy(0, TimeUnit.MILLISECONDS);
+        assertFalse(isFired());
+
+        uiScheduler.advanceBy(900, TimeUnit.MILLISECONDS);
+        assertFalse(isFired());
+        uiScheduler.advanceBy(200, TimeUnit.MILLISECONDS);
+        assertTrue(isFired());
+    }
+
+    @Test
+    public void testBelowThresholdNeverFires() {
+        view.visibleHeight = 40;
+        createTracker();
+        uiScheduler.advanceBy(5000, TimeUnit.MILLISECONDS);
+        assertFalse(isFired());
+    }
+
+    @Test
+    public void testOcclusionRestartsDwellTime() {
+        view.visibleHeight = 100;
+        createTracker();
+        uiScheduler.advanceBy(600, TimeUnit.MILLISECONDS);
+
+        // Scrolled away before the period is over
+        view.visibleHeight = 10;
+        visibilityDetector.scheduleVisibilityCheck();
+        uiScheduler.advanceBy(600, TimeUnit.MILLISECONDS);
+        assertFalse(isFired());
+
+        // Back on screen, the period starts over
+        view.visibleHeight = 100;
+        visibilityDetector.scheduleVisibilityCheck();
+        uiScheduler.advanceBy(600, TimeUnit.MILLISECONDS);
+        assertFalse(isFired());
+        uiScheduler.advanceBy(500, TimeUnit.MILLISECONDS);
+        assertTrue(isFired());
+    }
+
+    @Test
+    public void testHiddenWithoutEventRestartsOnSameExposure() {
+        view.visibleHeight = 60;
+        createTracker();
+        uiScheduler.advanceBy(500, TimeUnit.MILLISECONDS);
+
+        // Hidden without any view tree event, only the dwell check notices
+        view.visibleHeight = 10;
+        uiScheduler.advanceBy(600, TimeUnit.MILLISECONDS);
+        assertFalse(isFired());
+
+        // Back at the exposure the detector reported first
+        view.visibleHeight = 60;
+        visibilityDetector.scheduleVisibilityCheck();
+        uiScheduler.advanceBy(1100, TimeUnit.MILLISECONDS);
+        assertTrue(isFired());
+    }
+
+    private void createTracker() {
+        ImpressionTracker.create(new WeakReference<View>(view), new ArrayList<String>(), visibilityDetector,
+                activity, null, null);
+    }
+
+    // The tracker stops tracking the view once it has fired
+    private boolean isFired() {
+        return view.getTag(R.string.native_view_tag) == null;
+    }
+
+    private static class ExposedTestView extends View {
+        int visibleHeight;
+
+        ExposedTestView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean getGlobalVisibleRect(Rect r, Point globalOffset) {
+            r.set(0, 0, getWidth(), visibleHeight);
+            return visibleHeight > 0;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.Settings;
+import com.appnexus.opensdk.utils.WebviewUtil;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class RecordEventTrackerTest extends BaseRoboTest {
+
+    private void runPendingTasks() {
+        while (bgScheduler.areAnyRunnable() || uiScheduler.areAnyRunnable()) {
+            bgScheduler.advanceToLastPostedRunnable();
+            uiScheduler.advanceToLastPostedRunnable();
+        }
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() {
+        int events = Settings.RECORD_EVENT_MAX_CONCURRENT + 2;
+        for (int i = 0; i < events; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200));
+        }
+        RecordEventTracker tracker = RecordEventTracker.getInstance();
+        for (int i = 0; i < events; i++) {
+            tracker.fire(server.url("/event?id=" + i).toString(), activity);
+        }
+        assertEquals(2, tracker.getWaitingCount());
+
+        runPendingTasks();
+        assertEquals(0, tracker.getWaitingCount());
+        assertEquals(events, server.getRequestCount());
+    }
+
+    @Test
+    public void testWaitingQueueIsBounded() {
+        int events = Settings.RECORD_EVENT_MAX_CONCURRENT + Settings.RECORD_EVENT_MAX_WAITING + 3;
+        for (int i = 0; i < events; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200));
+        }
+        RecordEventTracker tracker = RecordEventTracker.getInstance();
+        for (int i = 0; i < events; i++) {
+            tracker.fire(server.url("/event?id=" + i).toString(), activity);
+        }
+        // The others were handed to the network retry queue
+        assertEquals(Settings.RECORD_EVENT_MAX_WAITING, tracker.getWaitingCount());
+
+        runPendingTasks();
+        assertEquals(0, tracker.getWaitingCount());
+        assertEquals(Settings.RECORD_EVENT_MAX_CONCURRENT + Settings.RECORD_EVENT_MAX_WAITING, server.getRequestCount());
+    }
+
+    @Test
+    public void testCookiesAreStored() {
+        server.enqueue(new MockResponse().setResponseCode(200).addHeader("Set-Cookie", "recorded=1"));
+        String url = server.url("/event").toString();
+        RecordEventTracker.getInstance().fire(url, activity);
+        runPendingTasks();
+
+        assertEquals(1, server.getRequestCount());
+        String cookie = WebviewUtil.getCookie(url);
+        assertNotNull(cookie);
+        assertTrue(cookie.contains("recorded=1"));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshSchedulerTest {
+
+    private final RefreshScheduler scheduler = new RefreshScheduler(500);
+
+    private static class Task implements Runnable {
+        final CountDownLatch ran;
+        final AtomicInteger runs = new AtomicInteger();
+        volatile long lastRun;
+
+        Task(int count) {
+            ran = new CountDownLatch(count);
+        }
+
+        @Override
+        public void run() {
+            lastRun = System.nanoTime();
+            runs.incrementAndGet();
+            ran.countDown();
+        }
+    }
+
+    @Test
+    public void testCloseDeadlinesFireTogether() throws Exception {
+        long start = System.nanoTime();
+        Task later = new Task(1), sooner = new Task(1);
+        scheduler.schedule(later, 400, -1);
+        scheduler.schedule(sooner, 100, -1);
+
+        assertTrue(sooner.ran.await(2, TimeUnit.SECONDS));
+        assertTrue(later.ran.await(2, TimeUnit.SECONDS));
+        // Delayed to the bucket of the later one, never fired early
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(sooner.lastRun - start) >= 400);
+        assertTrue(Math.abs(TimeUnit.NANOSECONDS.toMillis(sooner.lastRun - later.lastRun)) < 100);
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void testPeriodic() throws Exception {
+        Task task = new Task(3);
+        RefreshScheduler.Job job = scheduler.schedule(task, 0, 100);
+        assertTrue(task.ran.await(2, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.size());
+
+        scheduler.cancel(job);
+        assertTrue(job.isCancelled());
+        assertEquals(0, scheduler.size());
+        int runs = task.runs.get();
+        Thread.sleep(300);
+        assertEquals(runs, task.runs.get());
+    }
+
+    @Test
+    public void testCancelBeforeRun() throws Exception {
+        Task cancelled = new Task(1), kept = new Task(1);
+        RefreshScheduler.Job job = scheduler.schedule(cancelled, 200, -1);
+        scheduler.schedule(kept, 200, -1);
+        scheduler.cancel(job);
+
+        assertTrue(kept.ran.await(2, TimeUnit.SECONDS));
+        assertFalse(cancelled.ran.await(100, TimeUnit.MILLISECONDS));
+    }
+}
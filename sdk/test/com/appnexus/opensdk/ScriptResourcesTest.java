@@ -0,0 +1,73 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.Context;
+
+import com.appnexus.opensdk.utils.StringUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class ScriptResourcesTest {
+
+    private final Context context = RuntimeEnvironment.application;
+
+    @Test
+    public void testHtmlPrefixIsBuiltOnce() throws Exception {
+        String prefix = ScriptResources.getInstance().getHtmlPrefix(context);
+        assertNotNull(prefix);
+        assertSame(prefix, ScriptResources.getInstance().getHtmlPrefix(context));
+
+        StringBuilder scripts = new StringBuilder();
+        assertTrue(StringUtil.appendRes(scripts, context.getResources(), R.raw.sdkjs));
+        assertTrue(StringUtil.appendRes(scripts, context.getResources(), R.raw.anjam));
+        assertTrue(StringUtil.appendRes(scripts, context.getResources(), R.raw.apn_mraid));
+        assertEquals("<html><head>" + ScriptResources.VIEWPORT + "<script>" + scripts + "</script></head>", prefix);
+    }
+
+    @Test
+    public void testRendererTemplateMatchesReplace() {
+        String template = "<html>AN_NATIVE_ASSEMBLY_RENDERER_URL<script>var r = AN_NATIVE_RESPONSE_OBJECT;"
+                + " load('AN_NATIVE_ASSEMBLY_RENDERER_URL');</script></html>";
+        String url = "https://example.com/renderer.js";
+        String json = "{\"title\":\"$1 off\"}";
+        String expected = template.replace(ScriptResources.RENDERER_URL, url).replace(ScriptResources.RENDERER_JSON, json);
+        assertEquals(expected, new ScriptResources.RendererTemplate(template).render(url, json));
+        assertEquals("no placeholder", new ScriptResources.RendererTemplate("no placeholder").render(url, json));
+    }
+
+    @Test
+    public void testRendererTemplateFromAssets() {
+        ScriptResources.RendererTemplate template = ScriptResources.getInstance().getRendererTemplate(context);
+        assertNotNull(template);
+        String html = template.render("https://example.com/renderer.js", "{}");
+        assertTrue(html.contains("https://example.com/renderer.js"));
+        assertTrue(!html.contains(ScriptResources.RENDERER_URL));
+        assertTrue(!html.contains(ScriptResources.RENDERER_JSON));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class SharedNetworkManagerTest {
+
+    private Context context;
+    private SharedNetworkManager manager;
+
+    @Before
+    public void setup() {
+        context = RuntimeEnvironment.application;
+        manager = SharedNetworkManager.getInstance(context);
+    }
+
+    @Test
+    public void testConcurrentAddURLDeduplicates() throws Exception {
+        final int threads = 8;
+        final int urlsPerThread = 10;
+        final int before = manager.getQueuedCount();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    // Every thread queues the same burst of impressions
+                    for (int i = 0; i < urlsPerThread; i++) {
+                        manager.addURL("https://example.com/burst?imp=" + i, context, new ImpressionTrackerListener() {
+                            @Override
+                            public void onImpressionTrackerFired() {
+                            }
+                        });
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(before + urlsPerThread, manager.getQueuedCount());
+    }
+
+    @Test
+    public void testRetryDelayBacksOffWithJitter() {
+        for (int i = 0; i < 20; i++) {
+            long first = manager.getRetryDelay(1);
+            assertTrue(first >= 10 * 1000 && first <= 30 * 1000);
+            long capped = manager.getRetryDelay(10);
+            assertTrue(capped >= 150 * 1000 && capped <= 450 * 1000);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class TrackerOutboxTest {
+
+    private static final long TTL = 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = new File(folder.getRoot(), "outbox");
+    }
+
+    @Test
+    public void testRecordsSurviveReload() {
+        TrackerOutbox outbox = new TrackerOutbox(file);
+        assertFalse(outbox.hasRecords());
+        outbox.put("https://example.com/it?id=1", 1000, 0);
+        outbox.put("https://example.com/it?id=2", 2000, 0);
+        outbox.put("https://example.com/it?id=1", 1000, 2);
+        outbox.remove("https://example.com/it?id=2");
+
+        TrackerOutbox reloaded = new TrackerOutbox(file);
+        assertTrue(reloaded.hasRecords());
+        List<TrackerOutbox.Record> records = reloaded.load(1500, TTL);
+        assertEquals(1, records.size());
+        assertEquals("https://example.com/it?id=1", records.get(0).url);
+        assertEquals(1000, records.get(0).createdAt);
+        assertEquals(2, records.get(0).attempts);
+    }
+
+    @Test
+    public void testExpiredRecordsAreDropped() {
+        TrackerOutbox outbox = new TrackerOutbox(file);
+        outbox.put("https://example.com/old", 0, 0);
+        outbox.put("https://example.com/new", TTL, 0);
+
+        List<TrackerOutbox.Record> records = new TrackerOutbox(file).load(TTL + 1, TTL);
+        assertEquals(1, records.size());
+        assertEquals("https://example.com/new", records.get(0).url);
+        assertEquals(1, new TrackerOutbox(file).load(TTL + 1, TTL).size());
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        TrackerOutbox outbox = new TrackerOutbox(file);
+        outbox.put("https://example.com/complete", 1000, 0);
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write("A\t1000\t0\thttps://example.com/trunc".getBytes("UTF-8"));
+        out.close();
+
+        List<TrackerOutbox.Record> records = new TrackerOutbox(file).load(1000, TTL);
+        assertEquals(1, records.size());
+        assertEquals("https://example.com/complete", records.get(0).url);
+    }
+
+    @Test
+    public void testEmptyOutboxDeletesFile() {
+        TrackerOutbox outbox = new TrackerOutbox(file);
+        outbox.put("https://example.com/it", 1000, 0);
+        outbox.remove("https://example.com/it");
+        assertFalse(file.exists());
+        assertFalse(new TrackerOutbox(file).hasRecords());
+    }
+
+    @Test
+    public void testJournalIsCompacted() {
+        TrackerOutbox outbox = new TrackerOutbox(file);
+        outbox.put("https://example.com/kept", 1000, 0);
+        for (int i = 0; i < 100; i++) {
+            outbox.put("https://example.com/it?id=" + i, 1000, 0);
+            outbox.remove("https://example.com/it?id=" + i);
+        }
+        // The journal holds far less than the 201 records written
+        assertTrue(file.length() < 40 * "A\t1000\t0\thttps://example.com/it?id=00\n".length());
+        List<TrackerOutbox.Record> records = new TrackerOutbox(file).load(1000, TTL);
+        assertEquals(1, records.size());
+        assertEquals("https://example.com/kept", records.get(0).url);
+    }
+
+    @Test
+    public void testRemovalSurvivesFailedCompaction() {
+        // A directory in the way of the temporary file makes every compaction fail
+        assertTrue(new File(file.getPath() + ".tmp").mkdir());
+        TrackerOutbox outbox = new TrackerOutbox(file);
+        outbox.put("https://example.com/kept", 1000, 0);
+        for (int i = 0; i < 100; i++) {
+            outbox.put("https://example.com/it?id=" + i, 1000, 0);
+            outbox.remove("https://example.com/it?id=" + i);
+        }
+        List<TrackerOutbox.Record> records = new TrackerOutbox(file).load(1000, TTL);
+        assertEquals(1, records.size());
+        assertEquals("https://example.com/kept", records.get(0).url);
+    }
+}
@@ -5,6 +5,7 @@ import android.preference.PreferenceManager;
 
 import androidx.annotation.NonNull;
 
+import com.appnexus.opensdk.mar.MultiAdRequestListener;
 import com.appnexus.opensdk.shadows.ShadowSettings;
 import com.appnexus.opensdk.ut.UTAdRequest;
 import com.appnexus.opensdk.ut.UTAdRequester;
@@ -13,6 +14,7 @@ import com.appnexus.opensdk.ut.UTRequestParameters;
 import com.appnexus.opensdk.ut.adresponse.BaseAdResponse;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.viewability.ANOmidViewabilty;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
 
@@ -26,11 +28,15 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
@@ -1108,6 +1114,104 @@ public class UTAdRequestTest extends BaseRoboTest implements UTAdRequester {
 //        }
     }
 
+    @Test
+    public void testMultiAdRequestRoutesTagsByUUID() throws Exception {
+        final BannerAdView answered = createMultiAdRequestBanner();
+        final BannerAdView unanswered = createMultiAdRequestBanner();
+        final HashMap<AdView, ResultCode> failures = new HashMap<>();
+        AdListener listener = new MultiAdRequestAdListener(failures);
+        answered.setAdListener(listener);
+        unanswered.setAdListener(listener);
+
+        // Answers the first ad unit, with a tag of an unknown ad unit in between, and not the second
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String body = "{\"version\":\"3.0.0\",\"tags\":["
+                        + "{\"uuid\":\"unknown\",\"tag_id\":2,\"auction_id\":\"999\",\"nobid\":true},"
+                        + "{\"uuid\":\"" + answered.getRequestParameters().getUUID() + "\",\"tag_id\":1,\"auction_id\":\"111\",\"nobid\":true}]}";
+                return new MockResponse().setResponseCode(200).setBody(body);
+            }
+        });
+
+        ANMultiAdRequest anMultiAdRequest = new ANMultiAdRequest(activity, 0, 1234, new MultiAdRequestListener() {
+            @Override
+            public void onMultiAdRequestCompleted() {
+            }
+
+            @Override
+            public void onMultiAdRequestFailed(ResultCode code) {
+            }
+        });
+        anMultiAdRequest.addAdUnit(answered);
+        anMultiAdRequest.addAdUnit(unanswered);
+        anMultiAdRequest.load();
+        for (int i = 0; i < 3; i++) {
+            waitForTasks();
+            Robolectric.flushBackgroundThreadScheduler();
+            Robolectric.flushForegroundThreadScheduler();
+        }
+
+        assertEquals(1, server.getRequestCount());
+        assertNotNull(answered.getRequestParameters().getUUID());
+        assertNotNull(unanswered.getRequestParameters().getUUID());
+        // Both ad units fail, each with its own response
+        assertEquals(2, failures.size());
+        assertEquals(ResultCode.UNABLE_TO_FILL, failures.get(answered).getCode());
+        assertEquals("111", answered.getAdResponseInfo().getAuctionId());
+        assertEquals(ResultCode.UNABLE_TO_FILL, failures.get(unanswered).getCode());
+        assertTrue(unanswered.getAdResponseInfo() == null || !"999".equals(unanswered.getAdResponseInfo().getAuctionId()));
+    }
+
+    private BannerAdView createMultiAdRequestBanner() {
+        BannerAdView bannerAdView = new BannerAdView(activity);
+        bannerAdView.setPlacementID("0");
+        bannerAdView.setAdSize(320, 50);
+        bannerAdView.setAutoRefreshInterval(-1);
+        return bannerAdView;
+    }
+
+    private static class MultiAdRequestAdListener implements AdListener {
+        private final HashMap<AdView, ResultCode> failures;
+
+        MultiAdRequestAdListener(HashMap<AdView, ResultCode> failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void onAdLoaded(AdView adView) {
+        }
+
+        @Override
+        public void onAdLoaded(NativeAdResponse nativeAdResponse) {
+        }
+
+        @Override
+        public void onAdRequestFailed(AdView adView, ResultCode errorCode) {
+            failures.put(adView, errorCode);
+        }
+
+        @Override
+        public void onAdExpanded(AdView adView) {
+        }
+
+        @Override
+        public void onAdCollapsed(AdView adView) {
+        }
+
+        @Override
+        public void onAdClicked(AdView adView) {
+        }
+
+        @Override
+        public void onAdClicked(AdView adView, String clickUrl) {
+        }
+
+        @Override
+        public void onLazyAdLoaded(AdView adView) {
+        }
+    }
+
     private void executionSteps() {
         utAdRequest = new UTAdRequest(this);
         server.enqueue(new MockResponse().setResponseCode(200).setBody(TestResponsesUT.blank()));
@@ -1287,6 +1391,21 @@ public class UTAdRequestTest extends BaseRoboTest implements UTAdRequester {
         return user;
     }
 
+    private static String gunzip(byte[] body) {
+        try {
+            GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(body));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     @NonNull
     private JSONObject inspectPostData() throws InterruptedException, JSONException {
         System.out.println("Testing POST data...");
@@ -1295,7 +1414,12 @@ public class UTAdRequestTest extends BaseRoboTest implements UTAdRequester {
         assertNotNull(method);
         assertEquals("POST", method.toUpperCase());
         assertNotNull(recordedRequest.getBody());
-        String requestBody = recordedRequest.getBody().readUtf8();
+        String requestBody;
+        if ("gzip".equals(recordedRequest.getHeader("Content-Encoding"))) {
+            requestBody = gunzip(recordedRequest.getBody().readByteArray());
+        } else {
+            requestBody = recordedRequest.getBody().readUtf8();
+        }
         assertNotNull(requestBody);
         JSONObject postData = new JSONObject(requestBody);
         assertTrue(postData.has("tags"));
@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.shadows.ShadowSettings;
+import com.appnexus.opensdk.ut.UTAdResponse;
+import com.appnexus.opensdk.ut.UTResponseStreamParser;
+import com.appnexus.opensdk.ut.adresponse.BaseAdResponse;
+import com.appnexus.opensdk.ut.adresponse.CSMSDKAdResponse;
+import com.appnexus.opensdk.utils.JsonUtil;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, shadows = {ShadowSettings.class, ShadowLog.class})
+public class UTResponseStreamParserTest extends BaseRoboTest {
+
+    @Test
+    public void testBannerMatchesStringParsing() throws Exception {
+        assertSameAds(TestResponsesUT.banner(), MediaType.BANNER);
+    }
+
+    @Test
+    public void testVideoMatchesStringParsing() throws Exception {
+        assertSameAds(TestResponsesUT.rtbVASTVideo(), MediaType.BANNER);
+    }
+
+    @Test
+    public void testCSMMatchesStringParsing() throws Exception {
+        assertSameAds(TestResponsesUT.mediatedSuccessfulBanner(), MediaType.BANNER);
+    }
+
+    @Test
+    public void testSSMMatchesStringParsing() throws Exception {
+        assertSameAds(TestResponsesUT.mediatedSSMBanner(), MediaType.BANNER);
+    }
+
+    @Test
+    public void testNativeMatchesStringParsing() throws Exception {
+        assertSameAds(TestResponsesUT.anNative(), MediaType.NATIVE);
+    }
+
+    @Test
+    public void testCSRMatchesStringParsing() throws Exception {
+        assertSameAds(TestResponsesUT.csrNativeSuccessful(), MediaType.NATIVE);
+    }
+
+    @Test
+    public void testNoBid() throws Exception {
+        UTAdResponse streamed = parseStream(TestResponsesUT.noResponse(), MediaType.BANNER);
+        assertNull(streamed.getAdList());
+        assertEquals("123456", streamed.getAdResponseInfo().getTagId());
+    }
+
+    @Test
+    public void testEmptyBody() throws Exception {
+        assertNull(UTResponseStreamParser.parse(toStream(TestResponsesUT.blank()), null));
+    }
+
+    @Test
+    public void testMalformedBody() throws Exception {
+        JSONObject root = UTResponseStreamParser.parse(toStream("{\"tags\":[{\"uuid\":\"1\"},"), null);
+        assertNotNull(root);
+        assertEquals(1, JsonUtil.getJSONArray(root, "tags").length());
+    }
+
+    @Test
+    public void testTagsAreReportedInOrder() throws Exception {
+        final ArrayList<String> uuids = new ArrayList<String>();
+        UTResponseStreamParser.parse(toStream("{\"version\":\"3.0.0\",\"tags\":[{\"uuid\":\"a\"},{\"uuid\":\"b\"}]}"),
+                new UTResponseStreamParser.TagListener() {
+                    @Override
+                    public void onTagParsed(JSONObject tag, long readTimeNanos) {
+                        uuids.add(JsonUtil.getJSONString(tag, "uuid"));
+                    }
+                });
+        assertEquals(2, uuids.size());
+        assertEquals("a", uuids.get(0));
+        assertEquals("b", uuids.get(1));
+    }
+
+    private void assertSameAds(String body, MediaType mediaType) throws IOException {
+        UTAdResponse expected = new UTAdResponse(body, null, mediaType, "v");
+        UTAdResponse streamed = parseStream(body, mediaType);
+
+        LinkedList<BaseAdResponse> expectedAds = expected.getAdList();
+        LinkedList<BaseAdResponse> streamedAds = streamed.getAdList();
+        assertNotNull(streamedAds);
+        assertEquals(expectedAds.size(), streamedAds.size());
+        assertEquals(expected.getNoAdUrl(), streamed.getNoAdUrl());
+        for (int i = 0; i < expectedAds.size(); i++) {
+            BaseAdResponse expectedAd = expectedAds.get(i);
+            BaseAdResponse streamedAd = streamedAds.get(i);
+            assertEquals(expectedAd.getClass(), streamedAd.getClass());
+            assertEquals(expectedAd.getContentSource(), streamedAd.getContentSource());
+            assertEquals(expectedAd.getAdType(), streamedAd.getAdType());
+            assertEquals(expectedAd.getAdContent(), streamedAd.getAdContent());
+            assertEquals(expectedAd.getWidth(), streamedAd.getWidth());
+            assertEquals(expectedAd.getHeight(), streamedAd.getHeight());
+            assertEquals(expectedAd.getImpressionURLs(), streamedAd.getImpressionURLs());
+            assertEquals(expectedAd.getExtras(), streamedAd.getExtras());
+            assertEquals(expectedAd.getAdResponseInfo().getCreativeId(), streamedAd.getAdResponseInfo().getCreativeId());
+            assertEquals(expectedAd.getAdResponseInfo().getCpm(), streamedAd.getAdResponseInfo().getCpm(), 0d);
+            if (expectedAd instanceof CSMSDKAdResponse) {
+                assertEquals(((CSMSDKAdResponse) expectedAd).getParam(), ((CSMSDKAdResponse) streamedAd).getParam());
+                assertEquals(((CSMSDKAdResponse) expectedAd).getClassName(), ((CSMSDKAdResponse) streamedAd).getClassName());
+            }
+        }
+    }
+
+    private UTAdResponse parseStream(String body, MediaType mediaType) throws IOException {
+        JSONObject root = UTResponseStreamParser.parse(toStream(body), null);
+        JSONObject tag = JsonUtil.getJSONObjectFromArray(JsonUtil.getJSONArray(root, "tags"), 0);
+        return new UTAdResponse(tag, null, mediaType, "v");
+    }
+
+    private InputStream toStream(String body) throws IOException {
+        return new ByteArrayInputStream(body.getBytes("UTF-8"));
+    }
+}
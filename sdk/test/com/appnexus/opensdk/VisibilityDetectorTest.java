@@ -0,0 +1,137 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class VisibilityDetectorTest extends BaseRoboTest {
+
+    private VisibilityDetector visibilityDetector;
+    private TrackedTestView view;
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        visibilityDetector = VisibilityDetector.getInstance();
+        view = new TrackedTestView(activity);
+        activity.addContentView(view, new ViewGroup.LayoutParams(320, 50));
+    }
+
+    @Override
+    @After
+    public void tearDown() {
+        visibilityDetector.destroy(view);
+        super.tearDown();
+    }
+
+    @Test
+    public void testListenerOnlyHearsChanges() {
+        visibilityDetector.addVisibilityListener(view);
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(1, view.changes.size());
+        assertTrue(view.changes.get(0));
+
+        // Nothing moved, nothing to report
+        visibilityDetector.scheduleVisibilityCheck();
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(1, view.changes.size());
+
+        view.setVisibility(View.GONE);
+        visibilityDetector.scheduleVisibilityCheck();
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(2, view.changes.size());
+        assertFalse(view.changes.get(1));
+    }
+
+    @Test
+    public void testChecksAreCoalesced() {
+        visibilityDetector.addVisibilityListener(view);
+        for (int i = 0; i < 10; i++) {
+            visibilityDetector.scheduleVisibilityCheck();
+        }
+        assertEquals(1, uiScheduler.size());
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(1, view.changes.size());
+    }
+
+    @Test
+    public void testDetachedViewIsNotVisible() {
+        visibilityDetector.addVisibilityListener(view);
+        Robolectric.flushForegroundThreadScheduler();
+        ((ViewGroup) view.getParent()).removeView(view);
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(2, view.changes.size());
+        assertFalse(view.changes.get(1));
+    }
+
+    @Test
+    public void testDestroyedViewIsNotTracked() {
+        visibilityDetector.addVisibilityListener(view);
+        visibilityDetector.destroy(view);
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(0, view.changes.size());
+    }
+
+    @Test
+    public void testWindowObserverIsSharedByTrackedViews() {
+        TrackedTestView other = new TrackedTestView(activity);
+        activity.addContentView(other, new ViewGroup.LayoutParams(320, 50));
+        visibilityDetector.addVisibilityListener(view);
+        visibilityDetector.addVisibilityListener(other);
+        Robolectric.flushForegroundThreadScheduler();
+
+        // The other view still observes the window once the first one is gone
+        visibilityDetector.destroy(view);
+        other.getViewTreeObserver().dispatchOnGlobalLayout();
+        assertEquals(1, uiScheduler.size());
+        visibilityDetector.destroy(other);
+        Robolectric.flushForegroundThreadScheduler();
+    }
+
+    private static class TrackedTestView extends View implements VisibilityDetector.VisibilityListener {
+        final List<Boolean> changes = new ArrayList<Boolean>();
+
+        TrackedTestView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void onVisibilityChanged(boolean visible) {
+            changes.add(visible);
+        }
+    }
+}
@@ -4,6 +4,7 @@ package com.appnexus.opensdk.suite;
 import com.appnexus.opensdk.ResultCodeTest;
 import com.appnexus.opensdk.TestANClickThroughAction;
 import com.appnexus.opensdk.UTAdResponseTest;
+import com.appnexus.opensdk.UTResponseStreamParserTest;
 import com.appnexus.opensdk.VideoImplementationTest;
 import com.appnexus.opensdk.WebviewUtilTest;
 
@@ -16,6 +17,7 @@ import org.junit.runners.Suite;
         ResultCodeTest.class,
         WebviewUtilTest.class,
         UTAdResponseTest.class,
+        UTResponseStreamParserTest.class,
         TestANClickThroughAction.class,
 })
 public class UtAdTestSuite {
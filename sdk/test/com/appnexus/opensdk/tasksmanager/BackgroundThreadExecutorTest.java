@@ -0,0 +1,158 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.tasksmanager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class BackgroundThreadExecutorTest {
+
+    private BackgroundThreadExecutor executor;
+    private CountDownLatch release;
+    private CountDownLatch busy;
+
+    @Before
+    public void setup() {
+        executor = new BackgroundThreadExecutor();
+        release = new CountDownLatch(1);
+        busy = new CountDownLatch(3);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testHigherPriorityLanesRunFirst() throws Exception {
+        final CountDownLatch releaseOne = new CountDownLatch(1);
+        executor.execute(blocker(releaseOne), TaskPriority.DEFAULT);
+        executor.execute(blocker(release), TaskPriority.DEFAULT);
+        executor.execute(blocker(release), TaskPriority.DEFAULT);
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(4);
+        executor.execute(recorder("default", order, done), TaskPriority.DEFAULT);
+        executor.execute(recorder("image", order, done), TaskPriority.IMAGE);
+        executor.execute(recorder("tracker", order, done), TaskPriority.TRACKER);
+        executor.execute(recorder("request", order, done), TaskPriority.AD_REQUEST);
+
+        // A single free worker drains the queue one task at a time
+        releaseOne.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("request", order.get(0));
+        assertEquals("tracker", order.get(1));
+        assertEquals("image", order.get(2));
+        assertEquals("default", order.get(3));
+    }
+
+    @Test
+    public void testCancelPendingTask() throws Exception {
+        occupyAllWorkers();
+
+        final boolean[] ran = {false};
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        };
+        executor.execute(task, TaskPriority.TRACKER);
+        assertEquals(1, executor.getPendingCount(TaskPriority.TRACKER));
+        assertTrue(executor.cancel(task));
+        assertEquals(0, executor.getPendingCount(TaskPriority.TRACKER));
+        assertFalse(executor.cancel(task));
+
+        release.countDown();
+        Thread.sleep(200);
+        assertFalse(ran[0]);
+    }
+
+    @Test
+    public void testLaneIsBounded() throws Exception {
+        occupyAllWorkers();
+
+        int queued = 0;
+        for (int i = 0; i < TaskPriority.DEFAULT.getCapacity() + 5; i++) {
+            if (executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, TaskPriority.DEFAULT)) {
+                queued++;
+            }
+        }
+        // Tasks over capacity are rejected, not silently dropped
+        assertEquals(TaskPriority.DEFAULT.getCapacity(), queued);
+        assertEquals(TaskPriority.DEFAULT.getCapacity(), executor.getPendingCount(TaskPriority.DEFAULT));
+        // Other lanes still accept work
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, TaskPriority.AD_REQUEST);
+        assertEquals(1, executor.getPendingCount(TaskPriority.AD_REQUEST));
+    }
+
+    private void occupyAllWorkers() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            executor.execute(blocker(release), TaskPriority.DEFAULT);
+        }
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+    }
+
+    private Runnable blocker(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                busy.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+    }
+
+    private Runnable recorder(final String name, final List<String> order, final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+                done.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.ut;
+
+import android.content.Context;
+
+import com.appnexus.opensdk.ANGDPRSettings;
+import com.appnexus.opensdk.ANUSPrivacySettings;
+import com.appnexus.opensdk.AdSize;
+import com.appnexus.opensdk.MediaType;
+import com.appnexus.opensdk.SDKSettings;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class UTRequestTemplateTest {
+
+    private Context context;
+    private UTRequestParameters requestParameters;
+    private UTRequestTemplate template;
+
+    @Before
+    public void setup() {
+        context = RuntimeEnvironment.application;
+        ANGDPRSettings.reset(context);
+        ANUSPrivacySettings.reset(context);
+        requestParameters = new UTRequestParameters(context);
+        requestParameters.setPlacementID("123456");
+        requestParameters.setMediaType(MediaType.BANNER);
+        requestParameters.setPrimarySize(new AdSize(320, 50));
+        template = UTRequestTemplate.getInstance();
+    }
+
+    @After
+    public void tearDown() {
+        ANGDPRSettings.reset(context);
+        ANUSPrivacySettings.reset(context);
+        SDKSettings.setPublisherUserId("");
+    }
+
+    @Test
+    public void testFragmentMatchesInputs() {
+        UTRequestTemplate.Fragment<String> fragment = new UTRequestTemplate.Fragment<String>();
+        assertNull(fragment.get(Collections.singletonList("a")));
+        fragment.put(Arrays.asList("a", null, 1), "{}");
+        assertEquals("{}", fragment.get(Arrays.asList("a", null, 1)));
+        assertNull(fragment.get(Arrays.asList("a", null, 2)));
+    }
+
+    @Test
+    public void testStaticSectionsAreReused() throws Exception {
+        JSONObject first = new JSONObject(requestParameters.getPostData());
+        String app = template.app.get(Collections.singletonList(Settings.getSettings().app_id));
+        assertEquals(first.getJSONObject("app").toString(), app);
+
+        JSONObject second = new JSONObject(requestParameters.getPostData());
+        assertSame(app, template.app.get(Collections.singletonList(Settings.getSettings().app_id)));
+        assertEquals(first.getJSONObject("user").toString(), second.getJSONObject("user").toString());
+        assertEquals(first.getJSONObject("sdk").toString(), second.getJSONObject("sdk").toString());
+        assertEquals(first.getJSONObject("device").getString("os"), second.getJSONObject("device").getString("os"));
+        assertTrue(second.getJSONObject("device").has("devtime"));
+        // A new uuid for every request
+        assertFalse(first.getJSONArray("tags").getJSONObject(0).getString("uuid")
+                .equals(second.getJSONArray("tags").getJSONObject(0).getString("uuid")));
+    }
+
+    @Test
+    public void testSettingsChangeRebuildsSection() throws Exception {
+        JSONObject before = new JSONObject(requestParameters.getPostData());
+        assertFalse(before.getJSONObject("user").has("external_uid"));
+
+        SDKSettings.setPublisherUserId("publisher-user");
+        JSONObject after = new JSONObject(requestParameters.getPostData());
+        assertEquals("publisher-user", after.getJSONObject("user").getString("external_uid"));
+    }
+
+    @Test
+    public void testConsentChangeRebuildsSection() throws Exception {
+        JSONObject before = new JSONObject(requestParameters.getPostData());
+        assertFalse(before.has("gdpr_consent"));
+        assertFalse(before.has("us_privacy"));
+
+        ANGDPRSettings.setConsentRequired(context, true);
+        ANGDPRSettings.setConsentString(context, "fooBar");
+        ANUSPrivacySettings.setUSPrivacyString(context, "1ynn");
+        JSONObject after = new JSONObject(requestParameters.getPostData());
+        assertTrue(after.getJSONObject("gdpr_consent").getBoolean("consent_required"));
+        assertEquals("fooBar", after.getJSONObject("gdpr_consent").getString("consent_string"));
+        assertEquals("1ynn", after.getString("us_privacy"));
+
+        ANGDPRSettings.reset(context);
+        assertFalse(new JSONObject(requestParameters.getPostData()).has("gdpr_consent"));
+    }
+
+    @Test
+    public void testFacebookMethodLookedUpOncePerClass() {
+        assertNull(template.getFacebookBidderTokenMethod("com.appnexus.opensdk.csr.FBSettings"));
+        assertNotNull(template.getFacebookBidderTokenMethod("com.appnexus.opensdk.mocks.MockFBSettings"));
+        assertSame(template.getFacebookBidderTokenMethod("com.appnexus.opensdk.mocks.MockFBSettings"),
+                template.getFacebookBidderTokenMethod("com.appnexus.opensdk.mocks.MockFBSettings"));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.ut;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.appnexus.opensdk.AdSize;
+import com.appnexus.opensdk.MediaType;
+import com.appnexus.opensdk.SDKSettings;
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.DebugCapture;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+
+import static junit.framework.Assert.assertEquals;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class UTRequestWriterTest {
+
+    private Context context;
+
+    @Before
+    public void setup() {
+        context = RuntimeEnvironment.application;
+    }
+
+    @After
+    public void tearDown() {
+        SDKSettings.setLocation(null);
+        SDKSettings.setLocationEnabled(false);
+    }
+
+    private static String write(Object... members) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UTRequestWriter writer = new UTRequestWriter(out);
+        writer.beginObject();
+        for (int i = 0; i < members.length; i += 2) {
+            writer.name((String) members[i]);
+            Object value = members[i + 1];
+            if (value instanceof String) {
+                writer.value((String) value);
+            } else if (value instanceof Boolean) {
+                writer.value((Boolean) value);
+            } else {
+                writer.value((Number) value);
+            }
+        }
+        writer.endObject();
+        writer.flush();
+        return out.toString(UTConstants.UTF_8);
+    }
+
+    @Test
+    public void testStringsEscapedAsOrgJson() throws Exception {
+        String[] strings = {"plain", "a/b\\c\"d", "tab\tnew\nline\rfeed\fback\b", "\u0001\u001f\u007f",
+                "café € 😀", "lone \ud83d high", "lone \ude00 low"};
+        for (String s : strings) {
+            // Through bytes, as unpaired surrogates are encoded as '?'
+            byte[] expected = new JSONObject().put("key/", s).toString().getBytes(UTConstants.UTF_8);
+            assertEquals(new String(expected, UTConstants.UTF_8), write("key/", s));
+        }
+    }
+
+    @Test
+    public void testNumbersFormattedAsOrgJson() throws Exception {
+        JSONObject expected = new JSONObject()
+                .put("int", 42)
+                .put("long", 1600000000000L)
+                .put("integral", 3.0)
+                .put("double", 45.123457)
+                .put("float", 0.1f)
+                .put("bool", true);
+        assertEquals(expected.toString(), write("int", 42, "long", 1600000000000L, "integral", 3.0,
+                "double", 45.123457, "float", (double) 0.1f, "bool", true));
+    }
+
+    @Test
+    public void testNestingAndRawValues() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UTRequestWriter writer = new UTRequestWriter(out);
+        writer.beginObject();
+        writer.name("a").beginArray().value(1).beginObject().endObject().beginArray().endArray().endArray();
+        writer.rawMember("empty", "");
+        writer.name("b").beginObject().rawMembers("\"c\":1").rawMembers("").name("d").rawValue("[6]").endObject();
+        writer.endObject();
+        writer.flush();
+        assertEquals("{\"a\":[1,{},[]],\"b\":{\"c\":1,\"d\":[6]}}", out.toString(UTConstants.UTF_8));
+    }
+
+    @Test
+    public void testLongOutputSpansBuffers() throws Exception {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            value.append("é/");
+        }
+        assertEquals(new JSONObject().put("k", value.toString()).toString(), write("k", value.toString()));
+    }
+
+    @Test
+    public void testWritePostDataIsValidJson() throws Exception {
+        UTRequestParameters requestParameters = new UTRequestParameters(context);
+        requestParameters.setPlacementID("123456");
+        requestParameters.setMediaType(MediaType.INSTREAM_VIDEO);
+        requestParameters.setPrimarySize(new AdSize(1, 1));
+        requestParameters.setVideoAdMinDuration(10);
+        requestParameters.setVideoAdMaxDuration(30);
+        requestParameters.setReserve(0.25f);
+        requestParameters.addCustomKeywords("state", "NY/NJ");
+        requestParameters.addCustomKeywords("STATE", "café \"quoted\"");
+        requestParameters.addCustomKeywords("empty", "");
+        Location location = new Location("app");
+        location.setLatitude(40.7128);
+        location.setLongitude(-74.006);
+        location.setAccuracy(12.6f);
+        location.setTime(System.currentTimeMillis());
+        SDKSettings.setLocationEnabled(true);
+        SDKSettings.setLocation(location);
+
+        JSONObject request = new JSONObject(new String(requestParameters.writePostData(), UTConstants.UTF_8));
+        JSONObject tag = request.getJSONArray("tags").getJSONObject(0);
+        assertEquals(30, tag.getJSONObject("video").getInt("maxduration"));
+        JSONArray keywords = tag.getJSONArray("keywords");
+        assertEquals(1, keywords.length());
+        assertEquals(2, keywords.getJSONObject(0).getJSONArray("value").length());
+        assertEquals("café \"quoted\"", keywords.getJSONObject(0).getJSONArray("value").getString(1));
+        assertEquals(40.7128, request.getJSONObject("device").getJSONObject("geo").getDouble("lat"));
+    }
+
+    @Test
+    public void testLastRequestDecodedOnDemand() throws Exception {
+        DebugCapture.enable();
+        Clog.setLastRequest("{\"café\":1}".getBytes(UTConstants.UTF_8));
+        assertEquals("{\"café\":1}", Clog.getLastRequest());
+        DebugCapture.disable();
+        assertEquals("", Clog.getLastRequest());
+    }
+}
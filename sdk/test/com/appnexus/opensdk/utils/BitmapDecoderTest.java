@@ -0,0 +1,131 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.graphics.Bitmap;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import okio.Buffer;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class BitmapDecoderTest {
+
+    @Test
+    public void testInSampleSize() {
+        assertEquals(2, BitmapDecoder.calculateInSampleSize(1200, 627, 320, 167));
+        assertEquals(4, BitmapDecoder.calculateInSampleSize(1200, 627, 300, 150));
+        // Never smaller than the target
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(1200, 627, 601, 100));
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(100, 100, 200, 200));
+        // Unknown sizes decode at full resolution
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(1200, 627, 0, 0));
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(-1, -1, 320, 167));
+    }
+
+    @Test
+    public void testPoolReturnsSmallestFit() {
+        BitmapPool pool = new BitmapPool(1024 * 1024);
+        Bitmap large = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+        Bitmap small = Bitmap.createBitmap(50, 50, Bitmap.Config.ARGB_8888);
+        pool.put(large);
+        pool.put(small);
+
+        assertNull(pool.get(300, 300, Bitmap.Config.ARGB_8888));
+        assertSame(small, pool.get(40, 40, Bitmap.Config.ARGB_8888));
+        assertSame(large, pool.get(40, 40, Bitmap.Config.ARGB_8888));
+        assertEquals(0, pool.count());
+    }
+
+    @Test
+    public void testPoolBounded() {
+        Bitmap bitmap = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        BitmapPool pool = new BitmapPool(100 * 100 * 4 * 2);
+        pool.put(bitmap);
+        pool.put(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+        pool.put(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+        assertEquals(2, pool.count());
+
+        // Immutable bitmaps cannot be decoded into
+        pool.clear();
+        pool.put(bitmap.copy(Bitmap.Config.ARGB_8888, false));
+        assertEquals(0, pool.count());
+    }
+
+    @Test
+    public void testReleasedBitmapPooledOnceEvicted() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.start();
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=600")
+                .setBody(new Buffer().write("image".getBytes())));
+        ImageCache cache = ImageCache.getInstance();
+        cache.attach(RuntimeEnvironment.application);
+        cache.clear();
+        try {
+            Bitmap bitmap = cache.getBitmap(server.url("/image.png").toString(), 100, 100, Bitmap.Config.RGB_565);
+            assertNotNull(bitmap);
+            // Still cached
+            cache.release(bitmap, true);
+            assertEquals(0, cache.getPool().count());
+
+            assertSame(bitmap, cache.getBitmap(server.url("/image.png").toString(), 100, 100, Bitmap.Config.RGB_565));
+            cache.onLowMemory();
+            // Still used
+            assertEquals(0, cache.getPool().count());
+            cache.release(bitmap, true);
+            assertEquals(1, cache.getPool().count());
+        } finally {
+            cache.clear();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedBitmapNeverPooled() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.start();
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=600")
+                .setBody(new Buffer().write("image".getBytes())));
+        ImageCache cache = ImageCache.getInstance();
+        cache.attach(RuntimeEnvironment.application);
+        cache.clear();
+        try {
+            Bitmap bitmap = cache.getBitmap(server.url("/shared.png").toString(), 100, 100, Bitmap.Config.RGB_565);
+            assertNotNull(bitmap);
+            // The app may still be drawing it
+            cache.release(bitmap, false);
+            cache.onLowMemory();
+            assertEquals(0, cache.getPool().count());
+        } finally {
+            cache.clear();
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DebugCaptureTest {
+
+    @After
+    public void tearDown() {
+        DebugCapture.disable();
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testOffByDefault() {
+        assertFalse(DebugCapture.isEnabled());
+        assertNull(DebugCapture.captureRequest("https://example.com", "{}"));
+        DebugCapture.captureResponse(null, "{}");
+        assertTrue(DebugCapture.getExchanges().isEmpty());
+    }
+
+    @Test
+    public void testRingKeepsTheLatestExchanges() {
+        DebugCapture.enable(3, 64 * 1024, true);
+        for (int i = 0; i < 5; i++) {
+            DebugCapture.Exchange exchange = DebugCapture.captureRequest("https://example.com", "request " + i);
+            DebugCapture.captureResponse(exchange, "response " + i);
+        }
+        List<DebugCapture.Exchange> exchanges = DebugCapture.getExchanges();
+        assertEquals(3, exchanges.size());
+        assertEquals("request 2", exchanges.get(0).getRequest());
+        assertEquals("request 4", exchanges.get(2).getRequest());
+        assertEquals("response 4", exchanges.get(2).getResponse());
+    }
+
+    @Test
+    public void testPayloadsAreCapped() {
+        // 100 characters per payload
+        DebugCapture.enable(2, 2 * 2 * 2 * 100, true);
+        DebugCapture.captureRequest(null, repeat('a', 150));
+        String request = DebugCapture.getExchanges().get(0).getRequest();
+        assertTrue(request.startsWith(repeat('a', 100) + "..."));
+        assertTrue(request.contains("50"));
+
+        DebugCapture.enable(2, 2 * 2 * 2 * 100, false);
+        DebugCapture.captureRequest(null, repeat('a', 150));
+        assertEquals("[omitted, 150 characters]", DebugCapture.getExchanges().get(0).getRequest());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HTTPCompressionTest {
+
+    private MockWebServer server;
+    private byte[] body;
+
+    @Before
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        HTTPCompression.resetCounters();
+        StringBuilder json = new StringBuilder("{\"tags\":[");
+        for (int i = 0; i < 100; i++) {
+            json.append("{\"uuid\":\"").append(i).append("\",\"ad_type\":\"banner\"},");
+        }
+        body = json.append("{}]}").toString().getBytes("UTF-8");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (HTTPCompression.Endpoint endpoint : HTTPCompression.Endpoint.values()) {
+            HTTPCompression.setEnabled(endpoint, true);
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void testRequestBodyGzipped() throws Exception {
+        server.enqueue(new MockResponse());
+        HttpURLConnection connection = post();
+        int sent = HTTPCompression.writeRequestBody(connection, body, HTTPCompression.Endpoint.AD_REQUEST);
+        connection.getResponseCode();
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        assertEquals("gzip, deflate", request.getHeader("Accept-Encoding"));
+        byte[] wire = request.getBody().readByteArray();
+        assertEquals(sent, wire.length);
+        assertArrayEquals(body, read(new GZIPInputStream(new ByteArrayInputStream(wire))));
+
+        HTTPCompression.Counters counters = HTTPCompression.getCounters(HTTPCompression.Endpoint.AD_REQUEST);
+        assertEquals(body.length, counters.getRequestBodyBytes());
+        assertEquals(sent, counters.getRequestWireBytes());
+        assertEquals(body.length - sent, counters.getBytesSaved());
+    }
+
+    @Test
+    public void testSmallRequestBodySentAsIs() throws Exception {
+        server.enqueue(new MockResponse());
+        byte[] small = Arrays.copyOf(body, Settings.HTTP_MIN_COMPRESSED_REQUEST_SIZE - 1);
+        HttpURLConnection connection = post();
+        assertEquals(small.length, HTTPCompression.writeRequestBody(connection, small, HTTPCompression.Endpoint.AD_REQUEST));
+        connection.getResponseCode();
+
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader("Content-Encoding"));
+        assertArrayEquals(small, request.getBody().readByteArray());
+    }
+
+    @Test
+    public void testKillSwitch() throws Exception {
+        HTTPCompression.setEnabled(HTTPCompression.Endpoint.AD_REQUEST, false);
+        server.enqueue(new MockResponse());
+        HttpURLConnection connection = post();
+        HTTPCompression.writeRequestBody(connection, body, HTTPCompression.Endpoint.AD_REQUEST);
+        connection.getResponseCode();
+
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader("Content-Encoding"));
+        assertEquals("identity", request.getHeader("Accept-Encoding"));
+        assertArrayEquals(body, request.getBody().readByteArray());
+        // Other endpoints are not affected
+        assertEquals(true, HTTPCompression.isEnabled(HTTPCompression.Endpoint.SSM));
+    }
+
+    @Test
+    public void testGzipResponseDecoded() throws Exception {
+        byte[] gzipped = HTTPCompression.gzip(body);
+        server.enqueue(new MockResponse().setHeader("Content-Encoding", "gzip").setBody(new Buffer().write(gzipped)));
+        HttpURLConnection connection = (HttpURLConnection) server.url("/").url().openConnection();
+        HTTPCompression.acceptCompressedResponse(connection, HTTPCompression.Endpoint.SSM);
+
+        HTTPCompression.ResponseStream is = HTTPCompression.getResponseStream(connection, HTTPCompression.Endpoint.SSM);
+        assertArrayEquals(body, read(is));
+        assertEquals(body.length, is.getBodyBytes());
+        assertEquals(gzipped.length, is.getWireBytes());
+
+        HTTPCompression.Counters counters = HTTPCompression.getCounters(HTTPCompression.Endpoint.SSM);
+        assertEquals(body.length, counters.getResponseBodyBytes());
+        assertEquals(gzipped.length, counters.getResponseWireBytes());
+        assertEquals(0, HTTPCompression.getCounters(HTTPCompression.Endpoint.TRACKER).getResponseWireBytes());
+    }
+
+    @Test
+    public void testDeflateResponseDecoded() throws Exception {
+        // zlib wrapped, as the RFC says
+        assertArrayEquals(body, read(HTTPCompression.getResponseStream(new ByteArrayInputStream(deflate(body, false)),
+                "deflate", HTTPCompression.Endpoint.MRAID_EXPAND)));
+        // raw deflate, as some servers send
+        assertArrayEquals(body, read(HTTPCompression.getResponseStream(new ByteArrayInputStream(deflate(body, true)),
+                "Deflate", HTTPCompression.Endpoint.MRAID_EXPAND)));
+    }
+
+    @Test
+    public void testEmptyAndIdentityResponses() throws Exception {
+        assertEquals(0, read(HTTPCompression.getResponseStream(new ByteArrayInputStream(new byte[0]),
+                "gzip", HTTPCompression.Endpoint.TRACKER)).length);
+        assertArrayEquals(body, read(HTTPCompression.getResponseStream(new ByteArrayInputStream(body),
+                null, HTTPCompression.Endpoint.TRACKER)));
+        assertEquals(0, HTTPCompression.getCounters(HTTPCompression.Endpoint.TRACKER).getBytesSaved());
+    }
+
+    private HttpURLConnection post() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) server.url("/").url().openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        HTTPCompression.acceptCompressedResponse(connection, HTTPCompression.Endpoint.AD_REQUEST);
+        return connection;
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw));
+        deflater.write(data);
+        deflater.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        is.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.graphics.Bitmap;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class ImageCacheTest {
+
+    // Robolectric decodes any bytes into a bitmap
+    private static final byte[] IMAGE = "image".getBytes();
+
+    private MockWebServer server;
+    private ImageCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        cache = ImageCache.getInstance();
+        cache.attach(RuntimeEnvironment.application);
+        cache.clear();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.clear();
+        server.shutdown();
+    }
+
+    private MockResponse image(String cacheControl) {
+        MockResponse response = new MockResponse().setBody(new Buffer().write(IMAGE));
+        if (cacheControl != null) {
+            response.setHeader("Cache-Control", cacheControl);
+        }
+        return response;
+    }
+
+    @Test
+    public void testServedFromMemory() {
+        server.enqueue(image("max-age=600"));
+        String url = server.url("/icon.png").toString();
+        Bitmap first = cache.getBitmap(url);
+        assertNotNull(first);
+        assertSame(first, cache.getBitmap(url));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testServedFromDisk() {
+        server.enqueue(image("max-age=600"));
+        String url = server.url("/icon.png").toString();
+        assertNotNull(cache.getBitmap(url));
+        cache.onLowMemory();
+        assertEquals(0, cache.memorySize());
+        assertNotNull(cache.getBitmap(url));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testNoStoreNotCached() {
+        server.enqueue(image("no-store"));
+        server.enqueue(image("no-store"));
+        String url = server.url("/icon.png").toString();
+        assertNotNull(cache.getBitmap(url));
+        assertNotNull(cache.getBitmap(url));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void testConcurrentRequestsShareDownload() throws Exception {
+        server.enqueue(image("max-age=600").setBodyDelay(300, TimeUnit.MILLISECONDS));
+        final String url = server.url("/image.png").toString();
+        final Bitmap[] bitmaps = new Bitmap[4];
+        final CountDownLatch done = new CountDownLatch(bitmaps.length);
+        for (int i = 0; i < bitmaps.length; i++) {
+            final int index = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    bitmaps[index] = cache.getBitmap(url);
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+        for (Bitmap bitmap : bitmaps) {
+            assertSame(bitmaps[0], bitmap);
+        }
+    }
+
+    @Test
+    public void testFreshnessLifetime() {
+        assertEquals(600000, ImageCache.getFreshnessLifetime("public, max-age=600", 0, 0));
+        assertEquals(-1, ImageCache.getFreshnessLifetime("no-cache", 0, 0));
+        assertEquals(-1, ImageCache.getFreshnessLifetime("max-age=0", 0, 0));
+        assertEquals(5000, ImageCache.getFreshnessLifetime(null, 15000, 10000));
+        assertEquals(-1, ImageCache.getFreshnessLifetime(null, 10000, 15000));
+        assertEquals(Settings.IMAGE_CACHE_DEFAULT_LIFETIME, ImageCache.getFreshnessLifetime("public", 0, 0));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import com.appnexus.opensdk.MediaType;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyMetricsTest {
+
+    @After
+    public void tearDown() {
+        LatencyMetrics.setEnabled(false);
+        LatencyMetrics.setListener(null);
+        LatencyMetrics.reset();
+    }
+
+    private static void record(LatencyMetrics.Phase phase, String placementId, String detail, long micros) {
+        LatencyMetrics.recordDuration(phase, placementId, MediaType.BANNER, detail, TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        int previous = -1;
+        for (long micros = 0; micros < 100000; micros++) {
+            int index = LatencyHistogram.indexOf(micros);
+            assertTrue(index == previous || index == previous + 1);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(index));
+            previous = index;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testOffByDefault() {
+        assertFalse(LatencyMetrics.isEnabled());
+        assertEquals(0, LatencyMetrics.start());
+        record(LatencyMetrics.Phase.PARSE, "123", null, 100);
+        assertTrue(LatencyMetrics.getHistograms().isEmpty());
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyMetrics.setEnabled(true);
+        for (int i = 1; i <= 100; i++) {
+            record(LatencyMetrics.Phase.TTFB, "123", null, i * 1000);
+        }
+        LatencyMetrics.HistogramSnapshot snapshot = LatencyMetrics.getHistogram(LatencyMetrics.Phase.TTFB,
+                LatencyMetrics.Dimension.PLACEMENT, "123");
+        assertNotNull(snapshot);
+        assertEquals(100, snapshot.getCount());
+        assertEquals(50500, snapshot.getMeanMicros());
+        assertEquals(100000, snapshot.getMaxMicros());
+        assertWithinBucket(50000, snapshot.getPercentileMicros(50));
+        assertWithinBucket(99000, snapshot.getPercentileMicros(99));
+        assertEquals(100000, snapshot.getPercentileMicros(100));
+
+        assertNotNull(LatencyMetrics.getHistogram(LatencyMetrics.Phase.TTFB, LatencyMetrics.Dimension.FORMAT, MediaType.BANNER.name()));
+        assertNull(LatencyMetrics.getHistogram(LatencyMetrics.Phase.TTFB, LatencyMetrics.Dimension.DETAIL, LatencyMetrics.UNKNOWN));
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual >= expected);
+        assertTrue(actual <= expected + expected / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void testKeysAreCapped() {
+        LatencyMetrics.setEnabled(true);
+        for (int i = 0; i < Settings.LATENCY_METRICS_MAX_KEYS + 10; i++) {
+            record(LatencyMetrics.Phase.MEDIATION, "placement" + i, "Adapter", 10);
+        }
+        record(LatencyMetrics.Phase.MEDIATION, null, "Adapter", 10);
+
+        int placements = 0;
+        for (LatencyMetrics.HistogramSnapshot snapshot : LatencyMetrics.getHistograms()) {
+            if (snapshot.getDimension() == LatencyMetrics.Dimension.PLACEMENT) {
+                placements++;
+            }
+        }
+        assertEquals(Settings.LATENCY_METRICS_MAX_KEYS + 1, placements);
+        assertEquals(11, LatencyMetrics.getHistogram(LatencyMetrics.Phase.MEDIATION,
+                LatencyMetrics.Dimension.PLACEMENT, LatencyMetrics.OTHER).getCount());
+        assertEquals(Settings.LATENCY_METRICS_MAX_KEYS + 11, LatencyMetrics.getHistogram(LatencyMetrics.Phase.MEDIATION,
+                LatencyMetrics.Dimension.DETAIL, "Adapter").getCount());
+    }
+
+    @Test
+    public void testListenerGetsSpans() {
+        final ArrayList<LatencyMetrics.Span> spans = new ArrayList<LatencyMetrics.Span>();
+        LatencyMetrics.setListener(new LatencyMetrics.Listener() {
+            @Override
+            public void onSpanRecorded(LatencyMetrics.Span span) {
+                spans.add(span);
+            }
+        });
+        LatencyMetrics.setEnabled(true);
+        long start = LatencyMetrics.start();
+        assertTrue(start != 0);
+        LatencyMetrics.record(LatencyMetrics.Phase.WEBVIEW_CREATE, "123", MediaType.BANNER, "pooled", start);
+
+        assertEquals(1, spans.size());
+        LatencyMetrics.Span span = spans.get(0);
+        assertEquals(LatencyMetrics.Phase.WEBVIEW_CREATE, span.getPhase());
+        assertEquals("123", span.getPlacementId());
+        assertEquals(MediaType.BANNER, span.getFormat());
+        assertEquals("pooled", span.getDetail());
+        assertTrue(span.getDurationNanos() >= 0);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PooledHTTPTransportTest {
+
+    private MockWebServer server;
+    private PooledHTTPTransport transport;
+
+    @Before
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        transport = new PooledHTTPTransport(3, 2, 100);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void testPerHostLimit() throws IOException {
+        URL hostA = new URL("http://a.example.com/");
+        URL hostB = new URL("http://b.example.com/");
+
+        HttpURLConnection first = transport.openConnection(hostA);
+        transport.openConnection(hostA);
+        try {
+            transport.openConnection(hostA);
+            fail("Expected the per host limit to be enforced");
+        } catch (SocketTimeoutException expected) {
+        }
+        assertEquals(0, transport.getAvailableConnections("a.example.com"));
+
+        // Other hosts are not affected by a busy host
+        transport.openConnection(hostB);
+        assertEquals(0, transport.getAvailableConnections());
+
+        transport.release(first, false);
+        assertEquals(1, transport.getAvailableConnections("a.example.com"));
+        assertEquals(1, transport.getAvailableConnections());
+    }
+
+    @Test
+    public void testReleaseIsIdempotent() throws IOException {
+        HttpURLConnection connection = transport.openConnection(new URL("http://a.example.com/"));
+        transport.release(connection, false);
+        transport.release(connection, false);
+        transport.release(null, true);
+        assertEquals(3, transport.getAvailableConnections());
+        assertEquals(2, transport.getAvailableConnections("a.example.com"));
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        server.enqueue(new MockResponse().setBody("first"));
+        server.enqueue(new MockResponse().setBody("second"));
+
+        get(server.url("/first").url());
+        get(server.url("/second").url());
+
+        server.takeRequest();
+        // A sequence number of 1 means the second request was served on the first request's socket
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+    }
+
+    private void get(URL url) throws IOException {
+        HttpURLConnection connection = transport.openConnection(url);
+        boolean reusable = false;
+        try {
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            PooledHTTPTransport.drainQuietly(connection.getInputStream());
+            reusable = true;
+        } finally {
+            transport.release(connection, reusable);
+        }
+    }
+}
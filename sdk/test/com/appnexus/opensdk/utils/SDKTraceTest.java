@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class SDKTraceTest {
+
+    @After
+    public void tearDown() {
+        SDKTrace.stopRecording();
+        SDKTrace.clear();
+    }
+
+    private static void section(String name) {
+        long traceStart = SDKTrace.begin(name);
+        SDKTrace.end(name, traceStart);
+    }
+
+    private static JSONArray dump() throws Exception {
+        StringWriter writer = new StringWriter();
+        SDKTrace.writeChromeTrace(writer);
+        return new JSONObject(writer.toString()).getJSONArray("traceEvents");
+    }
+
+    @Test
+    public void testNotRecordingByDefault() throws Exception {
+        assertFalse(SDKTrace.isRecording());
+        assertEquals(0, SDKTrace.begin(SDKTrace.AD_REQUEST));
+        SDKTrace.end(SDKTrace.AD_REQUEST, 0);
+        assertEquals(0, SDKTrace.getRecordedCount());
+        assertEquals(0, dump().length());
+    }
+
+    @Test
+    public void testNestedSectionsAreDumped() throws Exception {
+        SDKTrace.startRecording();
+        long outer = SDKTrace.begin(SDKTrace.FETCH);
+        section(SDKTrace.PROCESS_NEXT_AD);
+        SDKTrace.end(SDKTrace.FETCH, outer);
+        SDKTrace.stopRecording();
+        section(SDKTrace.LOAD_WEBVIEW);
+
+        JSONArray events = dump();
+        // Two sections and the name of their thread
+        assertEquals(3, events.length());
+        JSONObject inner = events.getJSONObject(0);
+        assertEquals(SDKTrace.PROCESS_NEXT_AD, inner.getString("name"));
+        assertEquals("X", inner.getString("ph"));
+        JSONObject parent = events.getJSONObject(1);
+        assertEquals(SDKTrace.FETCH, parent.getString("name"));
+        assertTrue(parent.getLong("ts") <= inner.getLong("ts"));
+        assertTrue(parent.getLong("ts") + parent.getLong("dur") >= inner.getLong("ts") + inner.getLong("dur"));
+        assertEquals(Thread.currentThread().getId(), parent.getLong("tid"));
+
+        JSONObject thread = events.getJSONObject(2);
+        assertEquals("M", thread.getString("ph"));
+        assertEquals(Thread.currentThread().getName(), thread.getJSONObject("args").getString("name"));
+    }
+
+    @Test
+    public void testOldestSectionsAreDropped() throws Exception {
+        SDKTrace.startRecording(2);
+        section(SDKTrace.AD_REQUEST);
+        section(SDKTrace.PARSE_RESPONSE);
+        section(SDKTrace.MRAID_CALL);
+        assertEquals(2, SDKTrace.getRecordedCount());
+        JSONArray events = dump();
+        assertEquals(SDKTrace.PARSE_RESPONSE, events.getJSONObject(0).getString("name"));
+        assertEquals(SDKTrace.MRAID_CALL, events.getJSONObject(1).getString("name"));
+    }
+
+    @Test
+    public void testDumpToFile() throws Exception {
+        SDKTrace.startRecording();
+        section(SDKTrace.VISIBILITY_CHECK);
+        File file = File.createTempFile("trace", ".json");
+        try {
+            assertTrue(SDKTrace.dumpChromeTrace(file));
+            StringBuilder content = new StringBuilder();
+            Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            try {
+                char[] buffer = new char[1024];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    content.append(buffer, 0, read);
+                }
+            } finally {
+                reader.close();
+            }
+            JSONArray events = new JSONObject(content.toString()).getJSONArray("traceEvents");
+            assertEquals(SDKTrace.VISIBILITY_CHECK, events.getJSONObject(0).getString("name"));
+        } finally {
+            file.delete();
+        }
+    }
+}
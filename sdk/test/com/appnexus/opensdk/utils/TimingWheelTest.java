@@ -0,0 +1,123 @@
+/*
+ *    Copyright 2020 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(sdk = 21)
+@RunWith(RobolectricTestRunner.class)
+public class TimingWheelTest {
+
+    private Scheduler scheduler;
+    private TimingWheel wheel;
+
+    private static class Task implements Runnable {
+        int runs = 0;
+
+        @Override
+        public void run() {
+            runs++;
+        }
+    }
+
+    @Before
+    public void setup() {
+        scheduler = Robolectric.getForegroundThreadScheduler();
+        scheduler.pause();
+        wheel = new TimingWheel(1000);
+    }
+
+    @Test
+    public void testSingleMessageForAllTasks() {
+        int messages = scheduler.size();
+        for (int i = 0; i < 500; i++) {
+            wheel.schedule(new Task(), 60000 + i * 1000);
+        }
+        assertEquals(messages + 1, scheduler.size());
+        assertEquals(500, wheel.size());
+    }
+
+    @Test
+    public void testTasksRunAcrossLevels() {
+        Task seconds = new Task(), minutes = new Task(), hours = new Task();
+        wheel.schedule(seconds, 5000);
+        wheel.schedule(minutes, 200000);
+        wheel.schedule(hours, 3 * 60 * 60 * 1000);
+
+        scheduler.advanceBy(5000, TimeUnit.MILLISECONDS);
+        assertEquals(1, seconds.runs);
+        assertEquals(0, minutes.runs);
+
+        // Never more than a tick early
+        scheduler.advanceBy(193000, TimeUnit.MILLISECONDS);
+        assertEquals(0, minutes.runs);
+        scheduler.advanceBy(2000, TimeUnit.MILLISECONDS);
+        assertEquals(1, minutes.runs);
+        assertEquals(0, hours.runs);
+
+        scheduler.advanceBy(3 * 60 * 60 * 1000, TimeUnit.MILLISECONDS);
+        assertEquals(1, hours.runs);
+        assertEquals(1, seconds.runs);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancel() {
+        Task cancelled = new Task(), kept = new Task();
+        TimingWheel.Timeout timeout = wheel.schedule(cancelled, 70000);
+        wheel.schedule(kept, 70000);
+        assertTrue(timeout.isPending());
+        timeout.cancel();
+        assertFalse(timeout.isPending());
+        assertEquals(1, wheel.size());
+
+        scheduler.advanceBy(70000, TimeUnit.MILLISECONDS);
+        assertEquals(0, cancelled.runs);
+        assertEquals(1, kept.runs);
+    }
+
+    @Test
+    public void testNoDelay() {
+        Task task = new Task();
+        wheel.schedule(task, 0);
+        assertEquals(0, task.runs);
+        scheduler.advanceBy(0, TimeUnit.MILLISECONDS);
+        assertEquals(1, task.runs);
+    }
+
+    @Test
+    public void testClear() {
+        Task task = new Task();
+        TimingWheel.Timeout timeout = wheel.schedule(task, 5000);
+        wheel.clear();
+        assertFalse(timeout.isPending());
+        scheduler.advanceBy(5000, TimeUnit.MILLISECONDS);
+        assertEquals(0, task.runs);
+    }
+}